@@ -0,0 +1,68 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * TicTacToeBatchWins on SIMD lanes: the widest vector of longs the CPU has is loaded with that
+ * many boards, and every line mask is anded with all of them and compared at once, so there is
+ * no branch per board or per mask. Lines found are or-ed into a lane mask that is stored
+ * straight into the results.
+ *
+ * Needs --add-modules jdk.incubator.vector at compile time and at run time, so it lives in its
+ * own source root, src-vector, which src/buildEngine.sh compiles with the flag after the rest.
+ * Get one through TicTacToeBatchWins.create, which falls back to the scalar version when the
+ * module or this class is missing.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeVectorWins extends TicTacToeBatchWins {
+
+    //Constants
+    private final static VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+
+    /**
+     * Lays out the line masks for a board size
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeVectorWins(int width, int height, int piecesForWin) {
+        super(width, height, piecesForWin);
+    }
+
+
+    @Override
+    public int findWins(long[] boards, int count, boolean[] wins) {
+        if(masks.length == 0) {
+            //No line fits on the board
+            return findWinsScalar(boards, 0, count, wins);
+        }
+        int lanes = SPECIES.length();
+        int vectorEnd = SPECIES.loopBound(count);
+        int found = 0;
+        for(int i = 0; i < vectorEnd; i += lanes) {
+            LongVector bits = LongVector.fromArray(SPECIES, boards, i);
+            VectorMask<Long> won = bits.and(masks[0]).eq(masks[0]);
+            for(int m = 1; m < masks.length; m++) {
+                won = won.or(bits.and(masks[m]).eq(masks[m]));
+            }
+            won.intoArray(wins, i);
+            found += won.trueCount();
+        }
+        return found + findWinsScalar(boards, vectorEnd, count, wins);
+    }
+
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
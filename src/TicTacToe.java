@@ -2,30 +2,64 @@ import java.util.Scanner;
 
 /**-------------------------------------------------------------------------------------------------
  * An app that plays Tic Tac Toe Between two human players
+ *
+ * Usage: java TicTacToe [--size m n k] [--hints] [--hint-time ms]
+ *
+ * With --hints, every turn shows the best move and an evaluation bar from a TicTacToeHintEngine,
+ * which works the position out in the background while the last player thinks. A hint that is
+ * not ready when the turn starts is printed as soon as it is.
  * -------------------------------------------------------------------------------------------------
- * @author Francisco Reyna 
+ * @author Francisco Reyna
  * email: francis@cs.utexas.edu
  * University of Texas at Austin
  */
 
 
 public class TicTacToe {
-    
+
     //Constants
     private final static int BOARD_SIZE = 3;
-    private final static char EMPTY = '.';
-    private final static char  PLAYER_ONE_PIECE = 'X';
-    private final static char PLAYER_TWO_PIECE = 'O';
     private final static int PIECES_FOR_WIN = 3;
+    //How long a turn waits for a hint still being worked out before going on without it
+    private final static long HINT_WAIT_MS = 200;
+    private final static String USAGE = "Usage: java TicTacToe [--size m n k] [--hints] [--hint-time ms]";
 
-    //Plays a game of TicTacToe 
+    //Plays a game of TicTacToe
     public static void main(String[] args) {
-        char[][] board = new char[BOARD_SIZE][BOARD_SIZE];
+        int width = BOARD_SIZE;
+        int height = BOARD_SIZE;
+        int piecesForWin = PIECES_FOR_WIN;
+        boolean useHints = false;
+        long hintTimeMs = TicTacToeHintEngine.DEFAULT_SEARCH_MS;
+        TicTacToeBoard board;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--size")) {
+                    width = Integer.parseInt(args[++i]);
+                    height = Integer.parseInt(args[++i]);
+                    piecesForWin = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--hints")) {
+                    useHints = true;
+                } else if(args[i].equals("--hint-time")) {
+                    hintTimeMs = Long.parseLong(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+            board = new TicTacToeBoard(width, height, piecesForWin);
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        if(useHints && board.getNumSquares() > TicTacToeSearch.MAX_PLY) {
+            System.out.println("Hints need a board of at most " + TicTacToeSearch.MAX_PLY + " squares");
+            return;
+        }
+        TicTacToeHintEngine hints = useHints ? new TicTacToeHintEngine(hintTimeMs) : null;
         Scanner keyboard = new Scanner(System.in);
-        intro();
+        intro(board);
         String[] names = getPlayerNames(keyboard);
-        fillBoard(board);
-        runGame(board, keyboard, names);
+        runGame(board, keyboard, names, hints);
     }
 
 
@@ -50,334 +84,95 @@ public class TicTacToe {
 
     /**
      * Main method that runs the game, turn by turn
-     * @param board 2D Array containing the pieces
+     * @param board The board, empty at the start
      * @param keyboard Scanner used to read user input
+     * @param names Size 2 array of the two player's names
+     * @param hints Where hints come from, or null for none
      */
-    private static void runGame(char[][] board, Scanner keyboard, String[] names) {
-        //Variables
-        boolean someoneHasWon = false; 
-        String player1 = names[0];
-        String player2 = names[1];
-        String winner = null;
-        int maxTurns = board.length * board[0].length;
-        int currentTurn = 0;
-
-        //Main game turn by turn
-        while(!someoneHasWon && (currentTurn < maxTurns)) {
-            //Player 1's turn
-            doPlayerTurn(keyboard, board, names, true);
-            currentTurn++;
-            //Check if P1 has won
-            someoneHasWon = checkIfVictory(board, true);
-            //Player 1 wins
-            if(someoneHasWon) {
-                winner = player1;
-            }
-            //Player 2's turn if P1 hasn't won
-            if(!someoneHasWon && (currentTurn < maxTurns)) {
-                doPlayerTurn(keyboard, board, names, false);
-                someoneHasWon = checkIfVictory(board, false);
-                currentTurn++;
-                //Player 2 wins
-                if(someoneHasWon) {
-                    winner = player2;
-                }
+    private static void runGame(TicTacToeBoard board, Scanner keyboard, String[] names, TicTacToeHintEngine hints) {
+        //Main game turn by turn, until someone wins or the board fills up
+        while(!board.lastMoveWon() && !board.isFull()) {
+            if(hints != null) {
+                hints.ponder(board);
             }
+            doPlayerTurn(keyboard, board, names, hints);
         }
-        printResults(someoneHasWon, winner, board);
-    }
-    
-
-    /**
-     * Prints the results at the end of a match
-     * @param someoneHasWon Whether the game is a draw or win
-     * @param winner Whoever the winner is
-     * @param board 2D Array that contains the pieces of the board
-     */
-    private static void printResults(boolean someoneHasWon, String winner, char[][] board) {
-        if(someoneHasWon) {
-            System.out.println("----------------");
-            System.out.println(winner + " wins!");
-            System.out.println("----------------");
-        } else {
-            System.out.println("-------------------");
-            System.out.println("The game is a draw.");
-            System.out.println("-------------------");
+        //The winner is whoever moved last
+        String winner = null;
+        if(board.lastMoveWon()) {
+            winner = board.getSideToMove() == TicTacToeBoard.PLAYER_TWO ? names[0] : names[1];
         }
-        printBoard(board);
-    } 
+        TicTacToeConsole.recordGame(board);
+        TicTacToeConsole.printResults(board.lastMoveWon(), winner, board);
+    }
 
 
     /**
      * Does a player's turn by informing them then asking for coordinates.
      * @param keyboard Scanner used to read user input
-     * @param board 2D Array representing the board of the game
+     * @param board The board, whose side to move decides which player's turn it is
      * @param names Size 2 array of the two player's names
-     * @param isPlayerOne Used to decide which player's turn should be done
+     * @param hints Where hints come from, or null for none
      */
-    private static void doPlayerTurn(Scanner keyboard, char[][] board, String[] names, boolean isPlayerOne) {
+    private static void doPlayerTurn(Scanner keyboard, TicTacToeBoard board, String[] names,
+                                     TicTacToeHintEngine hints) {
         String name;
-        printBoard(board);
-        if(isPlayerOne) {
+        TicTacToeConsole.printBoard(board);
+        if(hints != null) {
+            printHint(board, hints);
+        }
+        if(board.getSideToMove() == TicTacToeBoard.PLAYER_ONE) {
             name = names[0];
         } else {
             name = names[1];
         }
         System.out.println(name + ", it is your turn.");
-        int[] coordinates = getPlayerChoice(board, keyboard, isPlayerOne);
-        placePiece(board, coordinates, isPlayerOne);
-    }
-
-
-    /**
-     * Places a piece at the selected coordinate spot
-     * @param board 2D Array representing the board of the game
-     * @param coordinates Size 2 int array of the x and y coordinates 
-     * @param isPlayerOne Used to decide which piece should be placed
-     */
-    public static void placePiece(char[][] board, int[] coordinates, boolean isPlayerOne) {
-        char piece;
-        if(isPlayerOne) {
-            piece = PLAYER_ONE_PIECE;
-        } else {
-            piece = PLAYER_TWO_PIECE;
-        }
-        board[coordinates[1]][coordinates[0]] = piece;
+        board.makeMove(TicTacToeConsole.getPlayerChoice(board, keyboard));
     }
 
 
     /**
-     * Checks to see if a victory has been made for the specific player
-     * @param board 2D Array that holds all the pieces
-     * @param isPlayerOne Which player's turn it is
-     * @return Whether or not a victory has been found
+     * Prints the evaluation bar and the best move, or that they will follow once ready
+     * @param board The board, with the player to move
+     * @param hints Where hints come from
      */
-    public static boolean checkIfVictory(char[][] board, boolean isPlayerOne) {
-        int maxRows = board.length;
-        int maxColumns = board[0].length;
-
-        //Select which player's piece we are looking for
-        char teamPiece;
-        if(isPlayerOne) {
-            teamPiece = PLAYER_ONE_PIECE;
+    private static void printHint(TicTacToeBoard board, TicTacToeHintEngine hints) {
+        TicTacToeMoveAnalysis hint = hints.getHint(board, HINT_WAIT_MS);
+        final int width = board.getWidth();
+        final int side = board.getSideToMove();
+        if(hint == null) {
+            System.out.println("Hint: still thinking, it will show up here");
+            hints.whenReady(board, ready -> printHintLines(ready, width, side));
         } else {
-            teamPiece = PLAYER_TWO_PIECE;
+            printHintLines(hint, width, side);
         }
-
-        //Checks each spot of the board where there is a teamPiece for a victory.
-        for(int pieceRow = 0; pieceRow < maxRows; pieceRow++) {
-            for(int pieceCol = 0; pieceCol < maxColumns; pieceCol++) {
-                char currentPiece = board[pieceRow][pieceCol];
-                if(currentPiece == teamPiece) {
-                    boolean isVictory = checkFourDir(board, pieceRow, pieceCol, teamPiece);
-                    if(isVictory){
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-
-    /**
-     * Checks in four directions of a piece to see if there's a victory
-     * @param board 2D Array that contains all the pieces
-     * @param pieceY The Row of the current piece
-     * @param pieceX The Column of the current piece
-     * @param checkP The piece of which team we are supposed to check for
-     * @return Whether or not a victory was found at this piece's directions
-     */
-    public static boolean checkFourDir(char[][] board, int pieceY, int pieceX, char checkP) {
-        int[] rowDirections = {1, 1, 0, -1};
-        int[] colDirections = {0, 1, 1, -1};
-        //For loop that checks for a victory in the 4 necessary directions
-        for(int rowDir = 0; rowDir < rowDirections.length; rowDir++) {
-            //Starts at 1 because of the piece we are already on and analyzing
-            int count = 1;
-            boolean isConsecutive = true;
-            //Reset the initial rows and columns for each direction
-            int curRow = pieceY;
-            int curCol = pieceX;
-            //While we need to keep looking for 4 in a row
-            while(checkIfValidBounds(board, curRow) && checkIfValidBounds(board, curCol)
-                && count != PIECES_FOR_WIN && isConsecutive) {
-                int newRow = curRow + rowDirections[rowDir];
-                int newCol = curCol + colDirections[rowDir];
-                //If the new piece is in range, check to see if it's consecutive to the previous one
-                if(checkIfValidBounds(board, newRow) &&
-                    checkIfValidBounds(board, newCol)) {
-                    isConsecutive = board[curRow][curCol] == board[newRow][newCol];
-                }
-                curRow += rowDirections[rowDir];
-                curCol += colDirections[rowDir];
-                //If our row and column are within range and the piece there is of the same team,
-                //increment count
-                if(checkIfValidBounds(board, curRow) && checkIfValidBounds(board, curCol)
-                    && isConsecutive) {
-                    if(board[curRow][curCol] == checkP) {
-                        count++;
-                    }
-                }
-                //If the count = 4, return that the game has been won!
-                if(count == PIECES_FOR_WIN) {
-                    return true;
-                }
-            }
-        }
-        //Returns false after all 4 directions were checked and not one made count = 4.
-        return false;
-    }
-
-
-    /**
-     * Checks to see if a player input is within bounds of the game
-     * @param board 2D Array representing the board of the game
-     * @param num The number which is to be checked
-     * @return Whether or not it is in bounds/valid.
-     */
-    public static boolean checkIfValidBounds(char[][] board, int num) {
-        return num < board.length && num >= 0;
+        System.out.println();
     }
 
 
     /**
-     * Gets the X and Y Coordinate of where in the array a piece must be placed
-     * @param board 2D Array of the board
-     * @param keyboard Scanner used to read user input
-     * @return X and Y Coordinates packaged in an array
+     * Prints the evaluation bar and the best move
+     * @param hint The hint
+     * @param width The number of columns on the board
+     * @param side The side the hint is for
      */
-    private static int[] getPlayerChoice(char[][] board, Scanner keyboard, boolean isPlayerOne) {
-        boolean isValidCoords = false;
-        int x = -1;
-        int y = -1;
-        //While we do not have valid coordinates, ask for them.
-        while(!isValidCoords) {
-            System.out.print("Select a column: ");
-            x = keyboard.nextInt();
-            System.out.println();
-            if(!checkIfValidBounds(board, x - 1)) {
-                x = whileLoop(keyboard, board, true, x);
-            }
-            System.out.print("Select a row: ");
-            y = keyboard.nextInt(); 
-            System.out.println();
-            if(!checkIfValidBounds(board, y - 1)) {
-                y = whileLoop(keyboard, board, false, y);
-            }
-            isValidCoords = board[y - 1][x - 1] == EMPTY;
-            //If they are not valid, tell them.
-            if(!isValidCoords) {
-                System.out.println("The selected coordinates occupy a piece.\nPlease select a new pair.\n");
-            }
-        }
-        //Two coordinates
-        return new int[] {x - 1, y - 1};
+    private static void printHintLines(TicTacToeMoveAnalysis hint, int width, int side) {
+        int square = hint.getMove();
+        System.out.println(TicTacToeHintEngine.evaluationBar(hint, side));
+        System.out.println("Hint: column " + (square % width + 1) + ", row " + (square / width + 1));
     }
 
 
     /**
-     * Prompts the user for a coordinate until they enter a valid one.
-     * @param keyboard Scanner used to read user input
-     * @param board 2D Array containing the pieces
-     * @param isCol Whether to use "column" or "row"
-     * @param coord The x or y is being recorded
-     * @return The valid integer coordinate x or y.
+     * Prints the introduction to the match
+     * @param board The board, for its size
      */
-    private static int whileLoop(Scanner keyboard, char[][] board, boolean isCol, int coord) {
-        boolean notValid = true;
-        String item;
-        if(isCol) {
-            item = "column";
-        } else {
-            item = "row";
-        }
-        while(notValid) {
-            System.out.println("That is not a valid " + item + ".");
-            System.out.print("Select a " + item + ": ");
-            coord = keyboard.nextInt();
-            notValid = !checkIfValidBounds(board, coord - 1);
-            System.out.println();
-        }
-        return coord;
-    }
-
-
-    //Prints the introduction to the match
-    private static void intro() {
+    private static void intro(TicTacToeBoard board) {
         System.out.println("-----------------------------------------------");
         System.out.println("Welcome to this game of Tic Tac Toe");
-        System.out.println("The current board size is set to " + BOARD_SIZE);
+        System.out.println("The board is " + board.getWidth() + " by " + board.getHeight() + ", "
+            + board.getPiecesForWin() + " in a row wins");
         System.out.println("-----------------------------------------------");
         System.out.println();
     }
-
-
-    /**
-     * Fills the board with empty pieces.
-     * @param board The gameboard array.
-     */
-    private static void fillBoard(char[][] board) {
-        for(int i = 0; i < board.length; i++) {
-            for(int j = 0; j < board.length; j++) {
-                board[i][j] = EMPTY;
-            }
-        }
-    }
-
-
-    /**
-     * Prints the current iteration of the game board.
-     * @param board 2D Array containing the pieces of the board
-     */
-    private static void printBoard(char[][] board) {
-        System.out.println("Current Board: ");
-        System.out.print(" ");
-        for(int a = 1; a <= board.length; a++) {
-            System.out.print(a + " ");
-        }
-        System.out.println();
-        for(int i = 0; i < board.length - 1; i++) {
-            //Prints the pieces and vertical lines at each horizontal line
-            System.out.print(i + 1);
-            for(int j = 0; j < board.length - 1; j++) {
-                System.out.print(board[i][j]);
-                System.out.print("|");
-            }
-            //Horizontal pieces 
-            System.out.print(board[i][2]);
-            System.out.println();
-            //Horizontal Lines
-            for(int k = 0; k < BOARD_SIZE + (BOARD_SIZE); k++) {
-                System.out.print("-");
-            }
-            System.out.println();
-        }
-        System.out.print(BOARD_SIZE);
-        for(int j = 0; j < board.length - 1; j++) {
-            System.out.print(board[2][j]);
-            System.out.print("|");
-        }
-        System.out.println(board[2][2]);
-        System.out.println();
-    }
- 
-
-    /**
-     * Checks to see if the gameBoard is full
-     * @param board 2D Array of the board
-     * @return Whether or not 2D Array is full
-     */
-    public static boolean checkIfFull(char[][] board) {
-        //The moment a piece is empty, returns that the board is indeed NOT full
-        for(int row = 0; row < board.length; row++) {
-            for(int col = 0; col < board.length; col++) {
-                if(board[row][col] == EMPTY) {
-                    return false;
-                }
-            }
-        }
-        //Returns that the board is indeed full if no empty piece was found
-        return true;
-    }
-}
\ No newline at end of file
+}
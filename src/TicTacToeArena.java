@@ -0,0 +1,483 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Plays engines against each other on every core and estimates how much stronger each one is.
+ *
+ * Usage: java TicTacToeArena engine engine [engine ...] [--gauntlet] [--games n] [--size m n k]
+ *                            [--opening plies] [--threads n] [--hash MB] [--seed s]
+ *                            [--sprt elo0 elo1 [alpha beta]]
+ *
+ * Engines are written as a name with optional settings, such as "random", "minimax" (a full
+ * search) or "search:depth=3,threats=false". A search takes depth, movetime, pvs and threats.
+ *
+ * Every pairing plays the given number of games (default 100) in pairs: both games of a pair
+ * start from the same random opening, with colors swapped. Matches are round robin unless
+ * --gauntlet is given, in which case the first engine plays every other one.
+ *
+ * Results are reported as Elo differences with 95% confidence intervals. With --sprt and two
+ * engines, the match stops as soon as the sequential probability ratio test decides whether the
+ * first engine is elo1 stronger (H1) or at most elo0 stronger (H0), defaults alpha = beta = 0.05.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeArena {
+
+    //Constants
+    private final static int DEFAULT_GAMES = 100;
+    private final static int DEFAULT_OPENING_PLIES = 2;
+    private final static int DEFAULT_HASH_MEGABYTES = 4;
+    private final static double DEFAULT_SPRT_ERROR = 0.05;
+    private final static double CONFIDENCE_Z = 1.96;
+    //With SPRT the match stops here if neither hypothesis was accepted by then
+    private final static int SPRT_MAX_GAMES = 100000;
+
+    /**
+     * Something that picks moves
+     */
+    public interface Player {
+        /**
+         * @param board The position, which must be left as it was
+         * @return The move to play
+         */
+        int chooseMove(TicTacToeBoard board);
+    }
+
+    //Settings
+    private final String[] engines;
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final int openingPlies;
+    private final int hashMegabytes;
+    private final long seed;
+
+    //Pairings, and results from the first engine's side: wins, draws, losses
+    private final int[][] pairings;
+    private final int[][] results;
+    private int gamesPlayed;
+
+    //Sequential test, only used with two engines
+    private boolean useSprt;
+    private double elo0;
+    private double elo1;
+    private double lowerBound;
+    private double upperBound;
+    private volatile int sprtResult;
+
+
+    /**
+     * Creates an arena
+     * @param engines The engine specifications
+     * @param gauntlet Whether only the first engine plays the others, instead of every engine playing every other
+     * @param size Width, height and pieces for win of the board
+     * @param openingPlies How many random moves every game starts with
+     * @param hashMegabytes Size of the hash table of each search player
+     * @param seed Where the random openings and random players start from
+     */
+    public TicTacToeArena(String[] engines, boolean gauntlet, int[] size, int openingPlies, int hashMegabytes, long seed) {
+        this.engines = engines;
+        this.width = size[0];
+        this.height = size[1];
+        this.piecesForWin = size[2];
+        this.openingPlies = openingPlies;
+        this.hashMegabytes = hashMegabytes;
+        this.seed = seed;
+        ArrayList<int[]> list = new ArrayList<int[]>();
+        for(int a = 0; a < engines.length; a++) {
+            for(int b = a + 1; b < engines.length; b++) {
+                if(!gauntlet || a == 0) {
+                    list.add(new int[] {a, b});
+                }
+            }
+        }
+        this.pairings = list.toArray(new int[list.size()][]);
+        this.results = new int[pairings.length][3];
+        //Every engine is checked here, before any thread starts
+        for(int i = 0; i < engines.length; i++) {
+            createPlayer(engines[i], 0);
+        }
+    }
+
+
+    //Runs a match from the command line
+    public static void main(String[] args) throws InterruptedException {
+        ArrayList<String> engines = new ArrayList<String>();
+        boolean gauntlet = false;
+        int games = DEFAULT_GAMES;
+        int[] size = {3, 3, 3};
+        int openingPlies = DEFAULT_OPENING_PLIES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = DEFAULT_HASH_MEGABYTES;
+        long seed = System.nanoTime();
+        double[] sprt = null;
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("--gauntlet")) {
+                gauntlet = true;
+            } else if(args[i].equals("--games")) {
+                games = Integer.parseInt(args[++i]);
+            } else if(args[i].equals("--size")) {
+                for(int j = 0; j < 3; j++) {
+                    size[j] = Integer.parseInt(args[++i]);
+                }
+            } else if(args[i].equals("--opening")) {
+                openingPlies = Integer.parseInt(args[++i]);
+            } else if(args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if(args[i].equals("--hash")) {
+                hash = Integer.parseInt(args[++i]);
+            } else if(args[i].equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if(args[i].equals("--sprt")) {
+                sprt = new double[] {Double.parseDouble(args[++i]), Double.parseDouble(args[++i]),
+                    DEFAULT_SPRT_ERROR, DEFAULT_SPRT_ERROR};
+                if(i + 2 < args.length && !args[i + 1].startsWith("--")) {
+                    sprt[2] = Double.parseDouble(args[++i]);
+                    sprt[3] = Double.parseDouble(args[++i]);
+                }
+            } else {
+                engines.add(args[i]);
+            }
+        }
+        if(engines.size() < 2) {
+            System.out.println("Usage: java TicTacToeArena engine engine [engine ...] [--gauntlet] [--games n]"
+                + " [--size m n k] [--opening plies] [--threads n] [--hash MB] [--seed s]"
+                + " [--sprt elo0 elo1 [alpha beta]]");
+            return;
+        }
+
+        TicTacToeArena arena = new TicTacToeArena(engines.toArray(new String[engines.size()]), gauntlet, size,
+            openingPlies, hash, seed);
+        if(sprt != null) {
+            if(engines.size() != 2) {
+                System.out.println("SPRT needs exactly two engines");
+                return;
+            }
+            arena.setSprt(sprt[0], sprt[1], sprt[2], sprt[3]);
+            games = SPRT_MAX_GAMES;
+        }
+        long start = System.currentTimeMillis();
+        arena.run(games, threads);
+        arena.printResults(System.currentTimeMillis() - start);
+    }
+
+
+    /**
+     * Turns on early stopping with a sequential probability ratio test
+     * @param elo0 The Elo difference of the null hypothesis
+     * @param elo1 The Elo difference of the alternative hypothesis
+     * @param alpha How often H1 may be accepted when H0 is true
+     * @param beta How often H0 may be accepted when H1 is true
+     */
+    public void setSprt(double elo0, double elo1, double alpha, double beta) {
+        if(pairings.length != 1) {
+            throw new IllegalStateException("SPRT needs exactly two engines");
+        }
+        this.useSprt = true;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+
+    /**
+     * Plays every pairing's games, spread over threads that each take the next game pair
+     * @param gamesPerPairing How many games each pairing plays, rounded up to a whole pair
+     * @param threads How many games to play at once
+     * @throws InterruptedException If interrupted while waiting for the threads
+     */
+    public void run(int gamesPerPairing, int threads) throws InterruptedException {
+        final int totalPairs = pairings.length * ((gamesPerPairing + 1) / 2);
+        final AtomicInteger nextPair = new AtomicInteger();
+        Thread[] workers = new Thread[Math.max(1, threads)];
+        for(int t = 0; t < workers.length; t++) {
+            final int threadIndex = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    //Players are not thread safe, so every thread has its own
+                    Player[] players = new Player[engines.length];
+                    for(int i = 0; i < engines.length; i++) {
+                        players[i] = createPlayer(engines[i], seed + threadIndex * 7919L + i);
+                    }
+                    int pair;
+                    while(sprtResult == 0 && (pair = nextPair.getAndIncrement()) < totalPairs) {
+                        playPair(pair, players);
+                    }
+                }
+            }, "arena-" + t);
+            workers[t].start();
+        }
+        for(int t = 0; t < workers.length; t++) {
+            workers[t].join();
+        }
+    }
+
+
+    /**
+     * Plays both games of one pair, from the same opening with colors swapped
+     * @param pair Which pair, which also picks its pairing and opening
+     * @param players This thread's players
+     */
+    private void playPair(int pair, Player[] players) {
+        int[] pairing = pairings[pair % pairings.length];
+        int[] opening = makeOpening(new Random(seed ^ (pair * 0x9E3779B97F4A7C15L)));
+        int first = playGame(players[pairing[0]], players[pairing[1]], opening);
+        int second = playGame(players[pairing[1]], players[pairing[0]], opening);
+        synchronized(this) {
+            record(pair % pairings.length, first == TicTacToeBoard.PLAYER_ONE, first == TicTacToeBoard.PLAYER_TWO);
+            record(pair % pairings.length, second == TicTacToeBoard.PLAYER_TWO, second == TicTacToeBoard.PLAYER_ONE);
+            if(useSprt && sprtResult == 0) {
+                double llr = getLogLikelihoodRatio();
+                if(llr >= upperBound) {
+                    sprtResult = 1;
+                } else if(llr <= lowerBound) {
+                    sprtResult = -1;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Adds one game to a pairing's results
+     * @param pairing The pairing
+     * @param firstWon Whether the pairing's first engine won
+     * @param firstLost Whether the pairing's first engine lost
+     */
+    private void record(int pairing, boolean firstWon, boolean firstLost) {
+        results[pairing][firstWon ? 0 : firstLost ? 2 : 1]++;
+        gamesPlayed++;
+    }
+
+
+    /**
+     * Plays random moves from the empty board, none of which ends the game
+     * @param random Where the moves come from
+     * @return The opening's moves
+     */
+    private int[] makeOpening(Random random) {
+        TicTacToeBoard board = new TicTacToeBoard(width, height, piecesForWin);
+        int plies = Math.min(openingPlies, board.getNumSquares() - 1);
+        int[] opening = new int[plies];
+        for(int ply = 0; ply < plies; ply++) {
+            int square;
+            do {
+                square = random.nextInt(board.getNumSquares());
+            } while(!board.isEmpty(square) || board.isWinningMove(square));
+            opening[ply] = square;
+            board.makeMove(square);
+        }
+        return opening;
+    }
+
+
+    /**
+     * Plays one game. A player that makes an illegal move loses.
+     * @param first The player moving first, with X
+     * @param second The player moving second, with O
+     * @param opening The moves to start from
+     * @return PLAYER_ONE or PLAYER_TWO for the winner, or EMPTY for a draw
+     */
+    private int playGame(Player first, Player second, int[] opening) {
+        TicTacToeBoard board = new TicTacToeBoard(width, height, piecesForWin);
+        for(int ply = 0; ply < opening.length; ply++) {
+            board.makeMove(opening[ply]);
+        }
+        while(!board.lastMoveWon() && !board.isFull()) {
+            int side = board.getSideToMove();
+            int move = (side == TicTacToeBoard.PLAYER_ONE ? first : second).chooseMove(board);
+            if(move < 0 || move >= board.getNumSquares() || !board.isEmpty(move)) {
+                return 3 - side;
+            }
+            board.makeMove(move);
+        }
+        return board.lastMoveWon() ? 3 - board.getSideToMove() : TicTacToeBoard.EMPTY;
+    }
+
+
+    /**
+     * Makes a player from its specification
+     * @param spec "random", "minimax", or "search" with optional ":key=value,..." settings
+     * @param playerSeed Where a random player's moves come from
+     * @return The player
+     */
+    private Player createPlayer(String spec, long playerSeed) {
+        String name = spec;
+        String settings = "";
+        if(spec.indexOf(':') >= 0) {
+            name = spec.substring(0, spec.indexOf(':'));
+            settings = spec.substring(spec.indexOf(':') + 1);
+        }
+        if(name.equals("random")) {
+            final Random random = new Random(playerSeed);
+            return new Player() {
+                public int chooseMove(TicTacToeBoard board) {
+                    return board.randomEmptySquare(random);
+                }
+            };
+        } else if(!name.equals("search") && !name.equals("minimax")) {
+            throw new IllegalArgumentException("Unknown engine " + spec);
+        }
+
+        final TicTacToeSearch search = new TicTacToeSearch();
+        search.setHashTable(new TicTacToeHashTable(hashMegabytes));
+        int depth = TicTacToeSearch.MAX_PLY;
+        long moveTime = 0;
+        if(!settings.isEmpty()) {
+            for(String setting : settings.split(",")) {
+                String[] keyValue = setting.split("=");
+                if(keyValue.length != 2) {
+                    throw new IllegalArgumentException("Bad setting " + setting + " in " + spec);
+                }
+                if(keyValue[0].equals("depth")) {
+                    depth = Integer.parseInt(keyValue[1]);
+                } else if(keyValue[0].equals("movetime")) {
+                    moveTime = Long.parseLong(keyValue[1]);
+                } else if(keyValue[0].equals("pvs")) {
+                    search.setUsePvs(Boolean.parseBoolean(keyValue[1]));
+                } else if(keyValue[0].equals("threats")) {
+                    search.setUseThreatSearch(Boolean.parseBoolean(keyValue[1]));
+                } else {
+                    throw new IllegalArgumentException("Unknown setting " + keyValue[0] + " in " + spec);
+                }
+            }
+        }
+        final int maxDepth = depth;
+        final long moveTimeMs = moveTime;
+        return new Player() {
+            public int chooseMove(TicTacToeBoard board) {
+                search.clearStop();
+                return search.search(board, maxDepth, moveTimeMs, null);
+            }
+        };
+    }
+
+
+    /**
+     * The log likelihood ratio of elo1 over elo0 for the results so far, using the normal
+     * approximation of the trinomial score distribution
+     * @return The ratio, positive when elo1 is the more likely
+     */
+    public synchronized double getLogLikelihoodRatio() {
+        //Half a game of each result is added so that a one sided match still has a spread
+        double wins = results[0][0] + 0.5;
+        double draws = results[0][1] + 0.5;
+        double losses = results[0][2] + 0.5;
+        double games = wins + draws + losses;
+        double score = (wins + 0.5 * draws) / games;
+        double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+            + losses * Math.pow(score, 2)) / games;
+        double score0 = scoreFromElo(elo0);
+        double score1 = scoreFromElo(elo1);
+        return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+    }
+
+
+    /**
+     * Prints every engine's Elo against the field, every pairing's results, and the SPRT state
+     * @param timeMs How long the match took
+     */
+    private synchronized void printResults(long timeMs) {
+        System.out.println(gamesPlayed + " games on " + width + "x" + height + " k=" + piecesForWin
+            + " in " + timeMs + " ms");
+        System.out.println(String.format("%-32s %6s %7s %8s  %s", "Engine", "Games", "Score", "Elo", "95% CI"));
+        for(int engine = 0; engine < engines.length; engine++) {
+            //Wins, draws and losses against every opponent put together
+            int[] total = new int[3];
+            for(int p = 0; p < pairings.length; p++) {
+                for(int i = 0; i < 3; i++) {
+                    if(pairings[p][0] == engine) {
+                        total[i] += results[p][i];
+                    } else if(pairings[p][1] == engine) {
+                        total[i] += results[p][2 - i];
+                    }
+                }
+            }
+            int games = total[0] + total[1] + total[2];
+            if(games > 0) {
+                System.out.println(String.format("%-32s %6d %6.1f%% %8s  %s", engines[engine], games,
+                    getScore(total) * 100, eloToString(eloFromScore(getScore(total))), intervalToString(total)));
+            }
+        }
+        System.out.println("Pairings (wins draws losses for the first engine):");
+        for(int p = 0; p < pairings.length; p++) {
+            System.out.println("  " + engines[pairings[p][0]] + " vs " + engines[pairings[p][1]] + ": +"
+                + results[p][0] + " =" + results[p][1] + " -" + results[p][2] + ", Elo "
+                + eloToString(eloFromScore(getScore(results[p]))) + " " + intervalToString(results[p]));
+        }
+        if(useSprt) {
+            String state = sprtResult > 0 ? "H1 accepted" : sprtResult < 0 ? "H0 accepted" : "no decision";
+            System.out.println(String.format("SPRT [%.1f, %.1f]: LLR %.2f (%.2f, %.2f), %s", elo0, elo1,
+                getLogLikelihoodRatio(), lowerBound, upperBound, state));
+        }
+    }
+
+
+    /**
+     * @param result Wins, draws and losses
+     * @return The share of points scored, a draw being half a point
+     */
+    private static double getScore(int[] result) {
+        int games = result[0] + result[1] + result[2];
+        return games == 0 ? 0.5 : (result[0] + 0.5 * result[1]) / games;
+    }
+
+
+    /**
+     * Writes the 95% confidence interval of the Elo difference for some results
+     * @param result Wins, draws and losses
+     * @return The interval, such as "[-12, 40]"
+     */
+    private static String intervalToString(int[] result) {
+        int games = result[0] + result[1] + result[2];
+        if(games < 2) {
+            return "[-inf, +inf]";
+        }
+        double score = getScore(result);
+        double deviation = Math.sqrt((result[0] * Math.pow(1 - score, 2) + result[1] * Math.pow(0.5 - score, 2)
+            + result[2] * Math.pow(score, 2)) / games);
+        double margin = CONFIDENCE_Z * deviation / Math.sqrt(games);
+        return "[" + eloToString(eloFromScore(score - margin)) + ", " + eloToString(eloFromScore(score + margin)) + "]";
+    }
+
+
+    /**
+     * @param score A share of points from 0 to 1
+     * @return The Elo difference that is expected to score it
+     */
+    public static double eloFromScore(double score) {
+        if(score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        } else if(score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+
+    /**
+     * @param elo An Elo difference
+     * @return The share of points it is expected to score
+     */
+    public static double scoreFromElo(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+
+    //Writes an Elo difference rounded to a whole number, with its sign
+    private static String eloToString(double elo) {
+        if(Double.isInfinite(elo)) {
+            return elo > 0 ? "+inf" : "-inf";
+        }
+        return (elo >= 0 ? "+" : "") + Math.round(elo);
+    }
+}
@@ -0,0 +1,560 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Finds the best move and value of every position in a file, using every core.
+ *
+ * Usage: java TicTacToeBatchAnalyzer input output [--depth d] [--movetime ms] [--k k]
+ *                                    [--threads n] [--hash MB]
+ *
+ * The input is positions written as rows of '.', 'X' and 'O', such as TicTacToeBoard prints,
+ * with a blank line between positions. Row numbers and '|' between cells are ignored, and lines
+ * with any other text are skipped, so boards copied from the console games (the "Current Board:"
+ * header, the column numbers and the '-' lines) work too. X moves first, so the side to move
+ * comes from the piece counts. k defaults to the shorter side of each board, at most 5.
+ * Either file can be - for stdin or stdout.
+ *
+ * Every position gets one output line, in input order: its number, the best move and the value
+ * ("win N", "loss N", "cp S"), or "none over", "none draw" or "none invalid".
+ *
+ * The input file is memory mapped and parsed byte by byte straight into batches. A reader
+ * thread fills batches, worker threads analyse them, and the calling thread writes them out in
+ * order. Both queues are bounded, so a slow disk or a slow search holds the others back
+ * instead of filling memory.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeBatchAnalyzer {
+
+    //Constants
+    private final static int DEFAULT_DEPTH = 6;
+    private final static int MAX_DEFAULT_PIECES_FOR_WIN = 5;
+    private final static int BATCH_POSITIONS = 256;
+    private final static int BATCHES_PER_THREAD = 4;
+    private final static int MAP_CHUNK_BYTES = 1 << 28;
+    private final static int READ_BUFFER_BYTES = 1 << 20;
+    private final static int WRITE_BUFFER_BYTES = 1 << 20;
+    //Width of a position whose rows were not all the same length
+    private final static int BAD_SHAPE = -1;
+    private final static String USAGE = "Usage: java TicTacToeBatchAnalyzer input output [--depth d] [--movetime ms]"
+        + " [--k k] [--threads n] [--hash MB]";
+
+    //Settings
+    private final int maxDepth;
+    private final long moveTimeMs;
+    private final int piecesForWin;
+    private final int threads;
+    private final TicTacToeHashTable hashTable;
+
+    //Pipeline, a batch goes into both queues and the writer waits for it to be finished
+    private final ArrayBlockingQueue<Batch> work;
+    private final ArrayBlockingQueue<Batch> ordered;
+    private final static Batch END = new Batch(0);
+    private volatile IOException readError;
+    private volatile RuntimeException workError;
+
+    //Parser state, only touched by the reader thread
+    private Batch batch;
+    private long positionCount;
+    private int lineCells;
+    private boolean lineHasText;
+    private int blockWidth;
+    private int blockHeight;
+    private int blockStart;
+    private boolean blockBad;
+
+
+    /**
+     * A run of positions that travels through the pipeline together
+     */
+    private static class Batch {
+        final long firstNumber;
+        byte[] cells = new byte[BATCH_POSITIONS * 16];
+        int cellCount;
+        final int[] starts = new int[BATCH_POSITIONS];
+        final int[] widths = new int[BATCH_POSITIONS];
+        final int[] heights = new int[BATCH_POSITIONS];
+        int count;
+        byte[] output = new byte[BATCH_POSITIONS * 24];
+        int outputLength;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Batch(long firstNumber) {
+            this.firstNumber = firstNumber;
+        }
+    }
+
+
+    /**
+     * Creates an analyzer
+     * @param maxDepth The deepest iteration to search each position to
+     * @param moveTimeMs How long to search each position for, or 0 for no time limit
+     * @param piecesForWin How many pieces in a row win, or 0 for the default of each board
+     * @param threads How many positions to search at once
+     * @param hashMegabytes Size of the hash table every worker shares
+     */
+    public TicTacToeBatchAnalyzer(int maxDepth, long moveTimeMs, int piecesForWin, int threads, int hashMegabytes) {
+        this.maxDepth = maxDepth;
+        this.moveTimeMs = moveTimeMs;
+        this.piecesForWin = piecesForWin;
+        this.threads = Math.max(1, threads);
+        this.hashTable = new TicTacToeHashTable(hashMegabytes);
+        this.work = new ArrayBlockingQueue<Batch>(this.threads * BATCHES_PER_THREAD);
+        this.ordered = new ArrayBlockingQueue<Batch>(this.threads * BATCHES_PER_THREAD);
+    }
+
+
+    //Analyses a file from the command line
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int depth = DEFAULT_DEPTH;
+        long moveTime = 0;
+        int piecesForWin = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = TicTacToeHashTable.DEFAULT_MEGABYTES;
+        if(args.length < 2) {
+            System.out.println(USAGE);
+            return;
+        }
+        try {
+            for(int i = 2; i < args.length; i++) {
+                if(args[i].equals("--depth")) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--movetime")) {
+                    moveTime = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--k")) {
+                    piecesForWin = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--hash")) {
+                    hash = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        TicTacToeBatchAnalyzer analyzer = new TicTacToeBatchAnalyzer(depth, moveTime, piecesForWin, threads, hash);
+        long start = System.currentTimeMillis();
+        OutputStream out = args[1].equals("-") ? System.out : new FileOutputStream(args[1]);
+        long count = analyzer.run(args[0], out);
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        System.err.println("Analyzed " + count + " positions in " + time + " ms ("
+            + count * 1000 / time + " per second)");
+    }
+
+
+    /**
+     * Analyses every position in a file and writes the results
+     * @param inputPath The file to read, or - for stdin
+     * @param out Where the results go, closed at the end
+     * @return How many positions were analysed
+     * @throws IOException If the input can not be read or the output can not be written
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public long run(final String inputPath, OutputStream out) throws IOException, InterruptedException {
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                readInput(inputPath);
+            }
+        }, "batch-reader");
+        reader.setDaemon(true);
+        reader.start();
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    analyzeBatches();
+                }
+            }, "batch-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        //Batches come off this queue in input order, each one is written once it is finished
+        long written = 0;
+        boolean finished = false;
+        try {
+            try(OutputStream buffered = new BufferedOutputStream(out, WRITE_BUFFER_BYTES)) {
+                while(true) {
+                    Batch next = ordered.take();
+                    if(next == END) {
+                        break;
+                    }
+                    next.done.await();
+                    buffered.write(next.output, 0, next.outputLength);
+                    written += next.count;
+                }
+            }
+            finished = true;
+        } finally {
+            //Nobody takes from the queues once writing fails, so wake the threads blocked on them
+            if(!finished) {
+                reader.interrupt();
+                for(int i = 0; i < threads; i++) {
+                    workers[i].interrupt();
+                }
+            }
+            reader.join();
+            for(int i = 0; i < threads; i++) {
+                workers[i].join();
+            }
+        }
+        if(readError != null) {
+            throw readError;
+        }
+        if(workError != null) {
+            throw workError;
+        }
+        return written;
+    }
+
+
+    /**
+     * Reads the input in large blocks, a memory map for files and a direct buffer for stdin,
+     * and hands the positions found to the workers. Runs on the reader thread.
+     * @param inputPath The file to read, or - for stdin
+     */
+    private void readInput(String inputPath) {
+        try {
+            batch = new Batch(1);
+            if(inputPath.equals("-")) {
+                ReadableByteChannel channel = Channels.newChannel(System.in);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+                while(channel.read(buffer) != -1) {
+                    buffer.flip();
+                    parse(buffer);
+                    buffer.clear();
+                }
+            } else {
+                try(FileChannel channel = FileChannel.open(Paths.get(inputPath), StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    for(long position = 0; position < size; position += MAP_CHUNK_BYTES) {
+                        long length = Math.min(MAP_CHUNK_BYTES, size - position);
+                        parse(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                    }
+                }
+            }
+            endLine();
+            endBlock();
+            if(batch.count > 0) {
+                dispatch();
+            }
+        } catch(IOException e) {
+            readError = e;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //Every worker and the writer need to see the end, even after an error
+            try {
+                for(int i = 0; i < threads; i++) {
+                    work.put(END);
+                }
+                ordered.put(END);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * Turns bytes into cells of the current batch. A block can be split between two calls.
+     * @param buffer The bytes to parse, from its position to its limit
+     * @throws InterruptedException If interrupted while waiting for room in the queues
+     */
+    private void parse(ByteBuffer buffer) throws InterruptedException {
+        while(buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if(b == '\n') {
+                endLine();
+            } else if(b == '.') {
+                addCell(TicTacToeBoard.EMPTY);
+            } else if(b == 'X' || b == 'x') {
+                addCell(TicTacToeBoard.PLAYER_ONE);
+            } else if(b == 'O' || b == 'o') {
+                addCell(TicTacToeBoard.PLAYER_TWO);
+            } else if(b > ' ' && b != '|' && (b < '0' || b > '9')) {
+                //Anything but a row number or a separator makes this a line of text, not a row
+                lineHasText = true;
+            }
+        }
+    }
+
+
+    /**
+     * Adds one cell to the position being read
+     * @param piece What is on the cell
+     */
+    private void addCell(int piece) {
+        if(batch.cellCount == batch.cells.length) {
+            byte[] bigger = new byte[batch.cells.length * 2];
+            System.arraycopy(batch.cells, 0, bigger, 0, batch.cellCount);
+            batch.cells = bigger;
+        }
+        batch.cells[batch.cellCount++] = (byte) piece;
+        lineCells++;
+    }
+
+
+    /**
+     * Finishes a line: a line of only cells, separators and a row number is a row, a blank line
+     * ends the position, and anything else (such as a row of dashes, or "Current Board:" with
+     * its 'o') is skipped
+     * @throws InterruptedException If interrupted while waiting for room in the queues
+     */
+    private void endLine() throws InterruptedException {
+        if(lineCells > 0 && !lineHasText) {
+            if(blockHeight == 0) {
+                blockWidth = lineCells;
+            } else if(lineCells != blockWidth) {
+                blockBad = true;
+            }
+            blockHeight++;
+        } else if(lineCells > 0) {
+            //Cells read from a line of text are taken back
+            batch.cellCount -= lineCells;
+        } else if(!lineHasText) {
+            endBlock();
+        }
+        lineCells = 0;
+        lineHasText = false;
+    }
+
+
+    /**
+     * Adds the position being read to the batch, sending the batch off once it is full
+     * @throws InterruptedException If interrupted while waiting for room in the queues
+     */
+    private void endBlock() throws InterruptedException {
+        if(blockHeight == 0) {
+            return;
+        }
+        batch.starts[batch.count] = blockStart;
+        batch.widths[batch.count] = blockBad ? BAD_SHAPE : blockWidth;
+        batch.heights[batch.count] = blockHeight;
+        batch.count++;
+        positionCount++;
+        blockHeight = 0;
+        blockBad = false;
+        blockStart = batch.cellCount;
+        if(batch.count == BATCH_POSITIONS) {
+            dispatch();
+            batch = new Batch(positionCount + 1);
+            blockStart = 0;
+        }
+    }
+
+
+    /**
+     * Sends the current batch to the workers and the writer. Blocks while too many batches
+     * are already waiting to be searched or written.
+     * @throws InterruptedException If interrupted while waiting for room in the queues
+     */
+    private void dispatch() throws InterruptedException {
+        ordered.put(batch);
+        work.put(batch);
+    }
+
+
+    //Searches batches until the reader runs out. Runs on each worker thread.
+    private void analyzeBatches() {
+        TicTacToeSearch search = new TicTacToeSearch();
+        search.setHashTable(hashTable);
+        TicTacToeBoard board = null;
+        try {
+            while(true) {
+                Batch next = work.take();
+                if(next == END) {
+                    return;
+                }
+                try {
+                    for(int i = 0; i < next.count; i++) {
+                        board = analyze(next, i, board, search);
+                    }
+                } catch(RuntimeException e) {
+                    //Kept for run to throw; the thread goes on so the other batches still finish
+                    if(workError == null) {
+                        workError = e;
+                    }
+                    board = null;
+                } finally {
+                    //The writer waits for every batch, failed or not
+                    next.done.countDown();
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Analyses one position of a batch and writes its result line to the batch
+     * @param batch The batch
+     * @param index Which of its positions
+     * @param board A board left from the last position, reused when it is the same size, or null
+     * @param search The worker's search
+     * @return The board that was used, to reuse for the next position
+     */
+    private TicTacToeBoard analyze(Batch batch, int index, TicTacToeBoard board, TicTacToeSearch search) {
+        appendNumber(batch, batch.firstNumber + index);
+        appendText(batch, " ");
+        int width = batch.widths[index];
+        int height = batch.heights[index];
+        if(width == BAD_SHAPE || width * height > TicTacToeSearch.MAX_PLY) {
+            appendText(batch, "none invalid\n");
+            return board;
+        }
+        int k = piecesForWin;
+        if(k <= 0) {
+            k = Math.min(Math.min(width, height), MAX_DEFAULT_PIECES_FOR_WIN);
+        }
+        if(board == null || board.getWidth() != width || board.getHeight() != height
+                || board.getPiecesForWin() != k) {
+            board = new TicTacToeBoard(width, height, k);
+        } else {
+            board.clear();
+        }
+
+        int result = setUp(board, batch.cells, batch.starts[index]);
+        if(result == TicTacToeBoard.NO_MOVE) {
+            appendText(batch, "none invalid\n");
+        } else if(board.lastMoveWon()) {
+            appendText(batch, "none over\n");
+        } else if(board.isFull()) {
+            appendText(batch, "none draw\n");
+        } else {
+            search.clearStop();
+            int move = search.search(board, maxDepth, moveTimeMs, null);
+            appendMove(batch, move, width);
+            appendText(batch, " ");
+            appendText(batch, TicTacToeSearch.scoreToString(search.getBestScore()));
+            appendText(batch, "\n");
+        }
+        return board;
+    }
+
+
+    /**
+     * Plays the pieces of a position onto an empty board, X and O taking turns, stopping early
+     * if any of them completes a line
+     * @param board An empty board of the position's size
+     * @param cells The batch's cells
+     * @param start Where the position's cells begin
+     * @return How many pieces were played, or NO_MOVE if the piece counts are impossible
+     */
+    private static int setUp(TicTacToeBoard board, byte[] cells, int start) {
+        int squares = board.getNumSquares();
+        int xCount = 0;
+        int oCount = 0;
+        for(int square = 0; square < squares; square++) {
+            if(cells[start + square] == TicTacToeBoard.PLAYER_ONE) {
+                xCount++;
+            } else if(cells[start + square] == TicTacToeBoard.PLAYER_TWO) {
+                oCount++;
+            }
+        }
+        if(xCount != oCount && xCount != oCount + 1) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+
+        //Walk each side's pieces with its own cursor, taking turns
+        int[] nextSquare = {0, 0, 0};
+        for(int played = 0; played < xCount + oCount; played++) {
+            int side = board.getSideToMove();
+            int square = nextSquare[side];
+            while(cells[start + square] != side) {
+                square++;
+            }
+            nextSquare[side] = square + 1;
+            board.makeMove(square);
+            if(board.lastMoveWon()) {
+                return played + 1;
+            }
+        }
+        return xCount + oCount;
+    }
+
+
+    /**
+     * Writes a move to a batch's output as a column letter and a row number
+     * @param batch The batch
+     * @param square The move, or NO_MOVE
+     * @param width The board's width
+     */
+    private static void appendMove(Batch batch, int square, int width) {
+        if(square == TicTacToeBoard.NO_MOVE) {
+            appendText(batch, "none");
+            return;
+        }
+        ensureOutput(batch, 1);
+        batch.output[batch.outputLength++] = (byte) ('a' + square % width);
+        appendNumber(batch, square / width + 1);
+    }
+
+
+    /**
+     * Writes a non-negative number to a batch's output
+     * @param batch The batch
+     * @param number The number
+     */
+    private static void appendNumber(Batch batch, long number) {
+        int digits = 1;
+        for(long rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureOutput(batch, digits);
+        for(int i = batch.outputLength + digits - 1; i >= batch.outputLength; i--) {
+            batch.output[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        batch.outputLength += digits;
+    }
+
+
+    /**
+     * Writes plain ASCII text to a batch's output
+     * @param batch The batch
+     * @param text The text
+     */
+    private static void appendText(Batch batch, String text) {
+        ensureOutput(batch, text.length());
+        for(int i = 0; i < text.length(); i++) {
+            batch.output[batch.outputLength++] = (byte) text.charAt(i);
+        }
+    }
+
+
+    /**
+     * Grows a batch's output so that it has room for more bytes
+     * @param batch The batch
+     * @param extra How many more bytes are needed
+     */
+    private static void ensureOutput(Batch batch, int extra) {
+        if(batch.outputLength + extra > batch.output.length) {
+            byte[] bigger = new byte[Math.max(batch.output.length * 2, batch.outputLength + extra)];
+            System.arraycopy(batch.output, 0, bigger, 0, batch.outputLength);
+            batch.output = bigger;
+        }
+    }
+}
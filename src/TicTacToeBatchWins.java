@@ -0,0 +1,251 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Checks many independent boards for a win at once, for simulations and analyses that would
+ * otherwise replay every board move by move to find out if it is over.
+ *
+ * A board of up to 64 squares is one long per side, square row * width + col being bit
+ * row * width + col, and every line of k squares on the board is a mask. A side has won when
+ * one of its masks is all set in its long. This class tests the masks one board at a time,
+ * and TicTacToeVectorWins tests them against a whole vector of boards per instruction using
+ * the jdk.incubator.vector module. create picks the vector version when the module is there.
+ *
+ * Benchmark: java --add-modules jdk.incubator.vector TicTacToeBatchWins [--size m n k]
+ *                 [--boards n] [--rounds r]
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeBatchWins {
+
+    //Constants
+    private final static int[] ROW_DIRECTIONS = {1, 1, 0, 1};
+    private final static int[] COL_DIRECTIONS = {0, 1, 1, -1};
+    private final static String VECTOR_MODULE = "jdk.incubator.vector";
+    private final static String VECTOR_CLASS = "TicTacToeVectorWins";
+    private final static int DEFAULT_BOARDS = 1 << 20;
+    private final static int DEFAULT_ROUNDS = 20;
+    //Chance of a square holding a piece in the benchmark boards, about half of which have a line
+    private final static double BENCHMARK_FILL = 0.4;
+
+    //Every line of piecesForWin squares on the board
+    protected final long[] masks;
+    private final int width;
+    private final int height;
+
+
+    /**
+     * Lays out the line masks for a board size
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeBatchWins(int width, int height, int piecesForWin) {
+        if(width < 1 || height < 1 || piecesForWin < 1) {
+            throw new IllegalArgumentException("Board dimensions must be positive");
+        }
+        if(width * height > 64) {
+            throw new IllegalArgumentException("A " + width + "x" + height + " board does not fit in 64 bits");
+        }
+        this.width = width;
+        this.height = height;
+        long[] found = new long[4 * width * height];
+        int count = 0;
+        for(int row = 0; row < height; row++) {
+            for(int col = 0; col < width; col++) {
+                for(int d = 0; d < ROW_DIRECTIONS.length; d++) {
+                    long mask = 0;
+                    for(int i = 0; i < piecesForWin && mask != -1; i++) {
+                        int r = row + i * ROW_DIRECTIONS[d];
+                        int c = col + i * COL_DIRECTIONS[d];
+                        mask = r < height && c >= 0 && c < width ? mask | (1L << (r * width + c)) : -1;
+                    }
+                    //A piecesForWin of 1 finds the same one square line in every direction
+                    if(mask != -1 && (d == 0 || piecesForWin > 1)) {
+                        found[count++] = mask;
+                    }
+                }
+            }
+        }
+        this.masks = Arrays.copyOf(found, count);
+    }
+
+
+    /**
+     * Makes the fastest detector this JVM can run: the vector one when the program was
+     * started with --add-modules jdk.incubator.vector, the scalar one otherwise
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @return The detector
+     */
+    public static TicTacToeBatchWins create(int width, int height, int piecesForWin) {
+        if(ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                //Loaded by name so this class still links when the module is missing
+                return (TicTacToeBatchWins) Class.forName(VECTOR_CLASS)
+                    .getConstructor(int.class, int.class, int.class)
+                    .newInstance(width, height, piecesForWin);
+            } catch(ReflectiveOperationException | LinkageError e) {
+                //Falls back to the scalar version below
+            }
+        }
+        return new TicTacToeBatchWins(width, height, piecesForWin);
+    }
+
+
+    /**
+     * Checks a run of boards for a line
+     * @param boards One side's pieces on each board
+     * @param count How many boards to check, from the start of the array
+     * @param wins Set to whether each board has a line
+     * @return How many boards have a line
+     */
+    public int findWins(long[] boards, int count, boolean[] wins) {
+        return findWinsScalar(boards, 0, count, wins);
+    }
+
+
+    /**
+     * The plain loop, also used by the vector version for the boards left over after the last
+     * full vector
+     * @param boards One side's pieces on each board
+     * @param from The first board to check
+     * @param to One past the last board to check
+     * @param wins Set to whether each board has a line
+     * @return How many boards have a line
+     */
+    protected final int findWinsScalar(long[] boards, int from, int to, boolean[] wins) {
+        int found = 0;
+        for(int i = from; i < to; i++) {
+            long bits = boards[i];
+            boolean won = false;
+            for(int m = 0; m < masks.length; m++) {
+                if((bits & masks[m]) == masks[m]) {
+                    won = true;
+                    break;
+                }
+            }
+            wins[i] = won;
+            if(won) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Packs one side's pieces into the layout findWins reads
+     * @param board A board of the detector's size
+     * @param side PLAYER_ONE or PLAYER_TWO
+     * @return The side's pieces, square i as bit i
+     */
+    public long toBitboard(TicTacToeBoard board, int side) {
+        long bits = 0;
+        for(int square = 0; square < width * height; square++) {
+            if(board.getPiece(square) == side) {
+                bits |= 1L << square;
+            }
+        }
+        return bits;
+    }
+
+
+    /**
+     * @return What kind of detector this is, for printing
+     */
+    public String getName() {
+        return "scalar";
+    }
+
+
+    public int getNumMasks() {
+        return masks.length;
+    }
+
+
+    //Times the scalar detector against the one create picks on the same random boards
+    public static void main(String[] args) {
+        int width = 3;
+        int height = 3;
+        int piecesForWin = 3;
+        int boardCount = DEFAULT_BOARDS;
+        int rounds = DEFAULT_ROUNDS;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--size")) {
+                    width = Integer.parseInt(args[++i]);
+                    height = Integer.parseInt(args[++i]);
+                    piecesForWin = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--boards")) {
+                    boardCount = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--rounds")) {
+                    rounds = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println("Usage: java --add-modules jdk.incubator.vector TicTacToeBatchWins"
+                + " [--size m n k] [--boards n] [--rounds r]");
+            return;
+        }
+
+        TicTacToeBatchWins scalar = new TicTacToeBatchWins(width, height, piecesForWin);
+        TicTacToeBatchWins best = create(width, height, piecesForWin);
+        long[] boards = new long[boardCount];
+        Random random = new Random(1);
+        for(int i = 0; i < boardCount; i++) {
+            for(int square = 0; square < width * height; square++) {
+                if(random.nextDouble() < BENCHMARK_FILL) {
+                    boards[i] |= 1L << square;
+                }
+            }
+        }
+        boolean[] scalarWins = new boolean[boardCount];
+        boolean[] bestWins = new boolean[boardCount];
+        System.out.println(width + "x" + height + " k=" + piecesForWin + ", " + scalar.getNumMasks() + " lines, "
+            + boardCount + " boards, " + rounds + " rounds");
+        long scalarNanos = time(scalar, boards, scalarWins, rounds);
+        long bestNanos = time(best, boards, bestWins, rounds);
+        if(!Arrays.equals(scalarWins, bestWins)) {
+            System.out.println("The " + best.getName() + " detector disagrees with the scalar one");
+            return;
+        }
+        System.out.printf("scalar: %.1f M boards/s%n", (double) boardCount * rounds * 1000 / scalarNanos);
+        if(!best.getName().equals(scalar.getName())) {
+            System.out.printf("%s: %.1f M boards/s, %.2fx%n", best.getName(),
+                (double) boardCount * rounds * 1000 / bestNanos, (double) scalarNanos / bestNanos);
+        } else {
+            System.out.println("Run with --add-modules " + VECTOR_MODULE + " to compare against the vector detector");
+        }
+    }
+
+
+    /**
+     * Runs a detector over the boards a few times to warm it up, then times it
+     * @param detector The detector
+     * @param boards The boards
+     * @param wins Where the results go
+     * @param rounds How many timed passes to make
+     * @return The time the timed passes took, in nanoseconds
+     */
+    private static long time(TicTacToeBatchWins detector, long[] boards, boolean[] wins, int rounds) {
+        for(int i = 0; i < Math.max(3, rounds / 4); i++) {
+            detector.findWins(boards, boards.length, wins);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < rounds; i++) {
+            detector.findWins(boards, boards.length, wins);
+        }
+        return System.nanoTime() - start;
+    }
+}
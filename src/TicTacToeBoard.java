@@ -0,0 +1,496 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * A generalized m x n board where k pieces in a row win, used by the engine.
+ * Squares are single ints (row * width + column) so moves can be made and unmade
+ * without creating any objects.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeBoard {
+
+    //Constants
+    public final static int EMPTY = 0;
+    public final static int PLAYER_ONE = 1;
+    public final static int PLAYER_TWO = 2;
+    public final static int NO_MOVE = -1;
+    private final static int[] ROW_DIRECTIONS = {1, 1, 0, 1};
+    private final static int[] COL_DIRECTIONS = {0, 1, 1, -1};
+    public final static int DEFAULT_CANDIDATE_DISTANCE = 2;
+    //Boards up to this many squares are small enough to always search every empty square
+    private final static int SPARSE_MIN_SQUARES = 49;
+    //Fixed so that hashes stay the same between runs and can be saved to files
+    private final static long ZOBRIST_SEED = 0x5DEECE66DL;
+
+    //Board state
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final byte[] cells;
+    private final int[] moveStack;
+    private int moveCount;
+    private int sideToMove;
+    private boolean lastMoveWon;
+
+    //Candidate moves: empty squares within candidateDistance of a piece, kept up to date
+    //on every make and unmake so that listing them never scans the whole board
+    private int candidateDistance;
+    private int[][] neighbors;
+    private final int[] nearbyPieces;
+    private final long[] frontier;
+
+    //Zobrist hash of the position, one random number per piece per square xored together
+    private final long[][] zobrist;
+    private long hash;
+
+    //Heuristic score, kept up to date on every make and unmake
+    private final TicTacToeEvaluator evaluator;
+
+
+    /**
+     * Creates an empty board
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeBoard(int width, int height, int piecesForWin) {
+        if(width < 1 || height < 1 || piecesForWin < 1) {
+            throw new IllegalArgumentException("Board dimensions must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+        this.cells = new byte[width * height];
+        this.moveStack = new int[width * height];
+        this.sideToMove = PLAYER_ONE;
+        this.nearbyPieces = new int[width * height];
+        this.frontier = new long[(width * height + 63) / 64];
+        this.evaluator = new TicTacToeEvaluator(width, height, piecesForWin);
+        this.zobrist = new long[3][width * height];
+        Random random = new Random(ZOBRIST_SEED);
+        for(int side = PLAYER_ONE; side <= PLAYER_TWO; side++) {
+            for(int square = 0; square < width * height; square++) {
+                zobrist[side][square] = random.nextLong();
+            }
+        }
+        //Start from a number made from the board's shape, so that different sizes never share hashes
+        this.hash = new Random(ZOBRIST_SEED ^ (width * 65536L + height * 256L + piecesForWin)).nextLong();
+        if(width * height > SPARSE_MIN_SQUARES) {
+            setCandidateDistance(DEFAULT_CANDIDATE_DISTANCE);
+        } else {
+            setCandidateDistance(0);
+        }
+    }
+
+
+    /**
+     * Sets how close to an existing piece a square must be to count as a candidate move
+     * @param distance The largest row or column distance, or 0 to use every empty square
+     */
+    public void setCandidateDistance(int distance) {
+        if(distance < 0) {
+            throw new IllegalArgumentException("Candidate distance can not be negative");
+        }
+        candidateDistance = distance;
+        neighbors = new int[cells.length][];
+        for(int square = 0; square < cells.length; square++) {
+            neighbors[square] = findNeighbors(square, distance);
+        }
+        //Rebuild the frontier for the pieces already on the board
+        Arrays.fill(nearbyPieces, 0);
+        Arrays.fill(frontier, 0);
+        for(int i = 0; i < moveCount; i++) {
+            addToFrontier(moveStack[i]);
+        }
+    }
+
+
+    /**
+     * Lists the squares around a square, not including itself
+     * @param square The square in the middle
+     * @param distance The largest row or column distance
+     * @return The squares that are on the board
+     */
+    private int[] findNeighbors(int square, int distance) {
+        int row = square / width;
+        int col = square % width;
+        int[] found = new int[(2 * distance + 1) * (2 * distance + 1)];
+        int count = 0;
+        for(int r = row - distance; r <= row + distance; r++) {
+            for(int c = col - distance; c <= col + distance; c++) {
+                if(isValidBounds(r, c) && !(r == row && c == col)) {
+                    found[count++] = r * width + c;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+
+    /**
+     * Makes a separate board with the same size, settings and moves, for another thread to use
+     * @return The copy
+     */
+    public TicTacToeBoard copy() {
+        TicTacToeBoard copy = new TicTacToeBoard(width, height, piecesForWin);
+        copy.setCandidateDistance(candidateDistance);
+        copy.evaluator.setWeights(evaluator.getWeights());
+        for(int i = 0; i < moveCount; i++) {
+            copy.makeMove(moveStack[i]);
+        }
+        return copy;
+    }
+
+
+    /**
+     * Removes every piece from the board and gives the move back to player one
+     */
+    public void clear() {
+        while(moveCount > 0) {
+            unmakeMove();
+        }
+        sideToMove = PLAYER_ONE;
+        lastMoveWon = false;
+    }
+
+
+    /**
+     * Places a piece for the side to move and passes the turn
+     * @param square The square to play on
+     */
+    public void makeMove(int square) {
+        cells[square] = (byte) sideToMove;
+        moveStack[moveCount++] = square;
+        if(candidateDistance > 0) {
+            addToFrontier(square);
+        }
+        evaluator.update(square, sideToMove, 1);
+        hash ^= zobrist[sideToMove][square];
+        lastMoveWon = checkFourDir(square, sideToMove);
+        sideToMove = 3 - sideToMove;
+    }
+
+
+    /**
+     * Takes back the last move made
+     */
+    public void unmakeMove() {
+        int square = moveStack[--moveCount];
+        cells[square] = EMPTY;
+        if(candidateDistance > 0) {
+            removeFromFrontier(square);
+        }
+        sideToMove = 3 - sideToMove;
+        evaluator.update(square, sideToMove, -1);
+        hash ^= zobrist[sideToMove][square];
+        //A position is only ever reached without a win before it, so taking back leaves no win
+        lastMoveWon = false;
+    }
+
+
+    /**
+     * Marks the empty squares around a newly placed piece as candidates
+     * @param square Where the piece was placed
+     */
+    private void addToFrontier(int square) {
+        frontier[square >>> 6] &= ~(1L << square);
+        int[] around = neighbors[square];
+        for(int i = 0; i < around.length; i++) {
+            int next = around[i];
+            nearbyPieces[next]++;
+            if(cells[next] == EMPTY) {
+                frontier[next >>> 6] |= 1L << next;
+            }
+        }
+    }
+
+
+    /**
+     * Unmarks the squares that only were candidates because of a removed piece
+     * @param square Where the piece was removed from
+     */
+    private void removeFromFrontier(int square) {
+        int[] around = neighbors[square];
+        for(int i = 0; i < around.length; i++) {
+            int next = around[i];
+            nearbyPieces[next]--;
+            if(nearbyPieces[next] == 0) {
+                frontier[next >>> 6] &= ~(1L << next);
+            }
+        }
+        if(nearbyPieces[square] > 0) {
+            frontier[square >>> 6] |= 1L << square;
+        }
+    }
+
+
+    /**
+     * Lists the moves worth searching: every empty square on an empty board or when
+     * candidates are turned off, otherwise only the empty squares near a piece
+     * @param list Where the moves are written, must have room for every square
+     * @return How many moves were written
+     */
+    public int generateMoves(int[] list) {
+        int count = 0;
+        if(candidateDistance > 0 && moveCount > 0) {
+            for(int word = 0; word < frontier.length; word++) {
+                long bits = frontier[word];
+                while(bits != 0) {
+                    list[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        //Every square near a piece is taken, so fall back to the whole board
+        if(count == 0) {
+            for(int square = 0; square < cells.length; square++) {
+                if(cells[square] == EMPTY) {
+                    list[count++] = square;
+                }
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Picks an empty square, every one equally likely
+     * @param random Where the choice comes from
+     * @return The square, or NO_MOVE when the board is full
+     */
+    public int randomEmptySquare(Random random) {
+        int skip = cells.length - moveCount;
+        if(skip == 0) {
+            return NO_MOVE;
+        }
+        skip = random.nextInt(skip);
+        for(int square = 0; square < cells.length; square++) {
+            if(cells[square] == EMPTY && skip-- == 0) {
+                return square;
+            }
+        }
+        return NO_MOVE;
+    }
+
+
+    /**
+     * Checks if the side to move would win by playing a square, without playing it
+     * @param square An empty square
+     * @return Whether the move would make k in a row
+     */
+    public boolean isWinningMove(int square) {
+        return checkFourDir(square, sideToMove);
+    }
+
+
+    /**
+     * The hash the position would have after the side to move plays a square
+     * @param square An empty square
+     * @return The hash after the move
+     */
+    public long hashAfter(int square) {
+        return hash ^ zobrist[sideToMove][square];
+    }
+
+
+    /**
+     * Checks in four directions of a piece to see if it completes k in a row
+     * @param square The square of the piece that was just placed
+     * @param piece The piece of which team we are supposed to check for
+     * @return Whether or not a victory goes through this square
+     */
+    private boolean checkFourDir(int square, int piece) {
+        int row = square / width;
+        int col = square % width;
+        for(int dir = 0; dir < ROW_DIRECTIONS.length; dir++) {
+            // Starts at 1 because of the piece we are already on
+            int count = 1;
+            count += countInDirection(row, col, ROW_DIRECTIONS[dir], COL_DIRECTIONS[dir], piece);
+            count += countInDirection(row, col, -ROW_DIRECTIONS[dir], -COL_DIRECTIONS[dir], piece);
+            if(count >= piecesForWin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Counts consecutive pieces of one team walking away from a square
+     * @param row The row to start from (not counted)
+     * @param col The column to start from (not counted)
+     * @param rowDir The row step
+     * @param colDir The column step
+     * @param piece The piece being counted
+     * @return How many consecutive pieces were found
+     */
+    private int countInDirection(int row, int col, int rowDir, int colDir, int piece) {
+        int count = 0;
+        int curRow = row + rowDir;
+        int curCol = col + colDir;
+        while(isValidBounds(curRow, curCol) && cells[curRow * width + curCol] == piece) {
+            count++;
+            curRow += rowDir;
+            curCol += colDir;
+        }
+        return count;
+    }
+
+
+    /**
+     * Checks to see if a row and column are on the board
+     * @param row The row to check
+     * @param col The column to check
+     * @return Whether or not it is in bounds
+     */
+    public boolean isValidBounds(int row, int col) {
+        return row >= 0 && row < height && col >= 0 && col < width;
+    }
+
+
+    /**
+     * Parses a move written as a column letter and a row number, such as "b2"
+     * @param text The move text
+     * @return The square, or NO_MOVE when the text is not a legal empty square
+     */
+    public int parseMove(String text) {
+        if(text == null || text.length() < 2) {
+            return NO_MOVE;
+        }
+        int col = Character.toLowerCase(text.charAt(0)) - 'a';
+        int row;
+        try {
+            row = Integer.parseInt(text.substring(1)) - 1;
+        } catch(NumberFormatException e) {
+            return NO_MOVE;
+        }
+        if(!isValidBounds(row, col) || cells[row * width + col] != EMPTY) {
+            return NO_MOVE;
+        }
+        return row * width + col;
+    }
+
+
+    /**
+     * Writes a square as a column letter and a row number, such as "b2"
+     * @param square The square to write
+     * @return The move text
+     */
+    public String moveToString(int square) {
+        if(square == NO_MOVE) {
+            return "none";
+        }
+        return "" + (char) ('a' + square % width) + (square / width + 1);
+    }
+
+
+    /**
+     * Prints the board in rows of '.', 'X' and 'O'
+     * @return The board with one row per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for(int row = 0; row < height; row++) {
+            for(int col = 0; col < width; col++) {
+                int piece = cells[row * width + col];
+                if(piece == PLAYER_ONE) {
+                    text.append('X');
+                } else if(piece == PLAYER_TWO) {
+                    text.append('O');
+                } else {
+                    text.append('.');
+                }
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+
+    public int getWidth() {
+        return width;
+    }
+
+
+    public int getHeight() {
+        return height;
+    }
+
+
+    public int getPiecesForWin() {
+        return piecesForWin;
+    }
+
+
+    public int getNumSquares() {
+        return cells.length;
+    }
+
+
+    /**
+     * Scores a position that is not over yet for the side to move
+     * @return Positive when the side to move is better off
+     */
+    public int evaluate() {
+        return evaluator.evaluate(sideToMove);
+    }
+
+
+    public TicTacToeEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+
+    public long getHash() {
+        return hash;
+    }
+
+
+    public int getCandidateDistance() {
+        return candidateDistance;
+    }
+
+
+    public int getPiece(int square) {
+        return cells[square];
+    }
+
+
+    public boolean isEmpty(int square) {
+        return cells[square] == EMPTY;
+    }
+
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+
+    public int getMove(int index) {
+        return moveStack[index];
+    }
+
+
+    public boolean lastMoveWon() {
+        return lastMoveWon;
+    }
+
+
+    public boolean isFull() {
+        return moveCount == cells.length;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * The console side shared by the three apps that play on a TicTacToeBoard: printing the board
+ * and the results, asking a human for a square, and recording finished games.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeConsole {
+
+    //Constants
+    private final static char EMPTY_PIECE = '.';
+    private final static char PLAYER_ONE_PIECE = 'X';
+    private final static char PLAYER_TWO_PIECE = 'O';
+
+
+    /**
+     * Prints the current iteration of the game board.
+     * @param board The board
+     */
+    public static void printBoard(TicTacToeBoard board) {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        System.out.println("Current Board: ");
+        System.out.print(" ");
+        for(int a = 1; a <= width; a++) {
+            System.out.print(a + " ");
+        }
+        System.out.println();
+        for(int row = 0; row < height; row++) {
+            //Prints the pieces and vertical lines at each horizontal line
+            System.out.print(row + 1);
+            for(int col = 0; col < width; col++) {
+                if(col > 0) {
+                    System.out.print("|");
+                }
+                System.out.print(getPieceChar(board.getPiece(row * width + col)));
+            }
+            System.out.println();
+            //Horizontal Lines, except under the last row
+            if(row < height - 1) {
+                for(int k = 0; k < width + width; k++) {
+                    System.out.print("-");
+                }
+                System.out.println();
+            }
+        }
+        System.out.println();
+    }
+
+
+    /**
+     * @param piece EMPTY, PLAYER_ONE or PLAYER_TWO
+     * @return The character the piece is printed as
+     */
+    public static char getPieceChar(int piece) {
+        if(piece == TicTacToeBoard.PLAYER_ONE) {
+            return PLAYER_ONE_PIECE;
+        } else if(piece == TicTacToeBoard.PLAYER_TWO) {
+            return PLAYER_TWO_PIECE;
+        }
+        return EMPTY_PIECE;
+    }
+
+
+    /**
+     * Prints the results at the end of a match
+     * @param someoneHasWon Whether the game is a draw or win
+     * @param winner Whoever the winner is
+     * @param board The board at the end of the game
+     */
+    public static void printResults(boolean someoneHasWon, String winner, TicTacToeBoard board) {
+        if(someoneHasWon) {
+            System.out.println("----------------");
+            System.out.println(winner + " wins!");
+            System.out.println("----------------");
+        } else {
+            System.out.println("-------------------");
+            System.out.println("The game is a draw.");
+            System.out.println("-------------------");
+        }
+        printBoard(board);
+    }
+
+
+    /**
+     * Asks for a column and a row until they name an empty square
+     * @param board The board
+     * @param keyboard Scanner used to read user input
+     * @return The square chosen
+     */
+    public static int getPlayerChoice(TicTacToeBoard board, Scanner keyboard) {
+        while(true) {
+            System.out.print("Select a column: ");
+            int x = keyboard.nextInt();
+            System.out.println();
+            if(x < 1 || x > board.getWidth()) {
+                x = whileLoop(keyboard, board.getWidth(), "column");
+            }
+            System.out.print("Select a row: ");
+            int y = keyboard.nextInt();
+            System.out.println();
+            if(y < 1 || y > board.getHeight()) {
+                y = whileLoop(keyboard, board.getHeight(), "row");
+            }
+            int square = (y - 1) * board.getWidth() + (x - 1);
+            if(board.isEmpty(square)) {
+                return square;
+            }
+            //If they are not valid, tell them.
+            System.out.println("The selected coordinates occupy a piece.\nPlease select a new pair.\n");
+        }
+    }
+
+
+    /**
+     * Prompts the user for a coordinate until they enter a valid one.
+     * @param keyboard Scanner used to read user input
+     * @param max The largest valid coordinate
+     * @param item Whether it is a "column" or a "row"
+     * @return The valid coordinate, from 1 to max
+     */
+    private static int whileLoop(Scanner keyboard, int max, String item) {
+        int coord = 0;
+        while(coord < 1 || coord > max) {
+            System.out.println("That is not a valid " + item + ".");
+            System.out.print("Select a " + item + ": ");
+            coord = keyboard.nextInt();
+            System.out.println();
+        }
+        return coord;
+    }
+
+
+    /**
+     * Adds a finished game to the game record file, for TicTacToeGameStore's opening statistics
+     * @param board The board at the end of the game
+     */
+    public static void recordGame(TicTacToeBoard board) {
+        int[] moves = new int[board.getMoveCount()];
+        for(int i = 0; i < moves.length; i++) {
+            moves[i] = board.getMove(i);
+        }
+        int winner = TicTacToeBoard.EMPTY;
+        if(board.lastMoveWon()) {
+            winner = 3 - board.getSideToMove();
+        }
+        try {
+            TicTacToeGameStore.appendGame(new File(TicTacToeGameStore.DEFAULT_FILE), board.getWidth(),
+                board.getHeight(), board.getPiecesForWin(), moves, moves.length, winner);
+        } catch(IOException e) {
+            System.out.println("Could not record the game: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Heuristic score of a position that is not over yet, so a depth limited search can
+ * tell good positions from bad ones.
+ *
+ * Every line of k squares on the board is a window, and every line of k + 1 squares is a frame.
+ * A window holding c pieces of one side and none of the other is a run of c for that side,
+ * counted once for each window it fits in, so runs with more room around them count more.
+ * A frame whose two end squares are empty and whose middle holds c pieces of one side
+ * and none of the other is an open run of c.
+ *
+ * The counts are updated on every make and unmake from only the windows and frames that go
+ * through the square that changed, and the score is kept as a running total, so
+ * evaluating a position costs the same no matter how big the board is.
+ *
+ * What each run is worth comes from a TicTacToeWeights, the hand tuned one unless a trained
+ * one is set. Setting weights recounts the totals once, after which they are kept up to date
+ * the same way, so trained weights cost nothing per node.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeEvaluator {
+
+    //Constants
+    private final static int[] ROW_DIRECTIONS = {1, 1, 0, 1};
+    private final static int[] COL_DIRECTIONS = {0, 1, 1, -1};
+    public final static int MAX_EVAL = TicTacToeSearch.WIN_SCORE / 2;
+
+    //Shape of the board
+    private final int piecesForWin;
+    //The squares of every window and frame, in order along the line
+    private final int[][] windows;
+    private final int[][] frames;
+    //For every square, the windows through it
+    private final int[][] squareWindows;
+    //For every square, the frames through it, times two, plus one if the square is an end
+    private final int[][] squareFrames;
+
+    //Pieces of each side, indexed [side][window]
+    private final int[][] windowPieces;
+    private final int[][] frameMiddlePieces;
+    private final int[] frameEndPieces;
+
+    //How many runs and open runs each side has, indexed [side][pieces]
+    private final int[][] runCounts;
+    private final int[][] openRunCounts;
+
+    //Weights, indexed by pieces, and the running total of them for each side
+    private TicTacToeWeights weights;
+    private final int[] runWeights;
+    private final int[] openRunWeights;
+    private int tempo;
+    private final int[] sideScores = new int[3];
+
+
+    /**
+     * Lays out every window and frame for a board size
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeEvaluator(int width, int height, int piecesForWin) {
+        this.piecesForWin = piecesForWin;
+        int numSquares = width * height;
+        windows = findLines(width, height, piecesForWin);
+        frames = findLines(width, height, piecesForWin + 1);
+
+        //Count how many windows and frames go through each square, then fill them in
+        int[] windowsThrough = new int[numSquares];
+        int[] framesThrough = new int[numSquares];
+        for(int[] window : windows) {
+            for(int square : window) {
+                windowsThrough[square]++;
+            }
+        }
+        for(int[] frame : frames) {
+            for(int square : frame) {
+                framesThrough[square]++;
+            }
+        }
+        squareWindows = new int[numSquares][];
+        squareFrames = new int[numSquares][];
+        for(int square = 0; square < numSquares; square++) {
+            squareWindows[square] = new int[windowsThrough[square]];
+            squareFrames[square] = new int[framesThrough[square]];
+            windowsThrough[square] = 0;
+            framesThrough[square] = 0;
+        }
+        for(int window = 0; window < windows.length; window++) {
+            for(int square : windows[window]) {
+                squareWindows[square][windowsThrough[square]++] = window;
+            }
+        }
+        for(int frame = 0; frame < frames.length; frame++) {
+            int[] line = frames[frame];
+            for(int i = 0; i < line.length; i++) {
+                boolean isEnd = i == 0 || i == line.length - 1;
+                squareFrames[line[i]][framesThrough[line[i]]++] = frame * 2 + (isEnd ? 1 : 0);
+            }
+        }
+
+        windowPieces = new int[3][windows.length];
+        frameMiddlePieces = new int[3][frames.length];
+        frameEndPieces = new int[frames.length];
+        runCounts = new int[3][piecesForWin + 1];
+        openRunCounts = new int[3][piecesForWin + 1];
+        runWeights = new int[piecesForWin + 1];
+        openRunWeights = new int[piecesForWin + 1];
+        setWeights(new TicTacToeWeights(width, height, piecesForWin));
+    }
+
+
+    /**
+     * Scores positions with different weights from now on
+     * @param weights Weights made for this board size
+     */
+    public void setWeights(TicTacToeWeights weights) {
+        if(weights.getPiecesForWin() != piecesForWin) {
+            throw new IllegalArgumentException("The weights are for " + weights.getPiecesForWin()
+                + " in a row, not " + piecesForWin);
+        }
+        this.weights = weights;
+        for(int pieces = 0; pieces <= piecesForWin; pieces++) {
+            runWeights[pieces] = weights.getRunWeight(pieces);
+            openRunWeights[pieces] = weights.getOpenRunWeight(pieces);
+        }
+        tempo = weights.getTempo();
+        //Recount the totals for the pieces already on the board
+        for(int side = TicTacToeBoard.PLAYER_ONE; side <= TicTacToeBoard.PLAYER_TWO; side++) {
+            sideScores[side] = 0;
+            for(int pieces = 1; pieces < piecesForWin; pieces++) {
+                sideScores[side] += runCounts[side][pieces] * runWeights[pieces]
+                    + openRunCounts[side][pieces] * openRunWeights[pieces];
+            }
+        }
+    }
+
+
+    /**
+     * Lists every straight line of a given length that fits on the board
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param length The length of the lines
+     * @return The squares of each line, in order
+     */
+    private static int[][] findLines(int width, int height, int length) {
+        ArrayList<int[]> lines = new ArrayList<int[]>();
+        for(int row = 0; row < height; row++) {
+            for(int col = 0; col < width; col++) {
+                for(int dir = 0; dir < ROW_DIRECTIONS.length; dir++) {
+                    int endRow = row + ROW_DIRECTIONS[dir] * (length - 1);
+                    int endCol = col + COL_DIRECTIONS[dir] * (length - 1);
+                    if(endRow < 0 || endRow >= height || endCol < 0 || endCol >= width) {
+                        continue;
+                    }
+                    int[] line = new int[length];
+                    for(int i = 0; i < length; i++) {
+                        line[i] = (row + ROW_DIRECTIONS[dir] * i) * width + col + COL_DIRECTIONS[dir] * i;
+                    }
+                    lines.add(line);
+                }
+            }
+        }
+        return lines.toArray(new int[lines.size()][]);
+    }
+
+
+    /**
+     * Updates every window and frame through a square after a piece was placed or removed
+     * @param square The square that changed
+     * @param side The side whose piece it is
+     * @param change 1 when the piece was placed, -1 when it was removed
+     */
+    public void update(int square, int side, int change) {
+        int other = 3 - side;
+        int[] windows = squareWindows[square];
+        int[] ownPieces = windowPieces[side];
+        int[] otherPieces = windowPieces[other];
+        for(int i = 0; i < windows.length; i++) {
+            int window = windows[i];
+            removeRun(ownPieces[window], otherPieces[window], side, other);
+            ownPieces[window] += change;
+            addRun(ownPieces[window], otherPieces[window], side, other);
+        }
+
+        int[] frames = squareFrames[square];
+        int[] ownMiddle = frameMiddlePieces[side];
+        int[] otherMiddle = frameMiddlePieces[other];
+        for(int i = 0; i < frames.length; i++) {
+            int frame = frames[i] >> 1;
+            boolean isEnd = (frames[i] & 1) != 0;
+            removeOpenRun(frame, ownMiddle[frame], otherMiddle[frame], side, other);
+            if(isEnd) {
+                frameEndPieces[frame] += change;
+            } else {
+                ownMiddle[frame] += change;
+            }
+            addOpenRun(frame, ownMiddle[frame], otherMiddle[frame], side, other);
+        }
+    }
+
+
+    /**
+     * Counts a window as a run for whichever side is alone in it
+     * @param own Pieces of the side that moved
+     * @param others Pieces of the other side
+     * @param side The side that moved
+     * @param other The other side
+     */
+    private void addRun(int own, int others, int side, int other) {
+        if(others == 0 && own > 0) {
+            runCounts[side][own]++;
+            sideScores[side] += runWeights[own];
+        } else if(own == 0 && others > 0) {
+            runCounts[other][others]++;
+            sideScores[other] += runWeights[others];
+        }
+    }
+
+
+    /**
+     * Takes back what addRun counted for a window
+     */
+    private void removeRun(int own, int others, int side, int other) {
+        if(others == 0 && own > 0) {
+            runCounts[side][own]--;
+            sideScores[side] -= runWeights[own];
+        } else if(own == 0 && others > 0) {
+            runCounts[other][others]--;
+            sideScores[other] -= runWeights[others];
+        }
+    }
+
+
+    /**
+     * Counts a frame as an open run when its ends are empty and one side is alone in it
+     * @param frame The frame
+     * @param own Middle pieces of the side that moved
+     * @param others Middle pieces of the other side
+     * @param side The side that moved
+     * @param other The other side
+     */
+    private void addOpenRun(int frame, int own, int others, int side, int other) {
+        if(frameEndPieces[frame] != 0) {
+            return;
+        }
+        if(others == 0 && own > 0) {
+            openRunCounts[side][own]++;
+            sideScores[side] += openRunWeights[own];
+        } else if(own == 0 && others > 0) {
+            openRunCounts[other][others]++;
+            sideScores[other] += openRunWeights[others];
+        }
+    }
+
+
+    /**
+     * Takes back what addOpenRun counted for a frame
+     */
+    private void removeOpenRun(int frame, int own, int others, int side, int other) {
+        if(frameEndPieces[frame] != 0) {
+            return;
+        }
+        if(others == 0 && own > 0) {
+            openRunCounts[side][own]--;
+            sideScores[side] -= openRunWeights[own];
+        } else if(own == 0 && others > 0) {
+            openRunCounts[other][others]--;
+            sideScores[other] -= openRunWeights[others];
+        }
+    }
+
+
+    /**
+     * Scores the position for the side to move
+     * @param side The side to move
+     * @return Positive when the side is better off, never reaching a proven win score
+     */
+    public int evaluate(int side) {
+        int score = sideScores[side] - sideScores[3 - side] + tempo;
+        return Math.max(-MAX_EVAL, Math.min(MAX_EVAL, score));
+    }
+
+
+    /**
+     * @param side The side
+     * @param pieces How many pieces are in the run
+     * @return How many windows hold exactly that many pieces of the side and none of the other
+     */
+    public int getRunCount(int side, int pieces) {
+        return runCounts[side][pieces];
+    }
+
+
+    /**
+     * @param side The side
+     * @param pieces How many pieces are in the run
+     * @return How many open frames hold exactly that many pieces of the side and none of the other
+     */
+    public int getOpenRunCount(int side, int pieces) {
+        return openRunCounts[side][pieces];
+    }
+
+
+    public TicTacToeWeights getWeights() {
+        return weights;
+    }
+
+
+    public int getPiecesForWin() {
+        return piecesForWin;
+    }
+
+
+    public int getNumWindows() {
+        return windows.length;
+    }
+
+
+    public int[] getWindowSquares(int window) {
+        return windows[window];
+    }
+
+
+    public int getWindowPieces(int side, int window) {
+        return windowPieces[side][window];
+    }
+
+
+    public int getNumFrames() {
+        return frames.length;
+    }
+
+
+    public int[] getFrameSquares(int frame) {
+        return frames[frame];
+    }
+
+
+    public int getFrameMiddlePieces(int side, int frame) {
+        return frameMiddlePieces[side][frame];
+    }
+
+
+    public int getFrameEndPieces(int frame) {
+        return frameEndPieces[frame];
+    }
+}
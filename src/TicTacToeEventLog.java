@@ -0,0 +1,281 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * A log of game and move events that never makes the game wait for the disk.
+ *
+ * One thread, the game loop, publishes events into a ring of slots made once up front: each
+ * field of an event is a column array indexed by slot, so publishing only stores a few numbers
+ * and moves a sequence counter forward. A background thread follows the counter, turns every
+ * event it has not seen yet into a line of text, and writes the whole run of them with one
+ * write. The slow part, formatting and the disk, happens off the game loop. While the ring is
+ * empty the writer is parked, and the next publish wakes it.
+ *
+ * When the writer falls a whole ring behind, the policy decides: POLICY_DROP throws the new event
+ * away and counts it, so the game never waits, and POLICY_BLOCK waits for a free slot, so no
+ * event is ever lost.
+ *
+ * Each line is: milliseconds since the log opened, the event name, then its fields.
+ *   game m n k
+ *   move side square micros score
+ *   end winner moves
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeEventLog {
+
+    //Constants
+    public final static int POLICY_DROP = 0;
+    public final static int POLICY_BLOCK = 1;
+    public final static int DEFAULT_CAPACITY = 4096;
+    public final static int EVENT_GAME = 0;
+    public final static int EVENT_MOVE = 1;
+    public final static int EVENT_END = 2;
+    private final static String[] EVENT_NAMES = {"game", "move", "end"};
+    //How long the game loop naps while the ring is full and the policy is POLICY_BLOCK
+    private final static long IDLE_NANOS = 100000;
+    private final static int WRITE_BUFFER_BYTES = 1 << 16;
+
+    //The ring, one column per field, indexed by sequence & mask
+    private final int mask;
+    private final long[] times;
+    private final int[] types;
+    private final int[] values1;
+    private final int[] values2;
+    private final long[] values3;
+    private final int[] values4;
+
+    //Sequences: events below published are ready, events below consumed are written
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private long next;
+
+    private final int policy;
+    private final long startNanos = System.nanoTime();
+    private long dropped;
+    private final OutputStream out;
+    private final Thread writer;
+    private volatile boolean closing;
+    //Set by the writer before it parks on an empty ring, so that publish knows to wake it
+    private volatile boolean writerParked;
+    private volatile IOException writeError;
+
+
+    /**
+     * Opens a log file and starts its writer thread
+     * @param file Where the events go, added to the end if it exists
+     * @param capacity How many events can wait to be written, rounded up to a power of two
+     * @param policy POLICY_DROP or POLICY_BLOCK, for when that many are waiting
+     * @throws IOException If the file can not be opened
+     */
+    public TicTacToeEventLog(File file, int capacity, int policy) throws IOException {
+        if(policy != POLICY_DROP && policy != POLICY_BLOCK) {
+            throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.types = new int[size];
+        this.values1 = new int[size];
+        this.values2 = new int[size];
+        this.values3 = new long[size];
+        this.values4 = new int[size];
+        this.policy = policy;
+        this.out = new FileOutputStream(file, true);
+        this.writer = new Thread(this::writeEvents, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    /**
+     * @param name "drop" or "block"
+     * @return The policy with that name
+     */
+    public static int parsePolicy(String name) {
+        if(name.equals("drop")) {
+            return POLICY_DROP;
+        } else if(name.equals("block")) {
+            return POLICY_BLOCK;
+        }
+        throw new IllegalArgumentException("Unknown policy " + name + ", use drop or block");
+    }
+
+
+    /**
+     * Logs the start of a game
+     * @param board The board the game is played on
+     * @return False when the event was dropped
+     */
+    public boolean gameStarted(TicTacToeBoard board) {
+        return publish(EVENT_GAME, board.getWidth(), board.getHeight(), board.getPiecesForWin(), 0);
+    }
+
+
+    /**
+     * Logs a move
+     * @param side The side that moved
+     * @param square Where it moved
+     * @param micros How long the move took to pick
+     * @param score What the engine thought of the move, or 0 when it has no score
+     * @return False when the event was dropped
+     */
+    public boolean movePlayed(int side, int square, long micros, int score) {
+        return publish(EVENT_MOVE, side, square, micros, score);
+    }
+
+
+    /**
+     * Logs the end of a game
+     * @param board The board at the end of the game
+     * @return False when the event was dropped
+     */
+    public boolean gameEnded(TicTacToeBoard board) {
+        int winner = board.lastMoveWon() ? 3 - board.getSideToMove() : TicTacToeBoard.EMPTY;
+        return publish(EVENT_END, winner, board.getMoveCount(), 0, 0);
+    }
+
+
+    /**
+     * Puts an event in the next slot and makes it visible to the writer. Only one thread may
+     * publish, so claiming a slot is a plain increment.
+     * @param type EVENT_GAME, EVENT_MOVE or EVENT_END
+     * @return False when the ring was full and the policy dropped the event
+     */
+    private boolean publish(int type, int value1, int value2, long value3, int value4) {
+        while(next - consumed.get() > mask) {
+            if(policy == POLICY_DROP || closing) {
+                dropped++;
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+        int slot = (int) next & mask;
+        times[slot] = System.nanoTime();
+        types[slot] = type;
+        values1[slot] = value1;
+        values2[slot] = value2;
+        values3[slot] = value3;
+        values4[slot] = value4;
+        next++;
+        //A full store rather than an ordered one, so the writerParked read below can not move
+        //ahead of it, and a writer that parks after checking the ring is always woken
+        published.set(next);
+        if(writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+
+    //Writer thread: formats and writes every published event, a batch at a time
+    private void writeEvents() {
+        StringBuilder line = new StringBuilder();
+        byte[] buffer = new byte[WRITE_BUFFER_BYTES];
+        while(true) {
+            boolean finishing = closing;
+            long available = published.get();
+            long sequence = consumed.get();
+            if(sequence == available) {
+                if(finishing) {
+                    return;
+                }
+                //Sleep until publish or close wakes us, checking again after saying so
+                writerParked = true;
+                if(published.get() == sequence && !closing) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                continue;
+            }
+            int length = 0;
+            for(; sequence < available; sequence++) {
+                formatEvent((int) sequence & mask, line);
+                if(length + line.length() > buffer.length) {
+                    length = flush(buffer, length);
+                }
+                //Lines are only digits, letters and spaces, so each char is one byte
+                for(int i = 0; i < line.length(); i++) {
+                    buffer[length++] = (byte) line.charAt(i);
+                }
+            }
+            //Every event is copied out now, so the game may reuse the slots during the write
+            consumed.lazySet(available);
+            flush(buffer, length);
+        }
+    }
+
+
+    /**
+     * Writes out the buffer, keeping the first error to report on close
+     * @return 0, the new length of the buffer
+     */
+    private int flush(byte[] buffer, int length) {
+        if(length > 0 && writeError == null) {
+            try {
+                out.write(buffer, 0, length);
+            } catch(IOException e) {
+                writeError = e;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Writes one event as a line of text
+     * @param slot Where the event is
+     * @param line Cleared and filled with the line
+     */
+    private void formatEvent(int slot, StringBuilder line) {
+        line.setLength(0);
+        line.append((times[slot] - startNanos) / 1000000).append(' ').append(EVENT_NAMES[types[slot]]);
+        line.append(' ').append(values1[slot]).append(' ').append(values2[slot]);
+        if(types[slot] == EVENT_GAME) {
+            line.append(' ').append(values3[slot]);
+        } else if(types[slot] == EVENT_MOVE) {
+            line.append(' ').append(values3[slot]).append(' ').append(values4[slot]);
+        }
+        line.append('\n');
+    }
+
+
+    /**
+     * Waits for the writer to write everything published so far, then closes the file
+     * @throws IOException If any write failed
+     * @throws InterruptedException If interrupted while waiting for the writer
+     */
+    public void close() throws IOException, InterruptedException {
+        closing = true;
+        LockSupport.unpark(writer);
+        writer.join();
+        out.close();
+        if(writeError != null) {
+            throw writeError;
+        }
+    }
+
+
+    /**
+     * @return How many events were dropped because the ring was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,427 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Annotates finished games move by move with the engine's value of the move played and of the
+ * best move, and flags blunders.
+ *
+ * Usage: java TicTacToeGameAnnotator games output [--depth d] [--movetime ms] [--threads n]
+ *                                    [--hash MB] [--blunder cp]
+ *
+ * games is a file or a directory of files with one game per line: "m n k" followed by the
+ * moves, such as "3 3 3 b2 a1 c3". Blank lines and lines starting with # are skipped.
+ * output can be - for stdout. Each game is written as a "# file:line" header and then one line
+ * per move: the ply, the move and its value, "best", the best move and its value, and "??" when
+ * the move was a blunder. Values are for the side that moved. A move is a blunder when it
+ * throws away a proven result, or loses more than the blunder margin (default 500).
+ *
+ * A reader thread turns each game into a task on a work stealing pool, which splits it into one
+ * task per position. All positions share one lockless hash table, so positions from the same
+ * game find each other's results. Finished games are written in input order from a bounded
+ * queue, which holds the reader back when the writer or the pool falls behind.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeGameAnnotator {
+
+    //Constants
+    private final static int DEFAULT_DEPTH = 6;
+    private final static int DEFAULT_BLUNDER_MARGIN = 500;
+    private final static int GAMES_IN_FLIGHT_PER_THREAD = 16;
+    private final static String USAGE = "Usage: java TicTacToeGameAnnotator games output [--depth d] [--movetime ms]"
+        + " [--threads n] [--hash MB] [--blunder cp]";
+
+    //Settings
+    private final int maxDepth;
+    private final long moveTimeMs;
+    private final int blunderMargin;
+    private final ForkJoinPool pool;
+    private final TicTacToeHashTable hashTable;
+
+    //One search per pool thread, all sharing the hash table
+    private final ThreadLocal<TicTacToeSearch> searches = new ThreadLocal<TicTacToeSearch>() {
+        @Override
+        protected TicTacToeSearch initialValue() {
+            TicTacToeSearch search = new TicTacToeSearch();
+            search.setHashTable(hashTable);
+            return search;
+        }
+    };
+    //The board each pool thread last replayed a game onto, reused while games keep the same size,
+    //so that its search keeps the same threat search too
+    private final ThreadLocal<TicTacToeBoard> boards = new ThreadLocal<TicTacToeBoard>();
+
+    //Games waiting to be written, in input order
+    private final ArrayBlockingQueue<GameTask> ordered;
+    private final static GameTask END = new GameTask(null, null, 0, null, null);
+    private volatile IOException readError;
+    private long positionCount;
+
+
+    /**
+     * One game: its moves, and the results of its position tasks once they finish
+     */
+    private static class GameTask extends RecursiveAction {
+        private final static long serialVersionUID = 1L;
+        final TicTacToeGameAnnotator annotator;
+        final String source;
+        final int[] size;
+        final int[] moves;
+        final String error;
+        final int[] bestMoves;
+        final int[] bestScores;
+        final int[] playedScores;
+
+        GameTask(TicTacToeGameAnnotator annotator, String source, int moveCount, int[] size, String error) {
+            this.annotator = annotator;
+            this.source = source;
+            this.size = size;
+            this.moves = new int[moveCount];
+            this.error = error;
+            this.bestMoves = new int[moveCount];
+            this.bestScores = new int[moveCount];
+            this.playedScores = new int[moveCount];
+        }
+
+        @Override
+        protected void compute() {
+            if(error != null) {
+                return;
+            }
+            PositionTask[] positions = new PositionTask[moves.length];
+            for(int ply = 0; ply < moves.length; ply++) {
+                positions[ply] = new PositionTask(this, ply);
+            }
+            invokeAll(positions);
+        }
+    }
+
+
+    /**
+     * The position before one move of a game
+     */
+    private static class PositionTask extends RecursiveAction {
+        private final static long serialVersionUID = 1L;
+        final GameTask game;
+        final int ply;
+
+        PositionTask(GameTask game, int ply) {
+            this.game = game;
+            this.ply = ply;
+        }
+
+        @Override
+        protected void compute() {
+            game.annotator.annotate(game, ply);
+        }
+    }
+
+
+    /**
+     * Creates an annotator
+     * @param maxDepth The deepest iteration to search each position to
+     * @param moveTimeMs How long to search each position for, or 0 for no time limit
+     * @param threads How many threads the pool has
+     * @param hashMegabytes Size of the hash table every thread shares
+     * @param blunderMargin How much worse than the best move a move must be to be a blunder
+     */
+    public TicTacToeGameAnnotator(int maxDepth, long moveTimeMs, int threads, int hashMegabytes, int blunderMargin) {
+        this.maxDepth = maxDepth;
+        this.moveTimeMs = moveTimeMs;
+        this.blunderMargin = blunderMargin;
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.hashTable = new TicTacToeHashTable(hashMegabytes);
+        this.ordered = new ArrayBlockingQueue<GameTask>(pool.getParallelism() * GAMES_IN_FLIGHT_PER_THREAD);
+    }
+
+
+    //Annotates games from the command line
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int depth = DEFAULT_DEPTH;
+        long moveTime = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = TicTacToeHashTable.DEFAULT_MEGABYTES;
+        int blunder = DEFAULT_BLUNDER_MARGIN;
+        if(args.length < 2) {
+            System.out.println(USAGE);
+            return;
+        }
+        try {
+            for(int i = 2; i < args.length; i++) {
+                if(args[i].equals("--depth")) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--movetime")) {
+                    moveTime = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--hash")) {
+                    hash = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--blunder")) {
+                    blunder = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        TicTacToeGameAnnotator annotator = new TicTacToeGameAnnotator(depth, moveTime, threads, hash, blunder);
+        long start = System.currentTimeMillis();
+        Writer out = args[1].equals("-") ? new OutputStreamWriter(System.out) : new FileWriter(args[1]);
+        long games = annotator.run(new File(args[0]), out);
+        long time = Math.max(1, System.currentTimeMillis() - start);
+        System.err.println("Annotated " + games + " games, " + annotator.getPositionCount() + " positions in "
+            + time + " ms (" + annotator.getPositionCount() * 1000 / time + " positions per second)");
+    }
+
+
+    /**
+     * Annotates every game in a file or directory and writes the results
+     * @param games A file of games, or a directory of them
+     * @param out Where the annotations go, closed at the end
+     * @return How many games were written
+     * @throws IOException If a file can not be read or the output can not be written
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public long run(File games, Writer out) throws IOException, InterruptedException {
+        final File[] files;
+        if(games.isDirectory()) {
+            files = games.listFiles();
+            Arrays.sort(files);
+        } else {
+            files = new File[] {games};
+        }
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                readGames(files);
+            }
+        }, "annotator-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long written = 0;
+        boolean finished = false;
+        try(BufferedWriter buffered = new BufferedWriter(out)) {
+            while(true) {
+                GameTask game = ordered.take();
+                if(game == END) {
+                    break;
+                }
+                game.join();
+                writeGame(game, buffered);
+                written++;
+            }
+            finished = true;
+        } finally {
+            //After a failed game or write the reader may be waiting for room in the queue,
+            //which will never come
+            if(!finished) {
+                reader.interrupt();
+            }
+            reader.join();
+            pool.shutdown();
+        }
+        if(readError != null) {
+            throw readError;
+        }
+        return written;
+    }
+
+
+    /**
+     * Reads every game and hands it to the pool. Blocks while too many games are waiting to
+     * be written. Runs on the reader thread.
+     * @param files The files to read, in order
+     */
+    private void readGames(File[] files) {
+        try {
+            for(int f = 0; f < files.length; f++) {
+                if(!files[f].isFile()) {
+                    continue;
+                }
+                try(BufferedReader in = new BufferedReader(new FileReader(files[f]))) {
+                    int lineNumber = 0;
+                    String line;
+                    while((line = in.readLine()) != null) {
+                        lineNumber++;
+                        line = line.trim();
+                        if(line.isEmpty() || line.startsWith("#")) {
+                            continue;
+                        }
+                        GameTask game = parseGame(files[f].getName() + ":" + lineNumber, line);
+                        ordered.put(game);
+                        pool.execute(game);
+                    }
+                }
+            }
+        } catch(IOException e) {
+            readError = e;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                ordered.put(END);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * Reads a game from its line, checking that every move is legal
+     * @param source Where the game came from
+     * @param line "m n k" and then the moves
+     * @return The game, which has an error set when the line is not a legal game
+     */
+    private GameTask parseGame(String source, String line) {
+        String[] tokens = line.split("\\s+");
+        int[] size = new int[3];
+        try {
+            for(int i = 0; i < 3; i++) {
+                size[i] = Integer.parseInt(tokens[i]);
+            }
+            if(size[0] * size[1] > TicTacToeSearch.MAX_PLY) {
+                return new GameTask(this, source, 0, size, "board has more than " + TicTacToeSearch.MAX_PLY + " squares");
+            }
+            TicTacToeBoard board = new TicTacToeBoard(size[0], size[1], size[2]);
+            GameTask game = new GameTask(this, source, tokens.length - 3, size, null);
+            for(int i = 3; i < tokens.length; i++) {
+                int square = board.parseMove(tokens[i]);
+                if(square == TicTacToeBoard.NO_MOVE || board.lastMoveWon()) {
+                    return new GameTask(this, source, 0, size, "illegal move " + tokens[i]);
+                }
+                game.moves[i - 3] = square;
+                board.makeMove(square);
+            }
+            return game;
+        } catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return new GameTask(this, source, 0, size, "expected m n k and moves");
+        }
+    }
+
+
+    /**
+     * Searches the position before one move of a game, and the position after it when the move
+     * was not the best one. Runs on a pool thread.
+     * @param game The game
+     * @param ply Which move
+     */
+    private void annotate(GameTask game, int ply) {
+        TicTacToeSearch search = searches.get();
+        TicTacToeBoard board = boards.get();
+        if(board == null || board.getWidth() != game.size[0] || board.getHeight() != game.size[1]
+                || board.getPiecesForWin() != game.size[2]) {
+            board = new TicTacToeBoard(game.size[0], game.size[1], game.size[2]);
+            boards.set(board);
+        }
+        board.clear();
+        for(int i = 0; i < ply; i++) {
+            board.makeMove(game.moves[i]);
+        }
+        search.clearStop();
+        game.bestMoves[ply] = search.search(board, maxDepth, moveTimeMs, null);
+        game.bestScores[ply] = search.getBestScore();
+
+        int played = game.moves[ply];
+        if(played == game.bestMoves[ply]) {
+            game.playedScores[ply] = game.bestScores[ply];
+        } else if(board.isWinningMove(played)) {
+            game.playedScores[ply] = TicTacToeSearch.WIN_SCORE - 1;
+        } else {
+            board.makeMove(played);
+            if(board.isFull()) {
+                game.playedScores[ply] = 0;
+            } else {
+                search.search(board, Math.max(1, maxDepth - 1), moveTimeMs, null);
+                game.playedScores[ply] = fromChild(search.getBestScore());
+            }
+        }
+    }
+
+
+    /**
+     * Turns the score of the position after a move into the value of the move
+     * @param childScore The score for the side to move after the move
+     * @return The score for the side that made the move, a ply further from any result
+     */
+    private static int fromChild(int childScore) {
+        if(childScore >= TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY) {
+            return -(childScore - 1);
+        } else if(childScore <= -(TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY)) {
+            return -(childScore + 1);
+        }
+        return -childScore;
+    }
+
+
+    /**
+     * Checks if a move was a blunder
+     * @param played The value of the move played
+     * @param best The value of the best move
+     * @return Whether the move threw away a proven result or lost too much
+     */
+    private boolean isBlunder(int played, int best) {
+        boolean bestWins = best >= TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY;
+        boolean playedWins = played >= TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY;
+        boolean bestLoses = best <= -(TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY);
+        boolean playedLoses = played <= -(TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY);
+        if(bestWins != playedWins || bestLoses != playedLoses) {
+            return true;
+        }
+        return !bestWins && !bestLoses && best - played > blunderMargin;
+    }
+
+
+    /**
+     * Writes one game's annotations
+     * @param game The finished game
+     * @param out Where to write
+     * @throws IOException If writing fails
+     */
+    private void writeGame(GameTask game, Writer out) throws IOException {
+        out.write("# " + game.source);
+        if(game.error != null) {
+            out.write(" error " + game.error + "\n");
+            return;
+        }
+        out.write(" " + game.size[0] + "x" + game.size[1] + " k=" + game.size[2] + "\n");
+        TicTacToeBoard board = new TicTacToeBoard(game.size[0], game.size[1], game.size[2]);
+        for(int ply = 0; ply < game.moves.length; ply++) {
+            out.write((ply + 1) + " " + board.moveToString(game.moves[ply])
+                + " " + TicTacToeSearch.scoreToString(game.playedScores[ply])
+                + " best " + board.moveToString(game.bestMoves[ply])
+                + " " + TicTacToeSearch.scoreToString(game.bestScores[ply]));
+            if(isBlunder(game.playedScores[ply], game.bestScores[ply])) {
+                out.write(" ??");
+            }
+            out.write("\n");
+        }
+        positionCount += game.moves.length;
+    }
+
+
+    //How many positions have been written so far
+    public long getPositionCount() {
+        return positionCount;
+    }
+}
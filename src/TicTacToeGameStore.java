@@ -0,0 +1,628 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Finished games of one board size, kept in columns of primitive arrays rather than one object
+ * per game: every game's moves back to back in one byte array, with its start, length and
+ * winner in arrays of their own. A game costs its moves plus six bytes.
+ *
+ * The first plies of every game also go into a prefix tree, itself a handful of int arrays,
+ * where each node counts the games through it and who won them. Opening statistics read the
+ * tree and whole-store statistics scan a single column, so neither ever touches a game object.
+ *
+ * Usage: java TicTacToeGameStore file [--simulate games] [--size m n k] [--plies p]
+ *
+ * Prints statistics of a game file, after first adding random games to it when asked.
+ * The file is the one the console games record every finished game to.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeGameStore {
+
+    //Constants
+    public final static int INDEX_PLIES = 8;
+    public final static String DEFAULT_FILE = "tictactoe-games.dat";
+    private final static int FILE_MAGIC = 0x54544753;
+    //Moves and lengths are stored in one unsigned byte each
+    private final static int MAX_SQUARES = 255;
+    private final static int HEADER_BYTES = 16;
+    private final static int INITIAL_GAMES = 1024;
+    private final static int DEFAULT_LINE_PLIES = 4;
+    private final static int DEFAULT_LINE_COUNT = 5;
+    private final static int ROOT = 0;
+    private final static String USAGE = "Usage: java TicTacToeGameStore file [--simulate games] [--size m n k] [--plies p]";
+
+    //Board size every game was played on
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+
+    //Columns, one entry per game
+    private int gameCount;
+    private int[] starts = new int[INITIAL_GAMES];
+    private byte[] lengths = new byte[INITIAL_GAMES];
+    private byte[] winners = new byte[INITIAL_GAMES];
+
+    //Every game's moves, back to back
+    private byte[] moves = new byte[INITIAL_GAMES * 8];
+    private int moveTotal;
+    //How much of an unfinished last game load found and left out
+    private int truncatedBytes;
+
+    //Prefix tree over the first INDEX_PLIES moves, node 0 is the empty prefix
+    private int nodeCount = 1;
+    private int[] firstChild = new int[INITIAL_GAMES];
+    private int[] nextSibling = new int[INITIAL_GAMES];
+    private short[] nodeMoves = new short[INITIAL_GAMES];
+    private int[] nodeParents = new int[INITIAL_GAMES];
+    private int[] nodeGames = new int[INITIAL_GAMES];
+    private int[] nodeFirstWins = new int[INITIAL_GAMES];
+    private int[] nodeSecondWins = new int[INITIAL_GAMES];
+
+
+    /**
+     * A line of opening moves and how its games went
+     */
+    public static class LineCount {
+        private final int[] moves;
+        private final int games;
+        private final int losses;
+
+        LineCount(int[] moves, int games, int losses) {
+            this.moves = moves;
+            this.games = games;
+            this.losses = losses;
+        }
+
+        public int[] getMoves() {
+            return moves;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+    }
+
+
+    /**
+     * Creates an empty store
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeGameStore(int width, int height, int piecesForWin) {
+        if(width * height > MAX_SQUARES) {
+            throw new IllegalArgumentException("Boards with more than " + MAX_SQUARES + " squares can not be stored");
+        }
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+        firstChild[ROOT] = -1;
+        nextSibling[ROOT] = -1;
+        nodeParents[ROOT] = -1;
+    }
+
+
+    //Prints statistics of a game file from the command line
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        File file = new File(args[0]);
+        int simulate = 0;
+        int[] size = {3, 3, 3};
+        int plies = DEFAULT_LINE_PLIES;
+        try {
+            for(int i = 1; i < args.length; i++) {
+                if(args[i].equals("--simulate")) {
+                    simulate = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--plies")) {
+                    plies = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--size")) {
+                    for(int j = 0; j < 3; j++) {
+                        size[j] = Integer.parseInt(args[++i]);
+                    }
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        TicTacToeGameStore store;
+        if(file.exists()) {
+            store = load(file);
+        } else {
+            try {
+                store = new TicTacToeGameStore(size[0], size[1], size[2]);
+            } catch(IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+        }
+        System.out.println("Loaded " + store.getGameCount() + " games in " + (System.currentTimeMillis() - start) + " ms");
+        if(store.getTruncatedBytes() > 0) {
+            System.out.println("Left out an unfinished game of " + store.getTruncatedBytes() + " bytes at the end of "
+                + file);
+        }
+        if(simulate > 0) {
+            start = System.currentTimeMillis();
+            store.simulate(simulate, new Random());
+            store.save(file);
+            System.out.println("Simulated and saved " + simulate + " games in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+        store.printStatistics(Math.min(plies, INDEX_PLIES));
+    }
+
+
+    /**
+     * Adds one finished game
+     * @param gameMoves The squares played, in order
+     * @param length How many moves the game had
+     * @param winner PLAYER_ONE, PLAYER_TWO, or EMPTY for a draw
+     */
+    public void addGame(int[] gameMoves, int length, int winner) {
+        if(gameCount == starts.length) {
+            starts = Arrays.copyOf(starts, gameCount * 2);
+            lengths = Arrays.copyOf(lengths, gameCount * 2);
+            winners = Arrays.copyOf(winners, gameCount * 2);
+        }
+        if(moveTotal + length > moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(moves.length * 2, moveTotal + length));
+        }
+        starts[gameCount] = moveTotal;
+        lengths[gameCount] = (byte) length;
+        winners[gameCount] = (byte) winner;
+        for(int i = 0; i < length; i++) {
+            moves[moveTotal++] = (byte) gameMoves[i];
+        }
+        gameCount++;
+
+        //Count the game at every node along its opening
+        int node = ROOT;
+        countGame(node, winner);
+        for(int ply = 0; ply < Math.min(length, INDEX_PLIES); ply++) {
+            node = findOrAddChild(node, gameMoves[ply]);
+            countGame(node, winner);
+        }
+    }
+
+
+    /**
+     * Adds a game's result to one node's counts
+     * @param node The node
+     * @param winner PLAYER_ONE, PLAYER_TWO, or EMPTY for a draw
+     */
+    private void countGame(int node, int winner) {
+        nodeGames[node]++;
+        if(winner == TicTacToeBoard.PLAYER_ONE) {
+            nodeFirstWins[node]++;
+        } else if(winner == TicTacToeBoard.PLAYER_TWO) {
+            nodeSecondWins[node]++;
+        }
+    }
+
+
+    /**
+     * @param node A node
+     * @param move A move from its position
+     * @return The node for the prefix one move longer, made if it is new
+     */
+    private int findOrAddChild(int node, int move) {
+        for(int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+            if(nodeMoves[child] == move) {
+                return child;
+            }
+        }
+        if(nodeCount == firstChild.length) {
+            int size = nodeCount * 2;
+            firstChild = Arrays.copyOf(firstChild, size);
+            nextSibling = Arrays.copyOf(nextSibling, size);
+            nodeMoves = Arrays.copyOf(nodeMoves, size);
+            nodeParents = Arrays.copyOf(nodeParents, size);
+            nodeGames = Arrays.copyOf(nodeGames, size);
+            nodeFirstWins = Arrays.copyOf(nodeFirstWins, size);
+            nodeSecondWins = Arrays.copyOf(nodeSecondWins, size);
+        }
+        int child = nodeCount++;
+        firstChild[child] = -1;
+        nextSibling[child] = firstChild[node];
+        firstChild[node] = child;
+        nodeMoves[child] = (short) move;
+        nodeParents[child] = node;
+        return child;
+    }
+
+
+    /**
+     * Finds the node of an opening
+     * @param prefix The opening's moves
+     * @param length How many of them, at most INDEX_PLIES
+     * @return The node, or -1 if no game started that way
+     */
+    private int findPrefix(int[] prefix, int length) {
+        if(length > INDEX_PLIES) {
+            throw new IllegalArgumentException("Only the first " + INDEX_PLIES + " plies are indexed");
+        }
+        int node = ROOT;
+        for(int ply = 0; ply < length && node != -1; ply++) {
+            int child = firstChild[node];
+            while(child != -1 && nodeMoves[child] != prefix[ply]) {
+                child = nextSibling[child];
+            }
+            node = child;
+        }
+        return node;
+    }
+
+
+    /**
+     * Counts how the games that started with an opening ended
+     * @param prefix The opening's moves
+     * @param length How many of them, at most INDEX_PLIES
+     * @return The number of games, first player wins, second player wins and draws
+     */
+    public int[] countOutcomes(int[] prefix, int length) {
+        int node = findPrefix(prefix, length);
+        if(node == -1) {
+            return new int[4];
+        }
+        return new int[] {nodeGames[node], nodeFirstWins[node], nodeSecondWins[node],
+            nodeGames[node] - nodeFirstWins[node] - nodeSecondWins[node]};
+    }
+
+
+    /**
+     * Counts how the games went for every first move
+     * @return For each square, the games started there, first player wins, second player wins
+     * and draws
+     */
+    public int[][] countOutcomesByFirstMove() {
+        int[][] counts = new int[width * height][4];
+        for(int child = firstChild[ROOT]; child != -1; child = nextSibling[child]) {
+            int[] count = counts[nodeMoves[child]];
+            count[0] = nodeGames[child];
+            count[1] = nodeFirstWins[child];
+            count[2] = nodeSecondWins[child];
+            count[3] = nodeGames[child] - nodeFirstWins[child] - nodeSecondWins[child];
+        }
+        return counts;
+    }
+
+
+    /**
+     * Finds the openings that one side lost most often
+     * @param side The losing side, PLAYER_ONE or PLAYER_TWO
+     * @param plies How long the openings are, at most INDEX_PLIES
+     * @param limit How many openings to return
+     * @return The openings, most losses first
+     */
+    public ArrayList<LineCount> findMostCommonLosingLines(int side, int plies, int limit) {
+        if(plies > INDEX_PLIES) {
+            throw new IllegalArgumentException("Only the first " + INDEX_PLIES + " plies are indexed");
+        }
+        //Every node is deeper than its parent, so depths can be filled in one pass
+        int[] depths = new int[nodeCount];
+        ArrayList<Integer> candidates = new ArrayList<Integer>();
+        for(int node = 1; node < nodeCount; node++) {
+            depths[node] = depths[nodeParents[node]] + 1;
+            if(depths[node] == plies && losses(node, side) > 0) {
+                candidates.add(node);
+            }
+        }
+        final int loser = side;
+        Collections.sort(candidates, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(losses(b, loser), losses(a, loser));
+            }
+        });
+
+        ArrayList<LineCount> lines = new ArrayList<LineCount>();
+        for(int i = 0; i < Math.min(limit, candidates.size()); i++) {
+            int node = candidates.get(i);
+            int[] line = new int[plies];
+            for(int ply = plies - 1; ply >= 0; ply--) {
+                line[ply] = nodeMoves[node];
+                node = nodeParents[node];
+            }
+            node = candidates.get(i);
+            lines.add(new LineCount(line, nodeGames[node], losses(node, side)));
+        }
+        return lines;
+    }
+
+
+    /**
+     * @param node A node
+     * @param side PLAYER_ONE or PLAYER_TWO
+     * @return How many games through the node the side lost
+     */
+    private int losses(int node, int side) {
+        return side == TicTacToeBoard.PLAYER_ONE ? nodeSecondWins[node] : nodeFirstWins[node];
+    }
+
+
+    /**
+     * Counts results over every game by scanning the winner column
+     * @return First player wins, second player wins and draws
+     */
+    public int[] countResults() {
+        int[] counts = new int[3];
+        for(int game = 0; game < gameCount; game++) {
+            int winner = winners[game];
+            if(winner == TicTacToeBoard.PLAYER_ONE) {
+                counts[0]++;
+            } else if(winner == TicTacToeBoard.PLAYER_TWO) {
+                counts[1]++;
+            } else {
+                counts[2]++;
+            }
+        }
+        return counts;
+    }
+
+
+    /**
+     * Finds the average game length by scanning the length column
+     * @return The average number of moves, or 0 if there are no games
+     */
+    public double getAverageLength() {
+        long total = 0;
+        for(int game = 0; game < gameCount; game++) {
+            total += lengths[game] & 0xFF;
+        }
+        return gameCount == 0 ? 0 : (double) total / gameCount;
+    }
+
+
+    /**
+     * Plays random games and adds them
+     * @param count How many games
+     * @param random Where the moves come from
+     */
+    public void simulate(int count, Random random) {
+        TicTacToeBoard board = new TicTacToeBoard(width, height, piecesForWin);
+        int[] game = new int[board.getNumSquares()];
+        for(int i = 0; i < count; i++) {
+            board.clear();
+            int length = 0;
+            while(!board.lastMoveWon() && !board.isFull()) {
+                int square = board.randomEmptySquare(random);
+                game[length++] = square;
+                board.makeMove(square);
+            }
+            int winner = board.lastMoveWon() ? 3 - board.getSideToMove() : TicTacToeBoard.EMPTY;
+            addGame(game, length, winner);
+        }
+    }
+
+
+    /**
+     * Prints the whole-store and opening statistics, and how long the queries took
+     * @param plies How long the losing lines are
+     */
+    private void printStatistics(int plies) {
+        long start = System.nanoTime();
+        int[] results = countResults();
+        double averageLength = getAverageLength();
+        int[][] firstMoves = countOutcomesByFirstMove();
+        ArrayList<LineCount> firstLosses = findMostCommonLosingLines(TicTacToeBoard.PLAYER_ONE, plies, DEFAULT_LINE_COUNT);
+        ArrayList<LineCount> secondLosses = findMostCommonLosingLines(TicTacToeBoard.PLAYER_TWO, plies, DEFAULT_LINE_COUNT);
+        long queryMs = (System.nanoTime() - start) / 1000000;
+
+        TicTacToeBoard board = new TicTacToeBoard(width, height, piecesForWin);
+        System.out.println(gameCount + " games on " + width + "x" + height + " k=" + piecesForWin
+            + ": X wins " + percent(results[0], gameCount) + ", O wins " + percent(results[1], gameCount)
+            + ", draws " + percent(results[2], gameCount) + ", average length "
+            + Math.round(averageLength * 100) / 100.0);
+        System.out.println("First move  games  X wins  O wins  draws");
+        for(int square = 0; square < firstMoves.length; square++) {
+            int[] count = firstMoves[square];
+            if(count[0] > 0) {
+                System.out.println(String.format("%-10s %6d %7s %7s %6s", board.moveToString(square), count[0],
+                    percent(count[1], count[0]), percent(count[2], count[0]), percent(count[3], count[0])));
+            }
+        }
+        printLines("X", firstLosses, board);
+        printLines("O", secondLosses, board);
+        System.out.println("Queries took " + queryMs + " ms");
+    }
+
+
+    /**
+     * Prints losing lines for one side
+     * @param side The side's piece
+     * @param lines The lines, from findMostCommonLosingLines
+     * @param board A board of the right size, to write moves with
+     */
+    private static void printLines(String side, ArrayList<LineCount> lines, TicTacToeBoard board) {
+        System.out.println("Most common losing lines for " + side + ":");
+        for(LineCount line : lines) {
+            StringBuilder text = new StringBuilder(" ");
+            for(int move : line.getMoves()) {
+                text.append(' ').append(board.moveToString(move));
+            }
+            text.append("  lost ").append(line.getLosses()).append(" of ").append(line.getGames());
+            System.out.println(text);
+        }
+    }
+
+
+    //Writes a count as a share of a total, such as "52.3%"
+    private static String percent(int count, int total) {
+        return (total == 0 ? 0 : Math.round(count * 1000.0 / total) / 10.0) + "%";
+    }
+
+
+    /**
+     * Adds one finished game to the end of a game file, starting the file if it is new
+     * @param file The game file
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @param gameMoves The squares played, in order
+     * @param length How many moves the game had
+     * @param winner PLAYER_ONE, PLAYER_TWO, or EMPTY for a draw
+     * @throws IOException If the file can not be written, holds games of another size, or the
+     * board has too many squares to store
+     */
+    public static void appendGame(File file, int width, int height, int piecesForWin,
+        int[] gameMoves, int length, int winner) throws IOException {
+        //Squares and lengths are stored in a byte each
+        if(width * height > MAX_SQUARES) {
+            throw new IOException("Boards with more than " + MAX_SQUARES + " squares can not be stored");
+        }
+        boolean isNew = !file.exists() || file.length() < HEADER_BYTES;
+        if(!isNew) {
+            try(DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                if(in.readInt() != FILE_MAGIC || in.readInt() != width || in.readInt() != height
+                    || in.readInt() != piecesForWin) {
+                    throw new IOException(file + " holds games of another board size");
+                }
+            }
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !isNew)))) {
+            if(isNew) {
+                writeHeader(out, width, height, piecesForWin);
+            }
+            writeGame(out, gameMoves, length, winner);
+        }
+    }
+
+
+    /**
+     * Writes every game to a file, first to a temporary file so a crash never leaves half a file
+     * @param file Where to write
+     * @throws IOException If the file can not be written
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            writeHeader(out, width, height, piecesForWin);
+            int[] game = new int[width * height];
+            for(int i = 0; i < gameCount; i++) {
+                int length = lengths[i] & 0xFF;
+                for(int ply = 0; ply < length; ply++) {
+                    game[ply] = moves[starts[i] + ply] & 0xFF;
+                }
+                writeGame(out, game, length, winners[i]);
+            }
+        }
+        if(!temp.renameTo(file)) {
+            file.delete();
+            if(!temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+
+    /**
+     * Reads every game in a file. A game cut off by the end of the file is left out, and
+     * getTruncatedBytes tells how much of it there was.
+     * @param file A file written by save or appendGame
+     * @return The store
+     * @throws IOException If the file can not be read or is not a game file
+     */
+    public static TicTacToeGameStore load(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != FILE_MAGIC) {
+                throw new IOException(file + " is not a game file");
+            }
+            TicTacToeGameStore store = new TicTacToeGameStore(in.readInt(), in.readInt(), in.readInt());
+            int[] game = new int[store.width * store.height];
+            while(true) {
+                int length;
+                try {
+                    length = in.readUnsignedByte();
+                } catch(EOFException e) {
+                    return store;
+                }
+                //A crash while appending can leave the last game half written, which is dropped
+                int recordBytes = 1;
+                try {
+                    int winner = in.readUnsignedByte();
+                    recordBytes++;
+                    for(int ply = 0; ply < length; ply++) {
+                        game[ply] = in.readUnsignedByte();
+                        recordBytes++;
+                    }
+                    store.addGame(game, length, winner);
+                } catch(EOFException e) {
+                    store.truncatedBytes = recordBytes;
+                    return store;
+                }
+            }
+        }
+    }
+
+
+    private static void writeHeader(DataOutputStream out, int width, int height, int piecesForWin) throws IOException {
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(piecesForWin);
+    }
+
+
+    private static void writeGame(DataOutputStream out, int[] gameMoves, int length, int winner) throws IOException {
+        out.writeByte(length);
+        out.writeByte(winner);
+        for(int ply = 0; ply < length; ply++) {
+            out.writeByte(gameMoves[ply]);
+        }
+    }
+
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+
+    public int getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+
+    public int getWidth() {
+        return width;
+    }
+
+
+    public int getHeight() {
+        return height;
+    }
+
+
+    public int getPiecesForWin() {
+        return piecesForWin;
+    }
+}
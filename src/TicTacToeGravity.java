@@ -0,0 +1,182 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * An app that plays Tic Tac Toe with gravity, where pieces drop to the bottom of a column as in
+ * Connect Four, between a human player and the search engine.
+ *
+ * Usage: java TicTacToeGravity [--size m n k] [--movetime ms] [--computer-first] [--book file]
+ *
+ * The engine's move is only perfect once its search gets to the end of the game within the move
+ * time, which on 7x6 takes until ten to twelve moves in. Before that it plays the best move it found,
+ * unless the position is covered by a book from TicTacToeGravitySolver.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeGravity {
+
+    //Constants
+    private final static String AI_NAME = "Computer";
+    private final static int DEFAULT_WIDTH = 7;
+    private final static int DEFAULT_HEIGHT = 6;
+    private final static int DEFAULT_PIECES_FOR_WIN = 4;
+    private final static long DEFAULT_MOVE_TIME_MS = 2000;
+    private final static String USAGE =
+        "Usage: java TicTacToeGravity [--size m n k] [--movetime ms] [--computer-first] [--book file]";
+
+    //Plays a game of TicTacToe with gravity
+    public static void main(String[] args) {
+        int width = DEFAULT_WIDTH;
+        int height = DEFAULT_HEIGHT;
+        int piecesForWin = DEFAULT_PIECES_FOR_WIN;
+        long moveTimeMs = DEFAULT_MOVE_TIME_MS;
+        boolean computerFirst = false;
+        String bookName = null;
+        TicTacToeGravityBoard board;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--size")) {
+                    width = Integer.parseInt(args[++i]);
+                    height = Integer.parseInt(args[++i]);
+                    piecesForWin = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--movetime")) {
+                    moveTimeMs = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--computer-first")) {
+                    computerFirst = true;
+                } else if(args[i].equals("--book")) {
+                    bookName = args[++i];
+                } else {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            board = new TicTacToeGravityBoard(width, height, piecesForWin);
+        } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(USAGE);
+            return;
+        } catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        TicTacToeGravitySearch search = new TicTacToeGravitySearch();
+        if(bookName != null) {
+            try {
+                TicTacToeSolutionBook book = TicTacToeSolutionBook.load(new File(bookName));
+                if(!book.matches(board)) {
+                    System.out.println(bookName + " is for a different board size");
+                    return;
+                }
+                search.setBook(book);
+            } catch(IOException e) {
+                System.out.println("Could not read " + bookName + ": " + e.getMessage());
+                return;
+            }
+        }
+        Scanner keyboard = new Scanner(System.in);
+        intro(board);
+        runGame(board, search, keyboard, computerFirst, moveTimeMs);
+    }
+
+
+    /**
+     * Main method that runs the game, turn by turn
+     * @param board The board, empty at the start
+     * @param search The search, kept between moves so its cache carries over
+     * @param keyboard Scanner used to read user input
+     * @param computerFirst Whether the computer plays X and moves first
+     * @param moveTimeMs How long the computer thinks about each move
+     */
+    private static void runGame(TicTacToeGravityBoard board, TicTacToeGravitySearch search, Scanner keyboard,
+                                boolean computerFirst, long moveTimeMs) {
+        int computerSide = computerFirst ? TicTacToeBoard.PLAYER_ONE : TicTacToeBoard.PLAYER_TWO;
+        while(!board.lastMoveWon() && !board.isFull()) {
+            System.out.println(board);
+            if(board.getSideToMove() == computerSide) {
+                doComputerTurn(board, search, moveTimeMs);
+            } else if(!doPlayerTurn(board, keyboard)) {
+                return;
+            }
+        }
+        System.out.println(board);
+        System.out.println("----------------");
+        if(board.lastMoveWon()) {
+            //The winner is whoever moved last
+            if(board.getSideToMove() == computerSide) {
+                System.out.println("You win!");
+            } else {
+                System.out.println(AI_NAME + " wins!");
+            }
+        } else {
+            System.out.println("The game is a draw.");
+        }
+        System.out.println("----------------");
+    }
+
+
+    /**
+     * Searches for the computer's move and plays it
+     * @param board The board, with the computer to move
+     * @param search The search, kept between moves so its cache carries over
+     * @param moveTimeMs How long to think
+     */
+    private static void doComputerTurn(TicTacToeGravityBoard board, TicTacToeGravitySearch search, long moveTimeMs) {
+        search.clearStop();
+        int col = search.search(board, board.getNumSquares(), moveTimeMs, null);
+        board.makeMove(col);
+        System.out.println(AI_NAME + " plays column " + (col + 1) + " ("
+            + TicTacToeSearch.scoreToString(search.getBestScore()) + (search.isSolved() ? ", solved" : "")
+            + ", depth " + search.getCompletedDepth() + ", " + search.getNodes() + " nodes in "
+            + search.getElapsedMs() + " ms)");
+        System.out.println();
+    }
+
+
+    /**
+     * Asks the human for a column until they name one that is not full
+     * @param board The board, with the human to move
+     * @param keyboard Scanner used to read user input
+     * @return False when the input ran out
+     */
+    private static boolean doPlayerTurn(TicTacToeGravityBoard board, Scanner keyboard) {
+        while(true) {
+            System.out.print("Select a column: ");
+            if(!keyboard.hasNextLine()) {
+                return false;
+            }
+            String text = keyboard.nextLine().trim();
+            System.out.println();
+            try {
+                int col = Integer.parseInt(text) - 1;
+                if(board.canPlay(col)) {
+                    board.makeMove(col);
+                    return true;
+                }
+            } catch(NumberFormatException e) {
+                //Falls through to the message below
+            }
+            System.out.println("That is not a column with room left.\n");
+        }
+    }
+
+
+    /**
+     * Prints the introduction to the match
+     * @param board The board, for its size
+     */
+    private static void intro(TicTacToeGravityBoard board) {
+        System.out.println("---------------------------------------------");
+        System.out.println("Welcome to the game of Tic Tac Toe with gravity");
+        System.out.println("The board is " + board.getWidth() + " columns by " + board.getHeight()
+            + " rows, " + board.getPiecesForWin() + " in a row wins");
+        System.out.println("---------------------------------------------");
+        System.out.println();
+    }
+}
@@ -0,0 +1,368 @@
+import java.util.Arrays;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * A board where pieces drop to the lowest empty cell of a column, as in Connect Four, for any
+ * number of columns and rows and any number of pieces in a row to win.
+ *
+ * Every side's pieces are one long with a column every height + 1 bits, bottom first, and an
+ * always empty bit on top of each column so lines can not wrap from one column into the next.
+ * Each column also keeps the bit its next piece goes on, so a move is one or and one increment,
+ * and a line of k is found with k - 1 shifts and ands per direction instead of walking the board.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeGravityBoard {
+
+    //Board shape
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final int columnBits;
+    private final int[] shifts;
+    //The bottom cell of every column, and every cell that is on the board
+    private final long bottomMask;
+    private final long boardMask;
+    //Columns from the middle outwards, the order moves are usually best tried in
+    private final int[] columnOrder;
+
+    //Board state
+    private final long[] pieces = new long[3];
+    private long occupied;
+    private final int[] nextBit;
+    private final int[] moveStack;
+    private int moveCount;
+    private int sideToMove = TicTacToeBoard.PLAYER_ONE;
+    private boolean lastMoveWon;
+
+
+    /**
+     * Creates an empty board
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeGravityBoard(int width, int height, int piecesForWin) {
+        if(width < 1 || height < 1 || piecesForWin < 1) {
+            throw new IllegalArgumentException("Board dimensions must be positive");
+        }
+        if(width * (height + 1) > 64) {
+            throw new IllegalArgumentException("A " + width + "x" + height + " board does not fit in 64 bits");
+        }
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+        this.columnBits = height + 1;
+        //Up a column, along a row, and the two diagonals, leaving out any a line would not fit along
+        int[] directions = {1, columnBits, columnBits + 1, columnBits - 1};
+        int count = 0;
+        for(int d = 0; d < directions.length; d++) {
+            if((piecesForWin - 1) * directions[d] < width * columnBits) {
+                directions[count++] = directions[d];
+            }
+        }
+        this.shifts = Arrays.copyOf(directions, count);
+        long bottom = 0;
+        long board = 0;
+        for(int col = 0; col < width; col++) {
+            bottom |= 1L << (col * columnBits);
+            board |= ((1L << height) - 1) << (col * columnBits);
+        }
+        this.bottomMask = bottom;
+        this.boardMask = board;
+        this.columnOrder = new int[width];
+        int index = 0;
+        //Twice the distance from the middle, so that both middle columns of an even board come first
+        for(int distance = (width + 1) % 2; index < width; distance += 2) {
+            for(int col = 0; col < width; col++) {
+                if(Math.abs(2 * col - (width - 1)) == distance) {
+                    columnOrder[index++] = col;
+                }
+            }
+        }
+        this.nextBit = new int[width];
+        for(int col = 0; col < width; col++) {
+            nextBit[col] = col * columnBits;
+        }
+        this.moveStack = new int[width * height];
+    }
+
+
+    /**
+     * Makes a separate board with the same shape and moves, for another thread to use
+     * @return The copy
+     */
+    public TicTacToeGravityBoard copy() {
+        TicTacToeGravityBoard copy = new TicTacToeGravityBoard(width, height, piecesForWin);
+        for(int i = 0; i < moveCount; i++) {
+            copy.makeMove(moveStack[i]);
+        }
+        return copy;
+    }
+
+
+    /**
+     * Drops a piece for the side to move and passes the turn
+     * @param col The column to drop into, which must not be full
+     */
+    public void makeMove(int col) {
+        long bit = 1L << nextBit[col]++;
+        pieces[sideToMove] |= bit;
+        occupied |= bit;
+        moveStack[moveCount++] = col;
+        lastMoveWon = hasLine(pieces[sideToMove]);
+        sideToMove = 3 - sideToMove;
+    }
+
+
+    /**
+     * Takes back the last move made
+     */
+    public void unmakeMove() {
+        int col = moveStack[--moveCount];
+        long bit = 1L << --nextBit[col];
+        sideToMove = 3 - sideToMove;
+        pieces[sideToMove] &= ~bit;
+        occupied &= ~bit;
+        //A position is only ever reached without a win before it, so taking back leaves no win
+        lastMoveWon = false;
+    }
+
+
+    /**
+     * Checks a side's pieces for k in a row, by anding the pieces with themselves shifted
+     * one step along a direction k - 1 times, which leaves a bit only where a line starts
+     * @param bits A side's pieces
+     * @return Whether there is a line of piecesForWin
+     */
+    public boolean hasLine(long bits) {
+        for(int d = 0; d < shifts.length; d++) {
+            int shift = shifts[d];
+            long starts = bits;
+            for(int i = 1; i < piecesForWin && starts != 0; i++) {
+                starts &= bits >>> (i * shift);
+            }
+            if(starts != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Finds the empty cells that would give a side k in a row, whether or not a piece can be
+     * dropped on them yet
+     * @param side The side
+     * @return A mask of the cells
+     */
+    public long getWinningCells(int side) {
+        return getWinningCells(pieces[side]);
+    }
+
+
+    /**
+     * Finds the empty cells that would complete a line of k for some set of pieces, which lets
+     * a search see what a move would threaten without making it
+     * @param bits The pieces
+     * @return A mask of the cells
+     */
+    public long getWinningCells(long bits) {
+        long cells = 0;
+        for(int d = 0; d < shifts.length; d++) {
+            int shift = shifts[d];
+            //For every place the gap can be in a line, find the lines whose other cells are all ours
+            for(int gap = 0; gap < piecesForWin; gap++) {
+                long starts = -1L;
+                for(int i = 0; i < piecesForWin && starts != 0; i++) {
+                    if(i != gap) {
+                        starts &= bits >>> (i * shift);
+                    }
+                }
+                cells |= starts << (gap * shift);
+            }
+        }
+        return cells & boardMask & ~occupied;
+    }
+
+
+    /**
+     * @return A mask of the cells a piece can be dropped on right now
+     */
+    public long getPlayableCells() {
+        return (occupied + bottomMask) & boardMask;
+    }
+
+
+    /**
+     * @param col A column
+     * @return A mask of the whole column
+     */
+    public long getColumnMask(int col) {
+        return ((1L << height) - 1) << (col * columnBits);
+    }
+
+
+    /**
+     * Lists the columns that are not full, middle columns first
+     * @param list Where the moves are written, must have room for every column
+     * @return How many moves were written
+     */
+    public int generateMoves(int[] list) {
+        int count = 0;
+        for(int i = 0; i < width; i++) {
+            int col = columnOrder[i];
+            if(canPlay(col)) {
+                list[count++] = col;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * @param col A column that is not full
+     * @return The bit the next piece dropped into the column goes on
+     */
+    public long getNextCell(int col) {
+        return 1L << nextBit[col];
+    }
+
+
+    public boolean canPlay(int col) {
+        return col >= 0 && col < width && nextBit[col] < col * columnBits + height;
+    }
+
+
+    /**
+     * Builds a hash of the position. Player one's pieces plus every occupied cell is different
+     * for every position, so it is mixed rather than looked up in a Zobrist table.
+     * @return The hash
+     */
+    public long getHash() {
+        return mix(pieces[TicTacToeBoard.PLAYER_ONE] + occupied + bottomMask);
+    }
+
+
+    /**
+     * Builds the hash the position would have with its columns in the opposite order, which is
+     * worth the same to both sides
+     * @return The hash of the mirror image
+     */
+    public long getMirrorHash() {
+        //Every column of the key stays inside its own height + 1 bits, so columns swap whole
+        long key = pieces[TicTacToeBoard.PLAYER_ONE] + occupied + bottomMask;
+        long columnMask = (1L << columnBits) - 1;
+        long mirrored = 0;
+        for(int col = 0; col < width; col++) {
+            long column = (key >>> (col * columnBits)) & columnMask;
+            mirrored |= column << ((width - 1 - col) * columnBits);
+        }
+        return mix(mirrored);
+    }
+
+
+    /**
+     * Spreads the bits of a position key over the whole hash
+     * @param key A key that is different for every position
+     * @return The hash
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+
+    /**
+     * Prints the board top row first, in rows of '.', 'X' and 'O' under the column numbers
+     * @return The board with one row per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for(int col = 0; col < width; col++) {
+            text.append(' ').append(col + 1);
+        }
+        text.append('\n');
+        for(int row = height - 1; row >= 0; row--) {
+            for(int col = 0; col < width; col++) {
+                text.append(' ').append(TicTacToeConsole.getPieceChar(getPiece(col, row)));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+
+    /**
+     * @param col The column
+     * @param row The row, 0 at the bottom
+     * @return EMPTY, PLAYER_ONE or PLAYER_TWO
+     */
+    public int getPiece(int col, int row) {
+        long bit = 1L << (col * columnBits + row);
+        if((pieces[TicTacToeBoard.PLAYER_ONE] & bit) != 0) {
+            return TicTacToeBoard.PLAYER_ONE;
+        } else if((pieces[TicTacToeBoard.PLAYER_TWO] & bit) != 0) {
+            return TicTacToeBoard.PLAYER_TWO;
+        }
+        return TicTacToeBoard.EMPTY;
+    }
+
+
+    public long getPieces(int side) {
+        return pieces[side];
+    }
+
+
+    public int getWidth() {
+        return width;
+    }
+
+
+    public int getHeight() {
+        return height;
+    }
+
+
+    public int getPiecesForWin() {
+        return piecesForWin;
+    }
+
+
+    public int getNumSquares() {
+        return width * height;
+    }
+
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+
+    public int getMove(int index) {
+        return moveStack[index];
+    }
+
+
+    public boolean lastMoveWon() {
+        return lastMoveWon;
+    }
+
+
+    public boolean isFull() {
+        return moveCount == width * height;
+    }
+}
@@ -0,0 +1,521 @@
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Iterative deepening principal variation search over a TicTacToeGravityBoard.
+ *
+ * Before searching a node it looks at the cells either side could win on: a playable win ends
+ * the search, two playable threats of the opponent lose, one must be blocked, and a column is
+ * never played when it lets the opponent drop onto a winning cell. Forced moves do not use up
+ * depth. The remaining moves are tried middle column first, after the cached best move and
+ * ordered by how many winning cells they make. Once an iteration is as deep as the empty cells
+ * left, the score is the exact game result and the move played is perfect. Until then the move
+ * is only the best one found, unless a solution book has every move of the position in it.
+ *
+ * solve works out just the result of a position with null windows, for building such books.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeGravitySearch {
+
+    //Constants
+    private final static int WIN_SCORE = TicTacToeSearch.WIN_SCORE;
+    private final static int INFINITY = TicTacToeSearch.INFINITY;
+    private final static int MAX_PLY = 65;
+    private final static int MAX_COLUMNS = 64;
+    private final static int TIME_CHECK_INTERVAL = 1023;
+    private final static int THREAT_WEIGHT = 10;
+
+    /**
+     * Receives the search after each finished iteration, to read its progress from
+     */
+    public interface Listener {
+        void onIteration(TicTacToeGravitySearch search);
+    }
+
+    //Search state
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final int[][] moves = new int[MAX_PLY][MAX_COLUMNS];
+    private final int[][] moveScores = new int[MAX_PLY][MAX_COLUMNS];
+    private TicTacToeHashTable hashTable = new TicTacToeHashTable(TicTacToeHashTable.DEFAULT_MEGABYTES);
+    private volatile boolean stopRequested;
+    private boolean aborted;
+    private long nodes;
+    private int completedDepth;
+    private boolean solved;
+    private long startTime;
+    private long deadline;
+    private TicTacToeGravityBoard board;
+    private int bestScore;
+    private TicTacToeSolutionBook book;
+
+
+    /**
+     * Asks a running search to stop as soon as possible. Safe to call from another thread.
+     * The request stays in place until clearStop is called, even if no search is running yet.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+
+    //Takes back an earlier stop request, must be called before starting a new search
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+
+    /**
+     * Finds the best move for the side to move
+     * @param board The position to search, left unchanged when the search returns
+     * @param maxDepth The deepest iteration to run
+     * @param moveTimeMs How long to search for, or 0 for no time limit
+     * @param listener Told about every finished iteration, may be null
+     * @return The column to play, or NO_MOVE when the game is already over
+     */
+    public int search(TicTacToeGravityBoard board, int maxDepth, long moveTimeMs, Listener listener) {
+        this.board = board;
+        startTime = System.currentTimeMillis();
+        deadline = moveTimeMs > 0 ? startTime + moveTimeMs : Long.MAX_VALUE;
+        aborted = false;
+        nodes = 0;
+        bestScore = 0;
+        completedDepth = 0;
+        solved = false;
+        hashTable.newSearch();
+        if(board.lastMoveWon() || board.isFull()) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        if(book != null && book.matches(board) && findBookMove(listener)) {
+            solved = true;
+            return pvTable[0][0];
+        }
+
+        int[] rootMoves = new int[MAX_COLUMNS];
+        board.generateMoves(rootMoves);
+        int bestMove = rootMoves[0];
+        int emptyCells = board.getNumSquares() - board.getMoveCount();
+        int depthLimit = Math.min(maxDepth, emptyCells);
+
+        // Deepen one ply at a time until out of time or the result is known
+        for(int depth = 1; depth <= depthLimit; depth++) {
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if(aborted) {
+                break;
+            }
+            completedDepth = depth;
+            bestScore = score;
+            bestMove = pvTable[0][0];
+            solved = TicTacToeSearch.isProvenScore(score) || depth == emptyCells;
+            if(listener != null) {
+                listener.onIteration(this);
+            }
+            if(solved) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+
+    /**
+     * Works out the exact result of a position with two null window searches to the end of the
+     * game, which is much cheaper than deepening one ply at a time when only the result is needed
+     * @param board The position to solve, left unchanged when the search returns
+     * @param moveTimeMs How long to search for, or 0 for no time limit
+     * @return WIN, DRAW or LOSS of TicTacToeSolutionBook for the side to move, or UNKNOWN
+     * when time ran out first
+     */
+    public int solve(TicTacToeGravityBoard board, long moveTimeMs) {
+        this.board = board;
+        startTime = System.currentTimeMillis();
+        deadline = moveTimeMs > 0 ? startTime + moveTimeMs : Long.MAX_VALUE;
+        aborted = false;
+        nodes = 0;
+        hashTable.newSearch();
+        if(board.lastMoveWon()) {
+            return TicTacToeSolutionBook.LOSS;
+        }
+        int emptyCells = board.getNumSquares() - board.getMoveCount();
+        //First whether the side to move wins, then whether it at least draws
+        int result;
+        if(negamax(emptyCells, 0, 0, 1) > 0) {
+            result = TicTacToeSolutionBook.WIN;
+        } else if(negamax(emptyCells, 0, -1, 0) >= 0) {
+            result = TicTacToeSolutionBook.DRAW;
+        } else {
+            result = TicTacToeSolutionBook.LOSS;
+        }
+        return aborted ? TicTacToeSolutionBook.UNKNOWN : result;
+    }
+
+
+    /**
+     * Picks the best move from the solution book, when every move is in it or one of them wins,
+     * as TicTacToeSearch does
+     * @param listener Told about the move, may be null
+     * @return Whether the book decided the move
+     */
+    private boolean findBookMove(Listener listener) {
+        int[] rootMoves = new int[MAX_COLUMNS];
+        int count = board.generateMoves(rootMoves);
+        int bestMove = TicTacToeBoard.NO_MOVE;
+        int bestValue = TicTacToeSolutionBook.LOSS - 1;
+        boolean allKnown = true;
+        for(int i = 0; i < count; i++) {
+            board.makeMove(rootMoves[i]);
+            int value;
+            if(board.lastMoveWon()) {
+                value = TicTacToeSolutionBook.WIN;
+            } else {
+                int childValue = getBookValue();
+                value = childValue == TicTacToeSolutionBook.UNKNOWN ? childValue : -childValue;
+            }
+            board.unmakeMove();
+            if(value == TicTacToeSolutionBook.UNKNOWN) {
+                allKnown = false;
+            } else if(value > bestValue) {
+                bestValue = value;
+                bestMove = rootMoves[i];
+            }
+        }
+        //An unknown move might be better than anything short of a win
+        if(bestMove == TicTacToeBoard.NO_MOVE || (!allKnown && bestValue != TicTacToeSolutionBook.WIN)) {
+            return false;
+        }
+        setPv(0, bestMove);
+        if(bestValue == TicTacToeSolutionBook.WIN) {
+            bestScore = WIN_SCORE - TicTacToeSearch.MAX_PLY;
+        } else if(bestValue == TicTacToeSolutionBook.LOSS) {
+            bestScore = -(WIN_SCORE - TicTacToeSearch.MAX_PLY);
+        } else {
+            bestScore = 0;
+        }
+        completedDepth = 1;
+        if(listener != null) {
+            listener.onIteration(this);
+        }
+        return true;
+    }
+
+
+    /**
+     * Looks the position up in the book, as it is and mirrored
+     * @return WIN, DRAW or LOSS for the side to move, or UNKNOWN if neither is in the book
+     */
+    private int getBookValue() {
+        int value = book.get(board.getHash());
+        if(value == TicTacToeSolutionBook.UNKNOWN) {
+            value = book.get(board.getMirrorHash());
+        }
+        return value;
+    }
+
+
+    /**
+     * Recursive function that scores a position for the side to move
+     * @param depth How many more plies to search, not counting forced moves
+     * @param ply How far from the root this node is
+     * @param alpha The score the side to move is already guaranteed
+     * @param beta The score the opponent is already guaranteed
+     * @return The score of the position from the side to move's point of view
+     */
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        nodes++;
+        pvLength[ply] = 0;
+        if((nodes & TIME_CHECK_INTERVAL) == 0 && (stopRequested || System.currentTimeMillis() > deadline)) {
+            aborted = true;
+        }
+        if(aborted) {
+            return 0;
+        }
+
+        // The previous move won, so the side to move has lost
+        if(board.lastMoveWon()) {
+            return -(WIN_SCORE - ply);
+        }
+        // When nobody wins and it is a draw
+        if(board.isFull()) {
+            return 0;
+        }
+
+        // A winning cell we can drop onto wins with the next move
+        int side = board.getSideToMove();
+        long playable = board.getPlayableCells();
+        long wins = board.getWinningCells(side) & playable;
+        if(wins != 0) {
+            setPv(ply, columnOf(wins));
+            return WIN_SCORE - ply - 1;
+        }
+        // Never play right under a cell the opponent wins on, and block a threat they can play now
+        long threats = board.getWinningCells(3 - side);
+        long forced = threats & playable;
+        long safe = playable & ~(threats >>> 1);
+        long candidates = forced != 0 ? forced & safe : safe;
+        if(Long.bitCount(forced) > 1 || candidates == 0) {
+            setPv(ply, columnOf(forced != 0 ? forced : playable));
+            return -(WIN_SCORE - ply - 2);
+        }
+        // Out of depth and nothing forced, so guess from the shape of the position
+        if(depth <= 0 && forced == 0) {
+            return evaluate(side, threats);
+        }
+
+        // Mate distance pruning, as in TicTacToeSearch
+        alpha = Math.max(alpha, -(WIN_SCORE - ply));
+        beta = Math.min(beta, WIN_SCORE - ply - 1);
+        if(alpha >= beta) {
+            return alpha;
+        }
+
+        long key = board.getHash();
+        long entry = hashTable.probe(key);
+        int hashMove = TicTacToeBoard.NO_MOVE;
+        if(entry != 0) {
+            hashMove = TicTacToeHashTable.getMove(entry);
+            boolean isPvNode = beta - alpha > 1;
+            if(!isPvNode && TicTacToeHashTable.getDepth(entry) >= depth) {
+                int score = scoreFromHash(TicTacToeHashTable.getScore(entry), ply);
+                int bound = TicTacToeHashTable.getBound(entry);
+                if(bound == TicTacToeHashTable.BOUND_EXACT
+                    || (bound == TicTacToeHashTable.BOUND_LOWER && score >= beta)
+                    || (bound == TicTacToeHashTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        int originalAlpha = alpha;
+
+        int[] nodeMoves = moves[ply];
+        int count = orderMoves(nodeMoves, moveScores[ply], candidates, side, hashMove);
+        int childDepth = forced != 0 ? depth : depth - 1;
+
+        int best = -INFINITY;
+        int bestMove = TicTacToeBoard.NO_MOVE;
+        for(int i = 0; i < count; i++) {
+            int col = nodeMoves[i];
+            board.makeMove(col);
+            int score;
+            if(i == 0) {
+                score = -negamax(childDepth, ply + 1, -beta, -alpha);
+            } else {
+                // Only prove that this move is no better than the first one
+                score = -negamax(childDepth, ply + 1, -alpha - 1, -alpha);
+                if(score > alpha && score < beta) {
+                    score = -negamax(childDepth, ply + 1, -beta, -alpha);
+                }
+            }
+            board.unmakeMove();
+            if(aborted) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                bestMove = col;
+                if(score > alpha) {
+                    alpha = score;
+                    updatePv(ply, col);
+                }
+                if(alpha >= beta) {
+                    break;
+                }
+            }
+        }
+
+        int bound;
+        if(best >= beta) {
+            bound = TicTacToeHashTable.BOUND_LOWER;
+        } else if(best > originalAlpha) {
+            bound = TicTacToeHashTable.BOUND_EXACT;
+        } else {
+            bound = TicTacToeHashTable.BOUND_UPPER;
+        }
+        hashTable.store(key, scoreToHash(best, ply), Math.max(depth, 0), bound, bestMove);
+        return best;
+    }
+
+
+    /**
+     * Lists the columns whose next cell is a candidate, the cached best move first, then by how
+     * many winning cells the move would make, then middle columns first
+     * @param list Where the moves are written
+     * @param scores Room for one score per move
+     * @param candidates The cells that may be played on
+     * @param side The side to move
+     * @param hashMove The cached best move, or NO_MOVE
+     * @return How many moves were written
+     */
+    private int orderMoves(int[] list, int[] scores, long candidates, int side, int hashMove) {
+        int count = board.generateMoves(list);
+        long mine = board.getPieces(side);
+        int kept = 0;
+        for(int i = 0; i < count; i++) {
+            int col = list[i];
+            long cell = board.getNextCell(col);
+            if((candidates & cell) == 0) {
+                continue;
+            }
+            int score;
+            if(col == hashMove) {
+                score = Integer.MAX_VALUE;
+            } else {
+                score = Long.bitCount(board.getWinningCells(mine | cell)) * MAX_COLUMNS - i;
+            }
+            //Insertion sort, there are never many columns
+            int j = kept++;
+            while(j > 0 && scores[j - 1] < score) {
+                list[j] = list[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            list[j] = col;
+            scores[j] = score;
+        }
+        return kept;
+    }
+
+
+    /**
+     * Scores a quiet position by the winning cells each side has, and then by pieces in the
+     * middle column, which is on the most lines
+     * @param side The side to move
+     * @param threats The opponent's winning cells
+     * @return Positive when the side to move is better off
+     */
+    private int evaluate(int side, long threats) {
+        long middle = board.getColumnMask(board.getWidth() / 2);
+        return THREAT_WEIGHT * (Long.bitCount(board.getWinningCells(side)) - Long.bitCount(threats))
+            + Long.bitCount(board.getPieces(side) & middle) - Long.bitCount(board.getPieces(3 - side) & middle);
+    }
+
+
+    /**
+     * @param cells A mask with at least one cell
+     * @return The column of the lowest set cell
+     */
+    private int columnOf(long cells) {
+        return Long.numberOfTrailingZeros(cells) / (board.getHeight() + 1);
+    }
+
+
+    /**
+     * Win and loss scores count plies from the root, but a cached position can be reached at
+     * any ply, so they are stored counting from the position itself
+     * @param score The score counted from the root
+     * @param ply The ply of the position
+     * @return The score counted from the position
+     */
+    private static int scoreToHash(int score, int ply) {
+        if(score >= WIN_SCORE - TicTacToeSearch.MAX_PLY) {
+            return score + ply;
+        } else if(score <= -(WIN_SCORE - TicTacToeSearch.MAX_PLY)) {
+            return score - ply;
+        }
+        return score;
+    }
+
+
+    /**
+     * Undoes scoreToHash
+     * @param score The score counted from the position
+     * @param ply The ply the position was reached at
+     * @return The score counted from the root
+     */
+    private static int scoreFromHash(int score, int ply) {
+        if(score >= WIN_SCORE - TicTacToeSearch.MAX_PLY) {
+            return score - ply;
+        } else if(score <= -(WIN_SCORE - TicTacToeSearch.MAX_PLY)) {
+            return score + ply;
+        }
+        return score;
+    }
+
+
+    /**
+     * Puts a move in front of the principal variation found below it
+     * @param ply The ply of the move
+     * @param col The move
+     */
+    private void updatePv(int ply, int col) {
+        pvTable[ply][0] = col;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+
+    /**
+     * Ends the principal variation with a single move, for nodes decided without searching
+     * @param ply The ply of the move
+     * @param col The move
+     */
+    private void setPv(int ply, int col) {
+        pvTable[ply][0] = col;
+        pvLength[ply] = 1;
+    }
+
+
+    /**
+     * Uses a different hash table
+     * @param hashTable The table
+     */
+    public void setHashTable(TicTacToeHashTable hashTable) {
+        this.hashTable = hashTable;
+    }
+
+
+    /**
+     * Plays solved positions straight from a book instead of searching them
+     * @param book The book, or null to always search
+     */
+    public void setBook(TicTacToeSolutionBook book) {
+        this.book = book;
+    }
+
+
+    public TicTacToeHashTable getHashTable() {
+        return hashTable;
+    }
+
+
+    /**
+     * @return Whether the last search found the exact result of the game, so its move is perfect
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+
+    public long getNodes() {
+        return nodes;
+    }
+
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+
+    public int getPvLength() {
+        return pvLength[0];
+    }
+
+
+    public int getPvMove(int index) {
+        return pvTable[0][index];
+    }
+
+
+    public int getBestScore() {
+        return bestScore;
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Builds an opening book for gravity boards offline, for TicTacToeGravity to play from.
+ *
+ * Usage: java TicTacToeGravitySolver [--size m n k] [--moves columns] [--plies p] [--memory MB] [--book file]
+ *
+ * Starts from the position after the given columns, 1 for the leftmost, and solves every position
+ * up to p more moves into it. Only the deepest positions are searched, with
+ * TicTacToeGravitySearch.solve, and every shallower one takes the best of its children's values.
+ * A position is skipped when it or its mirror image is in the book already, and the book is
+ * saved every minute, so a later run with the same file picks up from where the last one stopped.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeGravitySolver {
+
+    //Constants
+    private final static int DEFAULT_WIDTH = 7;
+    private final static int DEFAULT_HEIGHT = 6;
+    private final static int DEFAULT_PIECES_FOR_WIN = 4;
+    private final static int DEFAULT_PLIES = 1;
+    private final static int DEFAULT_MEMORY_MB = 256;
+    private final static long CHECKPOINT_INTERVAL_MS = 60000;
+    private final static String USAGE = "Usage: java TicTacToeGravitySolver [--size m n k] [--moves columns]"
+        + " [--plies p] [--memory MB] [--book file]";
+
+    //Solver state
+    private final TicTacToeGravityBoard board;
+    private final TicTacToeGravitySearch search = new TicTacToeGravitySearch();
+    private final TicTacToeSolutionBook book;
+    private final File bookFile;
+    private long lastCheckpoint = System.currentTimeMillis();
+
+
+    /**
+     * Creates a solver
+     * @param board The position to solve from, changed during a solve but left as it was after
+     * @param book Where solved positions go
+     * @param bookFile Where to save the book
+     * @param memory How many megabytes the search's hash table may use
+     */
+    public TicTacToeGravitySolver(TicTacToeGravityBoard board, TicTacToeSolutionBook book, File bookFile, int memory) {
+        this.board = board;
+        this.book = book;
+        this.bookFile = bookFile;
+        search.setHashTable(new TicTacToeHashTable(memory));
+    }
+
+
+    //Solves the opening of a board size from the command line
+    public static void main(String[] args) throws IOException {
+        int width = DEFAULT_WIDTH;
+        int height = DEFAULT_HEIGHT;
+        int piecesForWin = DEFAULT_PIECES_FOR_WIN;
+        int plies = DEFAULT_PLIES;
+        int memory = DEFAULT_MEMORY_MB;
+        String moves = "";
+        File bookFile = null;
+        TicTacToeGravityBoard board;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--size")) {
+                    width = Integer.parseInt(args[++i]);
+                    height = Integer.parseInt(args[++i]);
+                    piecesForWin = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--moves")) {
+                    moves = args[++i];
+                } else if(args[i].equals("--plies")) {
+                    plies = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--memory")) {
+                    memory = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--book")) {
+                    bookFile = new File(args[++i]);
+                } else {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            board = new TicTacToeGravityBoard(width, height, piecesForWin);
+        } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(USAGE);
+            return;
+        } catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        for(int i = 0; i < moves.length(); i++) {
+            int col = Character.digit(moves.charAt(i), 10) - 1;
+            if(!board.canPlay(col) || board.lastMoveWon()) {
+                System.out.println("Can not play column " + moves.charAt(i) + " after " + moves.substring(0, i));
+                return;
+            }
+            board.makeMove(col);
+        }
+        if(bookFile == null) {
+            bookFile = new File("gravity-" + width + "x" + height + "-" + piecesForWin + ".book");
+        }
+
+        TicTacToeSolutionBook book = new TicTacToeSolutionBook(width, height, piecesForWin);
+        if(bookFile.exists()) {
+            book = TicTacToeSolutionBook.load(bookFile);
+            if(!book.matches(width, height, piecesForWin)) {
+                System.out.println(bookFile + " holds a " + book.getSizeName() + " book, not " + width + "x" + height
+                    + " k=" + piecesForWin);
+                return;
+            }
+            System.out.println("Resuming with " + book.size() + " solved positions from " + bookFile);
+        }
+        TicTacToeGravitySolver solver = new TicTacToeGravitySolver(board, book, bookFile, memory);
+        long start = System.currentTimeMillis();
+        int value = solver.solveTree(plies);
+        book.save(bookFile);
+        System.out.println("After '" + moves + "': " + TicTacToeProofSolver.valueToString(value)
+            + " for the side to move, " + book.size() + " positions in " + bookFile + " after "
+            + (System.currentTimeMillis() - start) / 1000 + " s");
+    }
+
+
+    /**
+     * Solves the position on the board and every position up to some moves into it, into the book
+     * @param plies How many moves deep to go before searching
+     * @return WIN, DRAW or LOSS for the side to move
+     * @throws IOException If the book can not be saved
+     */
+    public int solveTree(int plies) throws IOException {
+        if(board.lastMoveWon()) {
+            return TicTacToeSolutionBook.LOSS;
+        }
+        int value = book.get(board.getHash());
+        if(value == TicTacToeSolutionBook.UNKNOWN) {
+            value = book.get(board.getMirrorHash());
+        }
+        if(value != TicTacToeSolutionBook.UNKNOWN) {
+            return value;
+        }
+
+        if(plies == 0 || board.isFull()) {
+            long start = System.currentTimeMillis();
+            value = search.solve(board, 0);
+            System.out.println(movesToString() + ": " + TicTacToeProofSolver.valueToString(value)
+                + " for the side to move (" + search.getNodes() + " nodes in "
+                + (System.currentTimeMillis() - start) + " ms)");
+        } else {
+            //The best of the children, each of which is worth the opposite to the side that moved
+            int[] list = new int[board.getWidth()];
+            int count = board.generateMoves(list);
+            value = TicTacToeSolutionBook.LOSS;
+            for(int i = 0; i < count; i++) {
+                board.makeMove(list[i]);
+                value = Math.max(value, -solveTree(plies - 1));
+                board.unmakeMove();
+            }
+        }
+        book.put(board.getHash(), value);
+        if(System.currentTimeMillis() - lastCheckpoint > CHECKPOINT_INTERVAL_MS) {
+            book.save(bookFile);
+            lastCheckpoint = System.currentTimeMillis();
+        }
+        return value;
+    }
+
+
+    /**
+     * @return The moves played so far as one column number each, 1 for the leftmost
+     */
+    private String movesToString() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < board.getMoveCount(); i++) {
+            text.append(board.getMove(i) + 1);
+        }
+        return text.toString();
+    }
+}
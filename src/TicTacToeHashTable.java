@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Shared cache of search results that any number of search threads can read and write
+ * at once without locks.
+ *
+ * Every entry is two longs in one long[]: the key xored with the data, and the data. A thread
+ * that reads an entry while another thread is halfway through writing it sees a key that does
+ * not match and treats it as a miss, so a torn entry is never used. Entries come in buckets of
+ * four (one cache line), and a new result replaces the shallowest or oldest entry in its bucket.
+ *
+ * Data layout, low bits first: score (32), depth (9), bound (2), age (6), best move + 1 (15).
+ * Nine depth bits hold a search to the end of a board of TicTacToeSearch.MAX_PLY squares.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeHashTable {
+
+    //Constants
+    public final static int BOUND_NONE = 0;
+    public final static int BOUND_UPPER = 1;
+    public final static int BOUND_LOWER = 2;
+    public final static int BOUND_EXACT = 3;
+    public final static int DEFAULT_MEGABYTES = 16;
+    private final static int BUCKET_SIZE = 4;
+    private final static int LONGS_PER_ENTRY = 2;
+    private final static int BYTES_PER_BUCKET = BUCKET_SIZE * LONGS_PER_ENTRY * 8;
+    private final static int FILL_SAMPLE_BUCKETS = 1000;
+    private final static int AGE_MASK = 63;
+    private final static int DEPTH_MASK = 511;
+
+    //Table state
+    private final long[] entries;
+    private final int bucketMask;
+    private final int megabytes;
+    private volatile int age;
+
+
+    /**
+     * Creates an empty table
+     * @param megabytes How much memory to use, rounded down to a power of two number of buckets
+     */
+    public TicTacToeHashTable(int megabytes) {
+        long buckets = Math.max(1, (long) megabytes * 1024 * 1024 / BYTES_PER_BUCKET);
+        int bucketCount = Integer.highestOneBit((int) Math.min(buckets, 1 << 27));
+        this.entries = new long[bucketCount * BUCKET_SIZE * LONGS_PER_ENTRY];
+        this.bucketMask = bucketCount - 1;
+        this.megabytes = megabytes;
+    }
+
+
+    /**
+     * Marks the start of a new search, so entries from older searches get replaced first
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+
+    /**
+     * Removes every entry
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        age = 0;
+    }
+
+
+    /**
+     * Looks up a position
+     * @param key The position's hash
+     * @return The entry's data, or 0 if it is not stored. Read it with the static getters.
+     */
+    public long probe(long key) {
+        int first = bucketIndex(key);
+        for(int i = first; i < first + BUCKET_SIZE * LONGS_PER_ENTRY; i += LONGS_PER_ENTRY) {
+            long data = entries[i + 1];
+            if((entries[i] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Stores a search result
+     * @param key The position's hash
+     * @param score The score, already adjusted to be relative to this position
+     * @param depth How deep the search below the position was
+     * @param bound Whether the score is exact, an upper bound or a lower bound
+     * @param move The best move found, or NO_MOVE
+     */
+    public void store(long key, int score, int depth, int bound, int move) {
+        int first = bucketIndex(key);
+        int currentAge = age;
+        int victim = first;
+        int victimValue = Integer.MAX_VALUE;
+        for(int i = first; i < first + BUCKET_SIZE * LONGS_PER_ENTRY; i += LONGS_PER_ENTRY) {
+            long data = entries[i + 1];
+            if((entries[i] ^ data) == key || data == 0) {
+                //Keep the old best move when the new result has none
+                if(move == TicTacToeBoard.NO_MOVE && data != 0) {
+                    move = getMove(data);
+                }
+                victim = i;
+                break;
+            }
+            //Deeper is worth keeping, every search of age costs four plies
+            int entryAge = (currentAge - getAge(data)) & AGE_MASK;
+            int value = getDepth(data) - 4 * entryAge;
+            if(value < victimValue) {
+                victimValue = value;
+                victim = i;
+            }
+        }
+        long data = pack(score, depth, bound, currentAge, move);
+        entries[victim] = key ^ data;
+        entries[victim + 1] = data;
+    }
+
+
+    /**
+     * @param key A position's hash
+     * @return The index of the first long of its bucket
+     */
+    private int bucketIndex(long key) {
+        return (int) ((key ^ (key >>> 32)) & bucketMask) * BUCKET_SIZE * LONGS_PER_ENTRY;
+    }
+
+
+    /**
+     * Packs an entry's fields into one long
+     */
+    private static long pack(int score, int depth, int bound, int age, int move) {
+        return (score & 0xFFFFFFFFL)
+            | ((long) (depth & DEPTH_MASK) << 32)
+            | ((long) bound << 41)
+            | ((long) age << 43)
+            | ((long) (move + 1) << 49);
+    }
+
+
+    public static int getScore(long data) {
+        return (int) data;
+    }
+
+
+    public static int getDepth(long data) {
+        return (int) (data >>> 32) & DEPTH_MASK;
+    }
+
+
+    public static int getBound(long data) {
+        return (int) (data >>> 41) & 3;
+    }
+
+
+    private static int getAge(long data) {
+        return (int) (data >>> 43) & AGE_MASK;
+    }
+
+
+    public static int getMove(long data) {
+        return (int) (data >>> 49) - 1;
+    }
+
+
+    /**
+     * Estimates how full the table is from a sample of buckets, counting only entries
+     * written by the current search
+     * @return The share of used entries, from 0 to 1
+     */
+    public double getFillRate() {
+        int buckets = Math.min(FILL_SAMPLE_BUCKETS, bucketMask + 1);
+        int currentAge = age;
+        int used = 0;
+        for(int i = 0; i < buckets * BUCKET_SIZE * LONGS_PER_ENTRY; i += LONGS_PER_ENTRY) {
+            long data = entries[i + 1];
+            if(data != 0 && getAge(data) == currentAge) {
+                used++;
+            }
+        }
+        return (double) used / (buckets * BUCKET_SIZE);
+    }
+
+
+    public int getMegabytes() {
+        return megabytes;
+    }
+}
@@ -0,0 +1,332 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Move hints and an evaluation bar for games between two humans.
+ *
+ * A hint comes from the first of these that has the position:
+ *   - On 3x3 boards with 3 in a row, a table of every position solved when the class loads,
+ *     indexed by the position written as a base 3 number, so a lookup is one array read.
+ *   - A cache of search results shared by every game and thread in the process, so a position
+ *     that came up in an earlier game costs nothing.
+ *   - A search of the position, which ponder starts on a background thread as soon as a move
+ *     is played, so it runs while the board is printed and the next player reads it. Once it
+ *     is done, the position after its best move is searched too while the player thinks, so
+ *     the opponent's hint is usually in the cache before their turn starts.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeHintEngine {
+
+    //Constants
+    public final static long DEFAULT_SEARCH_MS = 1000;
+    private final static int TABLE_SIZE = 3;
+    private final static int TABLE_POSITIONS = 19683;
+    //The cache stops growing here rather than evicting, every entry being equally cheap to keep
+    private final static int MAX_CACHE_ENTRIES = 1 << 20;
+    private final static int BAR_WIDTH = 20;
+    //Heuristic score at which the bar is about three quarters full
+    private final static double BAR_SCALE = 64;
+
+    //Every 3x3 position: the best move and its result in plies, positive for a win, 0 for a draw
+    private final static byte[] TABLE_MOVES = new byte[TABLE_POSITIONS];
+    private final static byte[] TABLE_RESULTS = new byte[TABLE_POSITIONS];
+    private final static ConcurrentHashMap<Long, TicTacToeMoveAnalysis> CACHE =
+        new ConcurrentHashMap<Long, TicTacToeMoveAnalysis>();
+
+    static {
+        solveTable(new TicTacToeBoard(TABLE_SIZE, TABLE_SIZE, TABLE_SIZE), 0, new boolean[TABLE_POSITIONS]);
+    }
+
+    //Background search, one position at a time
+    private final long searchMs;
+    private final TicTacToeSearch search = new TicTacToeSearch();
+    private final ExecutorService executor;
+    private CompletableFuture<TicTacToeMoveAnalysis> pending;
+    private long pendingHash;
+    private volatile long wantedHash;
+
+
+    /**
+     * Creates a hint engine with its own background thread
+     * @param searchMs How long to search a position that is not in the table or the cache
+     */
+    public TicTacToeHintEngine(long searchMs) {
+        this.searchMs = searchMs;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hints");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Fills in the table for a position and every position after it
+     * @param board The board, at the position
+     * @param code The position as a base 3 number, a square's digit being the piece on it
+     * @param solved Which positions are already in the table
+     * @return The result for the side to move in plies, positive for a win, 0 for a draw
+     */
+    private static int solveTable(TicTacToeBoard board, int code, boolean[] solved) {
+        if(solved[code]) {
+            return TABLE_RESULTS[code];
+        }
+        int best = Integer.MIN_VALUE;
+        int bestMove = TicTacToeBoard.NO_MOVE;
+        int power = 1;
+        for(int square = 0; square < board.getNumSquares(); square++, power *= 3) {
+            if(!board.isEmpty(square)) {
+                continue;
+            }
+            int side = board.getSideToMove();
+            board.makeMove(square);
+            int result;
+            if(board.lastMoveWon()) {
+                result = 1;
+            } else if(board.isFull()) {
+                result = 0;
+            } else {
+                //The opponent's result one ply further away, from this side's point of view
+                int reply = solveTable(board, code + side * power, solved);
+                result = reply > 0 ? -(reply + 1) : (reply < 0 ? 1 - reply : 0);
+            }
+            board.unmakeMove();
+            if(isBetterResult(result, best)) {
+                best = result;
+                bestMove = square;
+            }
+        }
+        solved[code] = true;
+        TABLE_MOVES[code] = (byte) bestMove;
+        TABLE_RESULTS[code] = (byte) best;
+        return best;
+    }
+
+
+    /**
+     * @return Whether a is a better result than b: quicker wins, then draws, then slower losses
+     */
+    private static boolean isBetterResult(int a, int b) {
+        if(b == Integer.MIN_VALUE) {
+            return true;
+        }
+        if(Integer.signum(a) != Integer.signum(b)) {
+            return Integer.signum(a) > Integer.signum(b);
+        }
+        //Same kind of result: a win is better sooner, a loss is better later
+        return a != 0 && a < b;
+    }
+
+
+    /**
+     * Starts working out the hint for a position in the background, unless it is already known
+     * or being worked out, and then the hint for the reply. Call it as soon as a move is played.
+     * @param board The position, copied so the game can go on
+     */
+    public synchronized void ponder(TicTacToeBoard board) {
+        long hash = board.getHash();
+        wantedHash = hash;
+        if(board.lastMoveWon() || board.isFull() || (pending != null && pendingHash == hash)) {
+            return;
+        }
+        //A search for any other position is no use any more
+        search.stop();
+        TicTacToeMoveAnalysis known = lookUp(board);
+        if(known == null) {
+            startSearch(board.copy(), hash);
+        } else if(known.getMove() != TicTacToeBoard.NO_MOVE) {
+            //Known already, so go straight on to the reply
+            TicTacToeBoard reply = board.copy();
+            reply.makeMove(known.getMove());
+            if(!reply.lastMoveWon() && !reply.isFull() && lookUp(reply) == null) {
+                startSearch(reply, hash);
+            }
+        }
+    }
+
+
+    /**
+     * Queues a search on the background thread. Called holding the lock.
+     * @param board The position, which the background thread then owns
+     * @param wanted The position the game must still be at for the search to be worth running
+     */
+    private void startSearch(final TicTacToeBoard board, final long wanted) {
+        pendingHash = board.getHash();
+        pending = CompletableFuture.supplyAsync(() -> searchPosition(board, wanted), executor);
+    }
+
+
+    /**
+     * Runs on the background thread: searches a position unless the game has moved on, then
+     * starts on the position after its best move
+     * @param board The position, the thread's own copy
+     * @param wanted The position the search was started for: the same one, or the one before it
+     * @return The hint, or null when skipped
+     */
+    private TicTacToeMoveAnalysis searchPosition(TicTacToeBoard board, long wanted) {
+        long hash = board.getHash();
+        if(!isWanted(hash, wanted)) {
+            return null;
+        }
+        search.clearStop();
+        //ponder may have stopped the search for a newer position just before the clear
+        if(!isWanted(hash, wanted)) {
+            return null;
+        }
+        int move = search.search(board, TicTacToeSearch.MAX_PLY, searchMs, null);
+        int score = search.getBestScore();
+        TicTacToeMoveAnalysis hint = new TicTacToeMoveAnalysis(move, score, TicTacToeSearch.isProvenScore(score),
+            new int[] {move});
+        //A search cut short by a newer position only got partway, so it is not worth keeping
+        if(isWanted(hash, wanted) && move != TicTacToeBoard.NO_MOVE && CACHE.size() < MAX_CACHE_ENTRIES) {
+            CACHE.put(hash, hint);
+        }
+        //Only the position the game is at looks ahead, one reply deep
+        if(wantedHash == hash && move != TicTacToeBoard.NO_MOVE) {
+            board.makeMove(move);
+            synchronized(this) {
+                if(wantedHash == hash && !board.lastMoveWon() && !board.isFull() && lookUp(board) == null) {
+                    startSearch(board, hash);
+                }
+            }
+        }
+        return hint;
+    }
+
+
+    /**
+     * @param hash The position being searched
+     * @param wanted The position its search was started for
+     * @return Whether the game is at either of them, so the search is still of use
+     */
+    private boolean isWanted(long hash, long wanted) {
+        long current = wantedHash;
+        return current == hash || current == wanted;
+    }
+
+
+    /**
+     * Gets the hint for a position, waiting a little for the background search if it is on it
+     * @param board The position
+     * @param waitMs How long to wait for a search in progress
+     * @return The best move and its score for the side to move, or null when not known yet
+     */
+    public TicTacToeMoveAnalysis getHint(TicTacToeBoard board, long waitMs) {
+        TicTacToeMoveAnalysis hint = lookUp(board);
+        if(hint != null) {
+            return hint;
+        }
+        CompletableFuture<TicTacToeMoveAnalysis> future;
+        synchronized(this) {
+            future = pendingHash == board.getHash() ? pending : null;
+        }
+        if(future == null) {
+            return null;
+        }
+        try {
+            return future.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch(TimeoutException | ExecutionException e) {
+            return null;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+
+    /**
+     * Has a hint handed over once its search is done, for a hint that getHint gave up waiting for
+     * @param board The position
+     * @param action Given the hint on the background thread, unless the game has moved on by then
+     */
+    public void whenReady(TicTacToeBoard board, final Consumer<TicTacToeMoveAnalysis> action) {
+        final long hash = board.getHash();
+        CompletableFuture<TicTacToeMoveAnalysis> future;
+        synchronized(this) {
+            future = pendingHash == hash ? pending : null;
+        }
+        if(future != null) {
+            future.thenAccept(hint -> {
+                if(hint != null && wantedHash == hash) {
+                    action.accept(hint);
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Looks a position up in the table and then the cache
+     * @param board The position
+     * @return The hint, or null when it is in neither
+     */
+    public static TicTacToeMoveAnalysis lookUp(TicTacToeBoard board) {
+        if(board.getWidth() == TABLE_SIZE && board.getHeight() == TABLE_SIZE
+                && board.getPiecesForWin() == TABLE_SIZE) {
+            int code = 0;
+            for(int square = board.getNumSquares() - 1; square >= 0; square--) {
+                code = code * 3 + board.getPiece(square);
+            }
+            int move = TABLE_MOVES[code];
+            if(board.lastMoveWon() || board.isFull() || move == TicTacToeBoard.NO_MOVE) {
+                return null;
+            }
+            int result = TABLE_RESULTS[code];
+            int score = result > 0 ? TicTacToeSearch.WIN_SCORE - result
+                : (result < 0 ? -(TicTacToeSearch.WIN_SCORE + result) : 0);
+            return new TicTacToeMoveAnalysis(move, score, true, new int[] {move});
+        }
+        return CACHE.get(board.getHash());
+    }
+
+
+    /**
+     * Draws a bar that fills towards the side that is better off, for spectators
+     * @param hint A hint for the position
+     * @param sideToMove The side the hint's score is for
+     * @return The bar, such as "X [##########----------] O  draw"
+     */
+    public static String evaluationBar(TicTacToeMoveAnalysis hint, int sideToMove) {
+        int score = sideToMove == TicTacToeBoard.PLAYER_ONE ? hint.getScore() : -hint.getScore();
+        double share;
+        String value;
+        if(TicTacToeSearch.isProvenScore(score)) {
+            share = score > 0 ? 1 : 0;
+            value = (score > 0 ? "X" : "O") + " wins in " + hint.getDistance();
+        } else if(score == 0 && hint.isExact()) {
+            share = 0.5;
+            value = "draw";
+        } else {
+            share = 1 / (1 + Math.exp(-score / BAR_SCALE));
+            value = "cp " + score + " for X";
+        }
+        int filled = (int) Math.round(share * BAR_WIDTH);
+        StringBuilder bar = new StringBuilder("X [");
+        for(int i = 0; i < BAR_WIDTH; i++) {
+            bar.append(i < filled ? '#' : '-');
+        }
+        return bar.append("] O  ").append(value).toString();
+    }
+
+
+    /**
+     * @return How many positions the shared cache holds
+     */
+    public static int getCacheSize() {
+        return CACHE.size();
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * -------------------------------------------------------------------------------------------------
+ * The result of analysing one move: its score and the line of play expected after it.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeMoveAnalysis {
+
+    //Analysis of the move
+    private final int move;
+    private final int score;
+    private final boolean isExact;
+    private final int[] pv;
+
+
+    /**
+     * @param move The move
+     * @param score The score for the side making the move
+     * @param isExact Whether the score is exact, or only shown to be no better than this
+     * @param pv The expected line of play, starting with the move itself
+     */
+    public TicTacToeMoveAnalysis(int move, int score, boolean isExact, int[] pv) {
+        this.move = move;
+        this.score = score;
+        this.isExact = isExact;
+        this.pv = pv;
+    }
+
+
+    public int getMove() {
+        return move;
+    }
+
+
+    public int getScore() {
+        return score;
+    }
+
+
+    public boolean isExact() {
+        return isExact;
+    }
+
+
+    public int[] getPv() {
+        return pv;
+    }
+
+
+    public boolean isWin() {
+        return score >= TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY;
+    }
+
+
+    public boolean isLoss() {
+        return score <= -(TicTacToeSearch.WIN_SCORE - TicTacToeSearch.MAX_PLY);
+    }
+
+
+    /**
+     * @return How many plies, counting this move, until the game is won or lost, or -1 if unproven
+     */
+    public int getDistance() {
+        if(!isWin() && !isLoss()) {
+            return -1;
+        }
+        return TicTacToeSearch.WIN_SCORE - Math.abs(score);
+    }
+
+
+    /**
+     * Writes the value as "win N", "loss N" or "cp S", where N counts plies to the result
+     * and S is a heuristic score, 0 being an even game or a draw
+     * @return The value as text
+     */
+    public String valueToString() {
+        return TicTacToeSearch.scoreToString(score);
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Decides which order the search tries moves in, since trying the best move first is what
+ * lets alpha-beta skip the rest. Moves that caused a cutoff at the same ply (killers) and
+ * moves that caused many cutoffs anywhere (history) are tried before the others.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeMoveOrdering {
+
+    //Constants
+    private final static int PV_MOVE_SCORE = Integer.MAX_VALUE;
+    private final static int FIRST_KILLER_SCORE = Integer.MAX_VALUE - 1;
+    private final static int SECOND_KILLER_SCORE = Integer.MAX_VALUE - 2;
+    private final static int HISTORY_LIMIT = 1 << 28;
+
+    //Ordering tables
+    private final int[][] killers = new int[TicTacToeSearch.MAX_PLY][2];
+    private final int[][] history = new int[3][TicTacToeSearch.MAX_PLY];
+
+    //Counters
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+
+    /**
+     * Clears the killers, which only make sense for the position they were found in, and
+     * halves the history so that old results slowly fade out
+     */
+    public void newSearch() {
+        for(int ply = 0; ply < killers.length; ply++) {
+            killers[ply][0] = TicTacToeBoard.NO_MOVE;
+            killers[ply][1] = TicTacToeBoard.NO_MOVE;
+        }
+        for(int side = 0; side < history.length; side++) {
+            for(int square = 0; square < history[side].length; square++) {
+                history[side][square] /= 2;
+            }
+        }
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+
+    /**
+     * Gives every move a score, highest first, for pickMove to sort by
+     * @param moves The moves to score
+     * @param scores Where the scores are written, one per move
+     * @param count How many moves there are
+     * @param ply The ply the moves are at
+     * @param side The side making the moves
+     * @param pvMove A move to try before all others, or NO_MOVE
+     */
+    public void scoreMoves(int[] moves, int[] scores, int count, int ply, int side, int pvMove) {
+        int firstKiller = killers[ply][0];
+        int secondKiller = killers[ply][1];
+        for(int i = 0; i < count; i++) {
+            int square = moves[i];
+            if(square == pvMove) {
+                scores[i] = PV_MOVE_SCORE;
+            } else if(square == firstKiller) {
+                scores[i] = FIRST_KILLER_SCORE;
+            } else if(square == secondKiller) {
+                scores[i] = SECOND_KILLER_SCORE;
+            } else {
+                scores[i] = history[side][square];
+            }
+        }
+    }
+
+
+    /**
+     * Moves the highest scoring move that has not been tried yet into place. Doing this one
+     * move at a time is cheaper than a full sort because most nodes cut off early.
+     * @param moves The moves
+     * @param scores The scores of the moves
+     * @param index Where the next move to try goes
+     * @param count How many moves there are
+     * @return The move to try next
+     */
+    public static int pickMove(int[] moves, int[] scores, int index, int count) {
+        int best = index;
+        for(int i = index + 1; i < count; i++) {
+            if(scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        moves[index] = move;
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+        return move;
+    }
+
+
+    /**
+     * Remembers a move that made the opponent's position too good to be reached
+     * @param ply The ply of the move
+     * @param side The side that made the move
+     * @param square The move
+     * @param depth How many plies were left to search below the move
+     * @param moveIndex How many moves were tried before it at this node
+     */
+    public void onCutoff(int ply, int side, int square, int depth, int moveIndex) {
+        cutoffs++;
+        if(moveIndex == 0) {
+            firstMoveCutoffs++;
+        }
+        if(killers[ply][0] != square) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = square;
+        }
+        history[side][square] += depth * depth;
+        if(history[side][square] > HISTORY_LIMIT) {
+            for(int s = 0; s < history.length; s++) {
+                for(int i = 0; i < history[s].length; i++) {
+                    history[s][i] /= 2;
+                }
+            }
+        }
+    }
+
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+
+    /**
+     * @return The share of cutoffs that came from the first move tried, from 0 to 1
+     */
+    public double getFirstMoveCutoffRate() {
+        if(cutoffs == 0) {
+            return 0;
+        }
+        return (double) firstMoveCutoffs / cutoffs;
+    }
+}
@@ -0,0 +1,349 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Solves small boards exactly with depth-first proof-number search (df-pn), offline.
+ *
+ * Usage: java TicTacToeProofSolver m n k [--memory MB] [--book file] [--checkpoint file]
+ *
+ * Solves the empty m by n board and every position one move into it, and writes the results
+ * to a solution book the engine can load. The proof table and the book are saved to disk
+ * every minute, and a later run with the same files picks up from where the last one stopped.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeProofSolver {
+
+    //Constants
+    public final static int INFINITY = 100000000;
+    private final static long PLAYER_TWO_ATTACKER_KEY = 0x9E3779B97F4A7C15L;
+    private final static int DEFAULT_MEMORY_MB = 256;
+    private final static long PROGRESS_INTERVAL_MS = 5000;
+    private final static long CHECKPOINT_INTERVAL_MS = 60000;
+    private final static int CLOCK_CHECK_INTERVAL = 65535;
+
+    //Solver state
+    private final TicTacToeBoard board;
+    private final TicTacToeProofTable table;
+    private final int[][] moves;
+    private final int[][] numberBuffers;
+    private int attacker;
+    private long nodes;
+    private long startTime;
+    private long lastProgress;
+    private long lastCheckpoint;
+
+    //Where to save progress, may be null
+    private File checkpointFile;
+    private File bookFile;
+    private TicTacToeSolutionBook book;
+
+
+    /**
+     * Creates a solver
+     * @param board The board to solve from, changed during a solve but left as it was after
+     * @param table Where proof and disproof numbers are kept
+     */
+    public TicTacToeProofSolver(TicTacToeBoard board, TicTacToeProofTable table) {
+        this.board = board;
+        this.table = table;
+        this.moves = new int[board.getNumSquares() + 1][board.getNumSquares()];
+        this.numberBuffers = new int[board.getNumSquares() + 1][2];
+    }
+
+
+    //Solves a board size from the command line
+    public static void main(String[] args) throws IOException {
+        if(args.length < 3) {
+            System.out.println("Usage: java TicTacToeProofSolver m n k [--memory MB] [--book file] [--checkpoint file]");
+            return;
+        }
+        int width = Integer.parseInt(args[0]);
+        int height = Integer.parseInt(args[1]);
+        int piecesForWin = Integer.parseInt(args[2]);
+        int memory = DEFAULT_MEMORY_MB;
+        String prefix = "solve-" + width + "x" + height + "-" + piecesForWin;
+        File bookFile = new File(prefix + ".book");
+        File checkpointFile = new File(prefix + ".checkpoint");
+        for(int i = 3; i < args.length - 1; i += 2) {
+            if(args[i].equals("--memory")) {
+                memory = Integer.parseInt(args[i + 1]);
+            } else if(args[i].equals("--book")) {
+                bookFile = new File(args[i + 1]);
+            } else if(args[i].equals("--checkpoint")) {
+                checkpointFile = new File(args[i + 1]);
+            }
+        }
+
+        TicTacToeBoard board = new TicTacToeBoard(width, height, piecesForWin);
+        board.setCandidateDistance(0);
+        TicTacToeProofTable table = new TicTacToeProofTable(memory);
+        TicTacToeSolutionBook book = new TicTacToeSolutionBook(width, height, piecesForWin);
+        if(bookFile.exists()) {
+            book = TicTacToeSolutionBook.load(bookFile);
+            if(!book.matches(width, height, piecesForWin)) {
+                System.out.println(bookFile + " holds a " + book.getSizeName() + " book, not " + width + "x" + height
+                    + " k=" + piecesForWin);
+                return;
+            }
+            System.out.println("Resuming with " + book.size() + " solved positions from " + bookFile);
+        }
+        if(checkpointFile.exists()) {
+            table.load(checkpointFile);
+            System.out.println("Resuming proof table from " + checkpointFile);
+        }
+        TicTacToeProofSolver solver = new TicTacToeProofSolver(board, table);
+        solver.setCheckpoint(checkpointFile, book, bookFile);
+
+        //Children first, since once they are known the empty board is quick
+        for(int square = 0; square < board.getNumSquares(); square++) {
+            board.makeMove(square);
+            int value = solver.solveIntoBook();
+            System.out.println("After " + board.moveToString(square) + ": " + valueToString(-value)
+                + " for the first player");
+            board.unmakeMove();
+        }
+        int value = solver.solveIntoBook();
+        System.out.println("Empty " + width + "x" + height + " k=" + piecesForWin + ": "
+            + valueToString(value) + " for the first player");
+        solver.saveCheckpoint();
+    }
+
+
+    /**
+     * Saves progress to files every so often while solving
+     * @param checkpointFile Where to save the proof table
+     * @param book Where solved positions go
+     * @param bookFile Where to save the book
+     */
+    public void setCheckpoint(File checkpointFile, TicTacToeSolutionBook book, File bookFile) {
+        this.checkpointFile = checkpointFile;
+        this.book = book;
+        this.bookFile = bookFile;
+    }
+
+
+    /**
+     * Solves the current position unless the book already has it, and adds it to the book
+     * @return WIN, DRAW or LOSS for the side to move
+     * @throws IOException If the book can not be saved
+     */
+    private int solveIntoBook() throws IOException {
+        int value = book.get(board.getHash());
+        if(value == TicTacToeSolutionBook.UNKNOWN) {
+            value = solve();
+            book.put(board.getHash(), value);
+            book.save(bookFile);
+        }
+        return value;
+    }
+
+
+    /**
+     * Finds the value of the current position with perfect play
+     * @return WIN, DRAW or LOSS for the side to move
+     */
+    public int solve() {
+        int side = board.getSideToMove();
+        if(board.lastMoveWon()) {
+            return TicTacToeSolutionBook.LOSS;
+        }
+        if(board.isFull()) {
+            return TicTacToeSolutionBook.DRAW;
+        }
+        if(proveWin(side)) {
+            return TicTacToeSolutionBook.WIN;
+        }
+        if(proveWin(3 - side)) {
+            return TicTacToeSolutionBook.LOSS;
+        }
+        return TicTacToeSolutionBook.DRAW;
+    }
+
+
+    /**
+     * Proves or disproves that one side can force a win from the current position
+     * @param attacker The side trying to win
+     * @return Whether the side can force a win
+     */
+    public boolean proveWin(int attacker) {
+        this.attacker = attacker;
+        startTime = System.currentTimeMillis();
+        lastProgress = startTime;
+        lastCheckpoint = startTime;
+        nodes = 0;
+        int[] numbers = new int[2];
+        readNumbers(board.getHash(), numbers);
+        while(numbers[0] != 0 && numbers[1] != 0) {
+            mid(INFINITY, INFINITY, 0);
+            readNumbers(board.getHash(), numbers);
+        }
+        //phi is 0 when the side to move reached its goal
+        boolean attackerToMove = board.getSideToMove() == attacker;
+        return attackerToMove == (numbers[0] == 0);
+    }
+
+
+    /**
+     * Multiple iterative deepening: searches below the current position until its numbers
+     * reach one of the thresholds
+     * @param phiThreshold Stop once the proof number for the side to move reaches this
+     * @param deltaThreshold Stop once the disproof number for the side to move reaches this
+     * @param ply How far from the start of the solve this is
+     */
+    private void mid(int phiThreshold, int deltaThreshold, int ply) {
+        nodes++;
+        long nodesBefore = nodes;
+        if((nodes & CLOCK_CHECK_INTERVAL) == 0) {
+            reportProgress();
+        }
+        int[] children = moves[ply];
+        int count = 0;
+        for(int square = 0; square < board.getNumSquares(); square++) {
+            if(board.isEmpty(square)) {
+                children[count++] = square;
+            }
+        }
+        int[] numbers = numberBuffers[ply];
+
+        while(true) {
+            //phi is the smallest delta among the children, delta is the sum of their phis
+            int phi = INFINITY;
+            int delta = 0;
+            int best = -1;
+            int bestPhi = 0;
+            int secondDelta = INFINITY;
+            for(int i = 0; i < count; i++) {
+                childNumbers(children[i], numbers);
+                if(numbers[1] < phi) {
+                    secondDelta = phi;
+                    phi = numbers[1];
+                    best = children[i];
+                    bestPhi = numbers[0];
+                } else if(numbers[1] < secondDelta) {
+                    secondDelta = numbers[1];
+                }
+                delta = Math.min(INFINITY, delta + numbers[0]);
+            }
+            if(phi >= phiThreshold || delta >= deltaThreshold) {
+                table.store(key(board.getHash()), phi, delta, (int) Math.min(Integer.MAX_VALUE, nodes - nodesBefore));
+                return;
+            }
+            int childPhiThreshold = Math.min(INFINITY, deltaThreshold + bestPhi - delta);
+            int childDeltaThreshold = Math.min(phiThreshold, secondDelta + 1);
+            board.makeMove(best);
+            mid(childPhiThreshold, childDeltaThreshold, ply + 1);
+            board.unmakeMove();
+        }
+    }
+
+
+    /**
+     * Gets the numbers of the position after a move, without playing it unless needed
+     * @param square The move
+     * @param numbers Where phi and delta for the side to move after the move are written
+     */
+    private void childNumbers(int square, int[] numbers) {
+        int childSide = 3 - board.getSideToMove();
+        if(board.isWinningMove(square)) {
+            //The side to move in the child has lost
+            numbers[0] = INFINITY;
+            numbers[1] = 0;
+        } else if(board.getMoveCount() + 1 == board.getNumSquares()) {
+            //A draw is a failure for the attacker and a success for the defender
+            boolean attackerToMove = childSide == attacker;
+            numbers[0] = attackerToMove ? INFINITY : 0;
+            numbers[1] = attackerToMove ? 0 : INFINITY;
+        } else {
+            readNumbers(board.hashAfter(square), numbers);
+        }
+    }
+
+
+    /**
+     * Looks up a position's numbers, using 1 and 1 if it has never been searched
+     * @param hash The position's hash
+     * @param numbers Where phi and delta are written
+     */
+    private void readNumbers(long hash, int[] numbers) {
+        int slot = table.find(key(hash));
+        if(slot == -1) {
+            numbers[0] = 1;
+            numbers[1] = 1;
+        } else {
+            numbers[0] = table.getPhi(slot);
+            numbers[1] = table.getDelta(slot);
+        }
+    }
+
+
+    /**
+     * Mixes which side is attacking into a hash, so both searches can share one table
+     * @param hash The position's hash
+     * @return The table key, never 0
+     */
+    private long key(long hash) {
+        long key = attacker == TicTacToeBoard.PLAYER_ONE ? hash : hash ^ PLAYER_TWO_ATTACKER_KEY;
+        return key == 0 ? 1 : key;
+    }
+
+
+    //Prints how far along the solve is, and saves a checkpoint when one is due
+    private void reportProgress() {
+        long now = System.currentTimeMillis();
+        if(now - lastProgress >= PROGRESS_INTERVAL_MS) {
+            lastProgress = now;
+            System.out.println("info nodes " + nodes + " time " + (now - startTime)
+                + " nps " + nodes * 1000 / Math.max(1, now - startTime)
+                + " fill " + Math.round(table.getFillRate() * 1000) / 10.0 + "%");
+        }
+        if(checkpointFile != null && now - lastCheckpoint >= CHECKPOINT_INTERVAL_MS) {
+            lastCheckpoint = now;
+            try {
+                saveCheckpoint();
+            } catch(IOException e) {
+                System.out.println("info string checkpoint failed: " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Saves the proof table and the book so far
+     * @throws IOException If a file can not be written
+     */
+    public void saveCheckpoint() throws IOException {
+        if(checkpointFile != null) {
+            table.save(checkpointFile);
+        }
+        if(book != null && bookFile != null) {
+            book.save(bookFile);
+        }
+    }
+
+
+    /**
+     * @param value WIN, DRAW or LOSS
+     * @return The value as a word
+     */
+    public static String valueToString(int value) {
+        if(value == TicTacToeSolutionBook.WIN) {
+            return "win";
+        } else if(value == TicTacToeSolutionBook.LOSS) {
+            return "loss";
+        }
+        return "draw";
+    }
+
+
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Fixed size table of proof and disproof numbers for the proof-number solver.
+ * Entries live in buckets of four, and when a bucket is full the entry with the least work
+ * behind it is replaced, keeping proven results over guesses. The memory used never grows.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeProofTable {
+
+    //Constants
+    private final static int BUCKET_SIZE = 4;
+    private final static int BYTES_PER_ENTRY = 20;
+    private final static int FILE_MAGIC = 0x54545054;
+
+    //Table state, one slot per index in every array
+    private final long[] keys;
+    private final int[] phis;
+    private final int[] deltas;
+    private final int[] works;
+    private final int bucketMask;
+    private long used;
+
+
+    /**
+     * Creates an empty table
+     * @param megabytes Roughly how much memory to use
+     */
+    public TicTacToeProofTable(int megabytes) {
+        long entries = Math.max(BUCKET_SIZE, (long) megabytes * 1024 * 1024 / BYTES_PER_ENTRY);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / BUCKET_SIZE, 1 << 26));
+        keys = new long[buckets * BUCKET_SIZE];
+        phis = new int[buckets * BUCKET_SIZE];
+        deltas = new int[buckets * BUCKET_SIZE];
+        works = new int[buckets * BUCKET_SIZE];
+        bucketMask = buckets - 1;
+    }
+
+
+    /**
+     * Finds a position in the table
+     * @param key The position's key, never 0
+     * @return The slot it is in, or -1 if it is not stored
+     */
+    public int find(long key) {
+        int first = (int) (key & bucketMask) * BUCKET_SIZE;
+        for(int slot = first; slot < first + BUCKET_SIZE; slot++) {
+            if(keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Stores a position's numbers, replacing its old ones or the least useful entry in its bucket
+     * @param key The position's key, never 0
+     * @param phi The proof number for the side to move
+     * @param delta The disproof number for the side to move
+     * @param work How many nodes were searched to get the numbers
+     */
+    public void store(long key, int phi, int delta, int work) {
+        int first = (int) (key & bucketMask) * BUCKET_SIZE;
+        int victim = -1;
+        for(int slot = first; slot < first + BUCKET_SIZE; slot++) {
+            if(keys[slot] == key || keys[slot] == 0) {
+                victim = slot;
+                break;
+            }
+            if(victim == -1 || replaceValue(slot) < replaceValue(victim)) {
+                victim = slot;
+            }
+        }
+        if(keys[victim] == 0) {
+            used++;
+        }
+        keys[victim] = key;
+        phis[victim] = phi;
+        deltas[victim] = delta;
+        works[victim] = work;
+    }
+
+
+    /**
+     * How much an entry is worth keeping, proven entries are worth the most
+     * @param slot The slot
+     * @return Bigger is more worth keeping
+     */
+    private long replaceValue(int slot) {
+        if(phis[slot] == 0 || deltas[slot] == 0) {
+            return Long.MAX_VALUE;
+        }
+        return works[slot];
+    }
+
+
+    public int getPhi(int slot) {
+        return phis[slot];
+    }
+
+
+    public int getDelta(int slot) {
+        return deltas[slot];
+    }
+
+
+    /**
+     * @return The share of slots in use, from 0 to 1
+     */
+    public double getFillRate() {
+        return (double) used / keys.length;
+    }
+
+
+    /**
+     * Writes every entry to a file so that a solve can be picked up again later
+     * @param file Where to write
+     * @throws IOException If the file can not be written
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(keys.length);
+            for(int slot = 0; slot < keys.length; slot++) {
+                out.writeLong(keys[slot]);
+                out.writeInt(phis[slot]);
+                out.writeInt(deltas[slot]);
+                out.writeInt(works[slot]);
+            }
+        }
+        if(!temp.renameTo(file)) {
+            file.delete();
+            if(!temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+
+    /**
+     * Reads entries saved by save back in. The table must be the same size it was saved from.
+     * @param file The file to read
+     * @throws IOException If the file can not be read or does not fit this table
+     */
+    public void load(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != FILE_MAGIC || in.readInt() != keys.length) {
+                throw new IOException(file + " is not a checkpoint for a table of this size");
+            }
+            used = 0;
+            for(int slot = 0; slot < keys.length; slot++) {
+                keys[slot] = in.readLong();
+                phis[slot] = in.readInt();
+                deltas[slot] = in.readInt();
+                works[slot] = in.readInt();
+                if(keys[slot] != 0) {
+                    used++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * A line based text protocol so that other programs can drive the engine over stdin/stdout.
+ * The process stays alive between games, so the JIT and the search state carry over.
+ *
+ * Commands:
+ *   newgame m n k            Starts a new m columns by n rows game where k in a row wins
+ *   position [startpos] [moves] a1 b2 ...
+ *                            Sets up the board from the start by playing the given moves
+ *   go [movetime ms] [depth d] [multipv n] [infinite]
+ *                            Searches the current position, prints info lines then bestmove.
+ *                            With multipv, prints the n best moves each iteration, 0 for all.
+ *                            Scores are "win N" or "loss N" plies away, or "cp S" otherwise.
+ *   stop                     Stops the current search, which then prints its bestmove
+ *   setoption name value     Changes an engine option:
+ *                              pvs true|false      null window and aspiration searches (default true)
+ *                              threats true|false  look for forced threat wins first (default true)
+ *                              candidates d        only search squares within d of a piece, 0 for all
+ *                                                  (default 2 above 7x7, otherwise 0)
+ *                              hash MB             size of the shared hash table (default 16)
+ *                              threads n           threads searching together (default 1)
+ *                              book file           play solved positions from a TicTacToeProofSolver
+ *                                                  book, or none to turn it off
+ *                              weights file        evaluate with weights from TicTacToeTrainer for
+ *                                                  boards of their size, or none for the hand tuned ones
+ *   isready                  Answers readyok, even while a search is running
+ *   d                        Prints the current board
+ *   quit                     Exits
+ *
+ * Starting with --warmup [ms] runs a short synthetic search before reading any input.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeProtocol {
+
+    //Constants
+    private final static int DEFAULT_SIZE = 3;
+    private final static int DEFAULT_PIECES_FOR_WIN = 3;
+    private final static String ENGINE_NAME = "TicTacToe-Minimax-AI";
+
+    //Engine state, kept alive between games
+    private final TicTacToeSearch search = new TicTacToeSearch();
+    private TicTacToeBoard board = new TicTacToeBoard(DEFAULT_SIZE, DEFAULT_SIZE, DEFAULT_PIECES_FOR_WIN);
+    private Thread searchThread;
+    //Set by setoption candidates, or -1 to use each board's own default
+    private int candidateDistance = -1;
+    //Set by setoption weights, used for every board of their size, may be null
+    private TicTacToeWeights weights;
+
+
+    //Reads commands until quit or the end of the input
+    public static void main(String[] args) throws IOException {
+        TicTacToeProtocol protocol = new TicTacToeProtocol();
+        if(args.length > 0 && args[0].equals("--warmup")) {
+            long budgetMs = TicTacToeWarmup.DEFAULT_BUDGET_MS;
+            if(args.length > 1) {
+                budgetMs = Long.parseLong(args[1]);
+            }
+            long start = System.currentTimeMillis();
+            long nodes = TicTacToeWarmup.run(budgetMs);
+            protocol.send("info string warmup nodes " + nodes + " time "
+                + (System.currentTimeMillis() - start));
+        }
+        protocol.run(new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+
+    /**
+     * Main loop that reads and runs one command per line
+     * @param input Where the commands come from
+     * @throws IOException If reading the input fails
+     */
+    public void run(BufferedReader input) throws IOException {
+        send("id name " + ENGINE_NAME);
+        String line;
+        while((line = input.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            if(tokens[0].isEmpty()) {
+                continue;
+            }
+            String command = tokens[0];
+            if(command.equals("quit")) {
+                break;
+            } else if(command.equals("newgame")) {
+                doNewGame(tokens);
+            } else if(command.equals("position")) {
+                doPosition(tokens);
+            } else if(command.equals("go")) {
+                doGo(tokens);
+            } else if(command.equals("stop")) {
+                stopSearch();
+            } else if(command.equals("setoption")) {
+                doSetOption(tokens);
+            } else if(command.equals("isready")) {
+                send("readyok");
+            } else if(command.equals("d")) {
+                if(searchThread != null && searchThread.isAlive()) {
+                    send("info string cannot print the board while searching");
+                } else {
+                    send(board.toString().trim());
+                }
+            } else {
+                send("info string unknown command " + command);
+            }
+        }
+        stopSearch();
+    }
+
+
+    /**
+     * Starts a new game with the given board size
+     * @param tokens The command split into words
+     */
+    private void doNewGame(String[] tokens) {
+        stopSearch();
+        int width = DEFAULT_SIZE;
+        int height = DEFAULT_SIZE;
+        int piecesForWin = DEFAULT_PIECES_FOR_WIN;
+        try {
+            if(tokens.length > 1) {
+                width = Integer.parseInt(tokens[1]);
+                height = width;
+            }
+            if(tokens.length > 2) {
+                height = Integer.parseInt(tokens[2]);
+            }
+            if(tokens.length > 3) {
+                piecesForWin = Integer.parseInt(tokens[3]);
+            }
+            if(width * height > TicTacToeSearch.MAX_PLY) {
+                send("info string board has more than " + TicTacToeSearch.MAX_PLY + " squares");
+                return;
+            }
+            board = new TicTacToeBoard(width, height, piecesForWin);
+            if(candidateDistance >= 0) {
+                board.setCandidateDistance(candidateDistance);
+            }
+            if(weights != null && weights.matches(board)) {
+                board.getEvaluator().setWeights(weights);
+            }
+        } catch(IllegalArgumentException e) {
+            send("info string bad newgame: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Sets up the board by replaying the given moves from an empty board
+     * @param tokens The command split into words
+     */
+    private void doPosition(String[] tokens) {
+        stopSearch();
+        board.clear();
+        for(int i = 1; i < tokens.length; i++) {
+            if(tokens[i].equals("startpos") || tokens[i].equals("moves")) {
+                continue;
+            }
+            int square = board.parseMove(tokens[i]);
+            if(square == TicTacToeBoard.NO_MOVE || board.lastMoveWon()) {
+                send("info string illegal move " + tokens[i]);
+                return;
+            }
+            board.makeMove(square);
+        }
+    }
+
+
+    /**
+     * Changes one engine option
+     * @param tokens The command split into words
+     */
+    private void doSetOption(String[] tokens) {
+        stopSearch();
+        if(tokens.length < 3) {
+            send("info string setoption needs a name and a value");
+            return;
+        }
+        String name = tokens[1];
+        String value = tokens[2];
+        if(name.equals("pvs")) {
+            search.setUsePvs(Boolean.parseBoolean(value));
+        } else if(name.equals("threats")) {
+            search.setUseThreatSearch(Boolean.parseBoolean(value));
+        } else if(name.equals("hash")) {
+            try {
+                search.setHashTable(new TicTacToeHashTable(Integer.parseInt(value)));
+            } catch(NumberFormatException e) {
+                send("info string bad hash: " + e.getMessage());
+            }
+        } else if(name.equals("threads")) {
+            try {
+                search.setThreads(Integer.parseInt(value));
+            } catch(NumberFormatException e) {
+                send("info string bad threads: " + e.getMessage());
+            }
+        } else if(name.equals("book")) {
+            if(value.equals("none")) {
+                search.setBook(null);
+                return;
+            }
+            try {
+                search.setBook(TicTacToeSolutionBook.load(new File(value)));
+            } catch(IOException e) {
+                send("info string could not load book: " + e.getMessage());
+            }
+        } else if(name.equals("weights")) {
+            try {
+                weights = value.equals("none") ? null : TicTacToeWeights.load(new File(value));
+            } catch(IOException e) {
+                send("info string could not load weights: " + e.getMessage());
+                return;
+            }
+            if(weights == null) {
+                board.getEvaluator().setWeights(new TicTacToeWeights(board.getWidth(), board.getHeight(),
+                    board.getPiecesForWin()));
+            } else if(weights.matches(board)) {
+                board.getEvaluator().setWeights(weights);
+            }
+        } else if(name.equals("candidates")) {
+            try {
+                candidateDistance = Integer.parseInt(value);
+                board.setCandidateDistance(candidateDistance);
+            } catch(IllegalArgumentException e) {
+                send("info string bad candidates: " + e.getMessage());
+                candidateDistance = -1;
+            }
+        } else {
+            send("info string unknown option " + name);
+        }
+    }
+
+
+    /**
+     * Starts a search on its own thread so that stop can still be read
+     * @param tokens The command split into words
+     */
+    private void doGo(String[] tokens) {
+        stopSearch();
+        int depth = TicTacToeSearch.MAX_PLY;
+        long moveTime = 0;
+        int multiPv = 1;
+        try {
+            for(int i = 1; i < tokens.length - 1; i++) {
+                if(tokens[i].equals("movetime")) {
+                    moveTime = Long.parseLong(tokens[i + 1]);
+                } else if(tokens[i].equals("depth")) {
+                    depth = Integer.parseInt(tokens[i + 1]);
+                } else if(tokens[i].equals("multipv")) {
+                    multiPv = Integer.parseInt(tokens[i + 1]);
+                }
+            }
+        } catch(NumberFormatException e) {
+            send("info string bad go: " + e.getMessage());
+            return;
+        }
+        final int maxDepth = depth;
+        final long moveTimeMs = moveTime;
+        final int lines = multiPv <= 0 ? board.getNumSquares() : multiPv;
+        final TicTacToeBoard searchBoard = board;
+        search.clearStop();
+        searchThread = new Thread(() -> {
+            int move;
+            if(lines == 1) {
+                move = search.search(searchBoard, maxDepth, moveTimeMs, this::sendInfo);
+            } else {
+                TicTacToeMoveAnalysis[] analysis = search.analyze(searchBoard, maxDepth, moveTimeMs, lines,
+                    finished -> sendMultiPvInfo(finished, lines));
+                move = analysis.length > 0 ? analysis[0].getMove() : TicTacToeBoard.NO_MOVE;
+            }
+            send("bestmove " + searchBoard.moveToString(move));
+        }, "search");
+        searchThread.start();
+    }
+
+
+    /**
+     * Prints one info line for a finished iteration
+     * @param search The search that finished the iteration
+     */
+    private void sendInfo(TicTacToeSearch search) {
+        long timeMs = search.getElapsedMs();
+        StringBuilder line = new StringBuilder();
+        line.append("info depth ").append(search.getCompletedDepth());
+        line.append(" score ").append(TicTacToeSearch.scoreToString(search.getBestScore()));
+        line.append(" nodes ").append(search.getNodes());
+        line.append(" depthnodes ").append(search.getDepthNodes());
+        line.append(" researches ").append(search.getResearches());
+        line.append(" cutoffs ").append(search.getOrdering().getCutoffs());
+        line.append(" firstcutoff ").append(Math.round(search.getOrdering().getFirstMoveCutoffRate() * 1000) / 10.0);
+        line.append(" hashfull ").append(Math.round(search.getHashTable().getFillRate() * 1000) / 10.0);
+        line.append(" hashhit ").append(Math.round(search.getHashHitRate() * 1000) / 10.0);
+        line.append(" nps ").append(search.getNodes() * 1000 / Math.max(1, timeMs));
+        line.append(" time ").append(timeMs);
+        line.append(" pv");
+        for(int i = 0; i < search.getPvLength(); i++) {
+            line.append(' ').append(board.moveToString(search.getPvMove(i)));
+        }
+        send(line.toString());
+    }
+
+
+    /**
+     * Prints one info line for each of the best moves of a finished analysis iteration
+     * @param search The search that finished the iteration
+     * @param lines How many moves were asked for. Fewer are printed when fewer have exact scores.
+     */
+    private void sendMultiPvInfo(TicTacToeSearch search, int lines) {
+        TicTacToeMoveAnalysis[] analysis = search.getAnalysis();
+        long timeMs = search.getElapsedMs();
+        for(int i = 0; i < Math.min(lines, analysis.length) && analysis[i].isExact(); i++) {
+            StringBuilder line = new StringBuilder();
+            line.append("info depth ").append(search.getCompletedDepth());
+            line.append(" multipv ").append(i + 1);
+            line.append(" score ").append(analysis[i].valueToString());
+            line.append(" nodes ").append(search.getNodes());
+            line.append(" nps ").append(search.getNodes() * 1000 / Math.max(1, timeMs));
+            line.append(" time ").append(timeMs);
+            line.append(" pv");
+            for(int move : analysis[i].getPv()) {
+                line.append(' ').append(board.moveToString(move));
+            }
+            send(line.toString());
+        }
+    }
+
+
+    //Stops the running search, if there is one, and waits for its bestmove
+    private void stopSearch() {
+        if(searchThread != null) {
+            search.stop();
+            waitForSearch();
+        }
+    }
+
+
+    //Waits for the running search, if there is one, to finish on its own
+    private void waitForSearch() {
+        if(searchThread == null) {
+            return;
+        }
+        try {
+            searchThread.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+
+    /**
+     * Writes one line of output, whole, even when the search thread is also writing
+     * @param line The line to write
+     */
+    private synchronized void send(String line) {
+        System.out.println(line);
+        System.out.flush();
+    }
+}
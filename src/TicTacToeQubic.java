@@ -0,0 +1,131 @@
+import java.util.Scanner;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * An app that plays 3D Tic Tac Toe on a 4x4x4 cube between a human player and the search engine.
+ * Four in a row wins along any straight line, including those that go through the levels.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeQubic {
+
+    //Constants
+    private final static String AI_NAME = "Computer";
+    private final static long DEFAULT_MOVE_TIME_MS = 1000;
+    private final static int MAX_DEPTH = TicTacToeQubicBoard.NUM_SQUARES;
+    private final static String USAGE = "Usage: java TicTacToeQubic [--movetime ms] [--computer-first]";
+
+    //Plays a game of 3D TicTacToe
+    public static void main(String[] args) {
+        long moveTimeMs = DEFAULT_MOVE_TIME_MS;
+        boolean computerFirst = false;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--movetime")) {
+                    moveTimeMs = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--computer-first")) {
+                    computerFirst = true;
+                } else {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+        } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        Scanner keyboard = new Scanner(System.in);
+        intro();
+        runGame(new TicTacToeQubicBoard(), keyboard, computerFirst, moveTimeMs);
+    }
+
+
+    /**
+     * Main method that runs the game, turn by turn
+     * @param board The board, empty at the start
+     * @param keyboard Scanner used to read user input
+     * @param computerFirst Whether the computer plays X and moves first
+     * @param moveTimeMs How long the computer thinks about each move
+     */
+    private static void runGame(TicTacToeQubicBoard board, Scanner keyboard, boolean computerFirst, long moveTimeMs) {
+        int computerSide = computerFirst ? TicTacToeBoard.PLAYER_ONE : TicTacToeBoard.PLAYER_TWO;
+        TicTacToeQubicSearch search = new TicTacToeQubicSearch();
+        while(!board.lastMoveWon() && !board.isFull()) {
+            System.out.println(board);
+            if(board.getSideToMove() == computerSide) {
+                doComputerTurn(board, search, moveTimeMs);
+            } else if(!doPlayerTurn(board, keyboard)) {
+                return;
+            }
+        }
+        System.out.println(board);
+        System.out.println("----------------");
+        if(board.lastMoveWon()) {
+            //The winner is whoever moved last
+            if(board.getSideToMove() == computerSide) {
+                System.out.println("You win!");
+            } else {
+                System.out.println(AI_NAME + " wins!");
+            }
+        } else {
+            System.out.println("The game is a draw.");
+        }
+        System.out.println("----------------");
+    }
+
+
+    /**
+     * Searches for the computer's move and plays it
+     * @param board The board, with the computer to move
+     * @param search The search, kept between moves so its tables carry over
+     * @param moveTimeMs How long to think
+     */
+    private static void doComputerTurn(TicTacToeQubicBoard board, TicTacToeQubicSearch search, long moveTimeMs) {
+        search.clearStop();
+        int square = search.search(board, MAX_DEPTH, moveTimeMs, null);
+        board.makeMove(square);
+        System.out.println(AI_NAME + " plays " + TicTacToeQubicBoard.moveToString(square)
+            + " (" + TicTacToeSearch.scoreToString(search.getBestScore()) + ", depth " + search.getCompletedDepth()
+            + ", " + search.getNodes() + " nodes in " + search.getElapsedMs() + " ms)");
+        System.out.println();
+    }
+
+
+    /**
+     * Asks the human for a move until they name an empty square
+     * @param board The board, with the human to move
+     * @param keyboard Scanner used to read user input
+     * @return False when the input ran out
+     */
+    private static boolean doPlayerTurn(TicTacToeQubicBoard board, Scanner keyboard) {
+        while(true) {
+            System.out.print("Your move (level, column, row such as 2b3): ");
+            if(!keyboard.hasNextLine()) {
+                return false;
+            }
+            int square = board.parseMove(keyboard.nextLine().trim());
+            System.out.println();
+            if(square != TicTacToeBoard.NO_MOVE) {
+                board.makeMove(square);
+                return true;
+            }
+            System.out.println("That is not an empty square.\n");
+        }
+    }
+
+
+    //Prints the introduction to the match
+    private static void intro() {
+        System.out.println("---------------------------------------------");
+        System.out.println("Welcome to the game of 3D Tic Tac Toe");
+        System.out.println("Get four in a row on any line of the 4x4x4 cube");
+        System.out.println("---------------------------------------------");
+        System.out.println();
+    }
+}
@@ -0,0 +1,419 @@
+import java.util.Random;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * A 4x4x4 board for 3D tic tac toe (Qubic), where each side's pieces are one long.
+ *
+ * Square numbers are level * 16 + row * 4 + col, so bit i of a side's long is square i.
+ * The 76 winning lines are precomputed masks: 48 along the three axes, 24 diagonals that stay
+ * in one plane and 4 that cross the whole cube. Every square knows the 4 or 7 lines through it,
+ * so a move only checks and updates those, and the line counts give the evaluation and the
+ * open threes the search uses to find forced moves.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeQubicBoard {
+
+    //Constants
+    public final static int SIZE = 4;
+    public final static int NUM_SQUARES = SIZE * SIZE * SIZE;
+    public final static int NUM_LINES = 76;
+    public final static long FULL_BOARD = -1L;
+    //What a line is worth to a side with this many pieces on it and none of the opponent's
+    private final static int[] LINE_WEIGHTS = {0, 1, 6, 40, 0};
+    //Different from TicTacToeBoard's seed so the two kinds of board never share hashes
+    private final static long ZOBRIST_SEED = 0x51AB1CL;
+
+    //Line tables, shared by every board
+    public final static long[] LINES = new long[NUM_LINES];
+    private final static int[][] SQUARE_LINES = new int[NUM_SQUARES][];
+    //Squares on the most lines first, the order moves are listed in
+    private final static int[] SQUARE_ORDER = new int[NUM_SQUARES];
+    //The change in player one's score from a line's counts, indexed [ones * 5 + twos]
+    private final static int[] LINE_VALUES = new int[25];
+    private final static long[][] ZOBRIST = new long[3][NUM_SQUARES];
+
+    static {
+        buildLines();
+        for(int ones = 0; ones <= SIZE; ones++) {
+            for(int twos = 0; twos <= SIZE; twos++) {
+                int value = 0;
+                if(twos == 0) {
+                    value = LINE_WEIGHTS[ones];
+                } else if(ones == 0) {
+                    value = -LINE_WEIGHTS[twos];
+                }
+                LINE_VALUES[ones * 5 + twos] = value;
+            }
+        }
+        Random random = new Random(ZOBRIST_SEED);
+        for(int side = TicTacToeBoard.PLAYER_ONE; side <= TicTacToeBoard.PLAYER_TWO; side++) {
+            for(int square = 0; square < NUM_SQUARES; square++) {
+                ZOBRIST[side][square] = random.nextLong();
+            }
+        }
+    }
+
+    //Board state
+    private final long[] pieces = new long[3];
+    private final int[] moveStack = new int[NUM_SQUARES];
+    private int moveCount;
+    private int sideToMove = TicTacToeBoard.PLAYER_ONE;
+    private boolean lastMoveWon;
+    private long hash;
+
+    //How many pieces each side has on each line, and how many lines each side is one move from filling
+    private final byte[][] lineCounts = new byte[3][NUM_LINES];
+    private final int[] openThrees = new int[3];
+    //Heuristic score from player one's point of view
+    private int score;
+
+
+    /**
+     * Walks every direction from every square and keeps the lines that fit on the board.
+     * Only directions whose first non-zero step is positive are used so every line is found once.
+     */
+    private static void buildLines() {
+        int count = 0;
+        int[] linesPerSquare = new int[NUM_SQUARES];
+        for(int dl = -1; dl <= 1; dl++) {
+            for(int dr = -1; dr <= 1; dr++) {
+                for(int dc = -1; dc <= 1; dc++) {
+                    boolean positive = dl > 0 || (dl == 0 && (dr > 0 || (dr == 0 && dc > 0)));
+                    if(!positive) {
+                        continue;
+                    }
+                    for(int square = 0; square < NUM_SQUARES; square++) {
+                        long mask = lineFrom(square / 16, square / 4 % 4, square % 4, dl, dr, dc);
+                        if(mask != 0) {
+                            LINES[count++] = mask;
+                        }
+                    }
+                }
+            }
+        }
+        if(count != NUM_LINES) {
+            throw new IllegalStateException("Found " + count + " lines instead of " + NUM_LINES);
+        }
+        for(int line = 0; line < NUM_LINES; line++) {
+            for(long bits = LINES[line]; bits != 0; bits &= bits - 1) {
+                linesPerSquare[Long.numberOfTrailingZeros(bits)]++;
+            }
+        }
+        for(int square = 0; square < NUM_SQUARES; square++) {
+            SQUARE_LINES[square] = new int[linesPerSquare[square]];
+            linesPerSquare[square] = 0;
+        }
+        for(int line = 0; line < NUM_LINES; line++) {
+            for(long bits = LINES[line]; bits != 0; bits &= bits - 1) {
+                int square = Long.numberOfTrailingZeros(bits);
+                SQUARE_LINES[square][linesPerSquare[square]++] = line;
+            }
+        }
+        //Stable order by line count, so the 7-line corners and centers come first
+        int index = 0;
+        for(int lines = 7; lines >= 0; lines--) {
+            for(int square = 0; square < NUM_SQUARES; square++) {
+                if(SQUARE_LINES[square].length == lines) {
+                    SQUARE_ORDER[index++] = square;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @param level The level of the first square
+     * @param row The row of the first square
+     * @param col The column of the first square
+     * @param dl The level step
+     * @param dr The row step
+     * @param dc The column step
+     * @return The mask of the line, or 0 when it leaves the board or does not start at its end
+     */
+    private static long lineFrom(int level, int row, int col, int dl, int dr, int dc) {
+        if(isInside(level - dl, row - dr, col - dc)) {
+            return 0;
+        }
+        long mask = 0;
+        for(int i = 0; i < SIZE; i++) {
+            int l = level + i * dl;
+            int r = row + i * dr;
+            int c = col + i * dc;
+            if(!isInside(l, r, c)) {
+                return 0;
+            }
+            mask |= 1L << (l * 16 + r * 4 + c);
+        }
+        return mask;
+    }
+
+
+    private static boolean isInside(int level, int row, int col) {
+        return level >= 0 && level < SIZE && row >= 0 && row < SIZE && col >= 0 && col < SIZE;
+    }
+
+
+    /**
+     * Makes a separate board with the same moves, for another thread to use
+     * @return The copy
+     */
+    public TicTacToeQubicBoard copy() {
+        TicTacToeQubicBoard copy = new TicTacToeQubicBoard();
+        for(int i = 0; i < moveCount; i++) {
+            copy.makeMove(moveStack[i]);
+        }
+        return copy;
+    }
+
+
+    /**
+     * Places a piece for the side to move and passes the turn
+     * @param square The square to play on
+     */
+    public void makeMove(int square) {
+        int side = sideToMove;
+        long bits = pieces[side] | (1L << square);
+        pieces[side] = bits;
+        moveStack[moveCount++] = square;
+        hash ^= ZOBRIST[side][square];
+        boolean won = false;
+        int[] lines = SQUARE_LINES[square];
+        for(int i = 0; i < lines.length; i++) {
+            int line = lines[i];
+            updateLine(line, side, 1);
+            if((bits & LINES[line]) == LINES[line]) {
+                won = true;
+            }
+        }
+        lastMoveWon = won;
+        sideToMove = 3 - side;
+    }
+
+
+    /**
+     * Takes back the last move made
+     */
+    public void unmakeMove() {
+        int square = moveStack[--moveCount];
+        int side = 3 - sideToMove;
+        pieces[side] &= ~(1L << square);
+        hash ^= ZOBRIST[side][square];
+        int[] lines = SQUARE_LINES[square];
+        for(int i = 0; i < lines.length; i++) {
+            updateLine(lines[i], side, -1);
+        }
+        sideToMove = side;
+        //A position is only ever reached without a win before it, so taking back leaves no win
+        lastMoveWon = false;
+    }
+
+
+    /**
+     * Adds or removes a piece from one line's counts, keeping the score and open threes in step
+     * @param line The line
+     * @param side The side whose piece it is
+     * @param change 1 to add the piece, -1 to remove it
+     */
+    private void updateLine(int line, int side, int change) {
+        int ones = lineCounts[TicTacToeBoard.PLAYER_ONE][line];
+        int twos = lineCounts[TicTacToeBoard.PLAYER_TWO][line];
+        score -= LINE_VALUES[ones * 5 + twos];
+        openThrees[TicTacToeBoard.PLAYER_ONE] -= isOpenThree(ones, twos);
+        openThrees[TicTacToeBoard.PLAYER_TWO] -= isOpenThree(twos, ones);
+        if(side == TicTacToeBoard.PLAYER_ONE) {
+            ones += change;
+        } else {
+            twos += change;
+        }
+        lineCounts[side][line] += change;
+        score += LINE_VALUES[ones * 5 + twos];
+        openThrees[TicTacToeBoard.PLAYER_ONE] += isOpenThree(ones, twos);
+        openThrees[TicTacToeBoard.PLAYER_TWO] += isOpenThree(twos, ones);
+    }
+
+
+    /**
+     * @param mine The side's pieces on a line
+     * @param theirs The opponent's pieces on the line
+     * @return 1 if the side wins by filling the line's last square, otherwise 0
+     */
+    private static int isOpenThree(int mine, int theirs) {
+        return mine == SIZE - 1 && theirs == 0 ? 1 : 0;
+    }
+
+
+    /**
+     * Finds the squares that would complete a line for a side
+     * @param side The side
+     * @return A mask of the squares, 0 when the side has no open three
+     */
+    public long getWinningSquares(int side) {
+        if(openThrees[side] == 0) {
+            return 0;
+        }
+        long empty = ~(pieces[TicTacToeBoard.PLAYER_ONE] | pieces[TicTacToeBoard.PLAYER_TWO]);
+        long squares = 0;
+        byte[] mine = lineCounts[side];
+        byte[] theirs = lineCounts[3 - side];
+        for(int line = 0; line < NUM_LINES; line++) {
+            if(mine[line] == SIZE - 1 && theirs[line] == 0) {
+                squares |= LINES[line] & empty;
+            }
+        }
+        return squares;
+    }
+
+
+    /**
+     * Lists every empty square, those on the most lines first
+     * @param list Where the moves are written, must have room for 64
+     * @return How many moves were written
+     */
+    public int generateMoves(int[] list) {
+        long occupied = pieces[TicTacToeBoard.PLAYER_ONE] | pieces[TicTacToeBoard.PLAYER_TWO];
+        int count = 0;
+        for(int i = 0; i < NUM_SQUARES; i++) {
+            int square = SQUARE_ORDER[i];
+            if((occupied & (1L << square)) == 0) {
+                list[count++] = square;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Reads a move written as a level number, a column letter and a row number, such as "2b3"
+     * @param text The move text
+     * @return The square, or NO_MOVE when the text is not an empty square
+     */
+    public int parseMove(String text) {
+        if(text == null || text.length() != 3) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        int level = text.charAt(0) - '1';
+        int col = Character.toLowerCase(text.charAt(1)) - 'a';
+        int row = text.charAt(2) - '1';
+        if(!isInside(level, row, col)) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        int square = level * 16 + row * 4 + col;
+        if(!isEmpty(square)) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        return square;
+    }
+
+
+    /**
+     * Writes a square the way parseMove reads it
+     * @param square The square to write
+     * @return The move text
+     */
+    public static String moveToString(int square) {
+        if(square == TicTacToeBoard.NO_MOVE) {
+            return "none";
+        }
+        return "" + (square / 16 + 1) + (char) ('a' + square % 4) + (square / 4 % 4 + 1);
+    }
+
+
+    /**
+     * Prints the four levels next to each other, in rows of '.', 'X' and 'O'
+     * @return The board with one row of every level per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for(int level = 0; level < SIZE; level++) {
+            text.append("  level ").append(level + 1).append("  ");
+        }
+        text.append('\n');
+        for(int level = 0; level < SIZE; level++) {
+            text.append("  a b c d  ");
+        }
+        text.append('\n');
+        for(int row = 0; row < SIZE; row++) {
+            for(int level = 0; level < SIZE; level++) {
+                text.append(row + 1);
+                for(int col = 0; col < SIZE; col++) {
+                    text.append(' ').append(TicTacToeConsole.getPieceChar(getPiece(level * 16 + row * 4 + col)));
+                }
+                text.append("  ");
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+
+    /**
+     * Scores a position that is not over yet for the side to move
+     * @return Positive when the side to move is better off
+     */
+    public int evaluate() {
+        return sideToMove == TicTacToeBoard.PLAYER_ONE ? score : -score;
+    }
+
+
+    public long getPieces(int side) {
+        return pieces[side];
+    }
+
+
+    public int getPiece(int square) {
+        if((pieces[TicTacToeBoard.PLAYER_ONE] & (1L << square)) != 0) {
+            return TicTacToeBoard.PLAYER_ONE;
+        } else if((pieces[TicTacToeBoard.PLAYER_TWO] & (1L << square)) != 0) {
+            return TicTacToeBoard.PLAYER_TWO;
+        }
+        return TicTacToeBoard.EMPTY;
+    }
+
+
+    public boolean isEmpty(int square) {
+        return ((pieces[TicTacToeBoard.PLAYER_ONE] | pieces[TicTacToeBoard.PLAYER_TWO]) & (1L << square)) == 0;
+    }
+
+
+    public int getOpenThrees(int side) {
+        return openThrees[side];
+    }
+
+
+    public long getHash() {
+        return hash;
+    }
+
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+
+    public int getMove(int index) {
+        return moveStack[index];
+    }
+
+
+    public boolean lastMoveWon() {
+        return lastMoveWon;
+    }
+
+
+    public boolean isFull() {
+        return moveCount == NUM_SQUARES;
+    }
+}
@@ -0,0 +1,360 @@
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Iterative deepening principal variation search over a TicTacToeQubicBoard.
+ *
+ * With 64 first moves a plain search gets nowhere, so most of the work is cut by looking at open
+ * threes before searching a node: a side with one wins on the spot, a side facing two different
+ * ones has lost, and a side facing one has a single legal move worth trying. Forced moves do not
+ * use up depth, so the long chains of threats Qubic is decided by are followed to the end.
+ * Results go into a TicTacToeHashTable and moves are ordered by TicTacToeMoveOrdering,
+ * the same as in TicTacToeSearch.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeQubicSearch {
+
+    //Constants
+    private final static int WIN_SCORE = TicTacToeSearch.WIN_SCORE;
+    private final static int INFINITY = TicTacToeSearch.INFINITY;
+    private final static int MAX_PLY = TicTacToeQubicBoard.NUM_SQUARES + 1;
+    private final static int TIME_CHECK_INTERVAL = 1023;
+
+    /**
+     * Receives the search after each finished iteration, to read its progress from
+     */
+    public interface Listener {
+        void onIteration(TicTacToeQubicSearch search);
+    }
+
+    //Search state
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[] previousPv = new int[MAX_PLY];
+    private int previousPvLength;
+    private boolean followingPv;
+    private final int[][] moves = new int[MAX_PLY][TicTacToeQubicBoard.NUM_SQUARES];
+    private final int[][] moveScores = new int[MAX_PLY][TicTacToeQubicBoard.NUM_SQUARES];
+    private final TicTacToeMoveOrdering ordering = new TicTacToeMoveOrdering();
+    private TicTacToeHashTable hashTable = new TicTacToeHashTable(TicTacToeHashTable.DEFAULT_MEGABYTES);
+    private volatile boolean stopRequested;
+    private boolean aborted;
+    private long nodes;
+    private int completedDepth;
+    private long startTime;
+    private long deadline;
+    private TicTacToeQubicBoard board;
+    private int bestScore;
+
+
+    /**
+     * Asks a running search to stop as soon as possible. Safe to call from another thread.
+     * The request stays in place until clearStop is called, even if no search is running yet.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+
+    //Takes back an earlier stop request, must be called before starting a new search
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+
+    /**
+     * Finds the best move for the side to move
+     * @param board The position to search, left unchanged when the search returns
+     * @param maxDepth The deepest iteration to run
+     * @param moveTimeMs How long to search for, or 0 for no time limit
+     * @param listener Told about every finished iteration, may be null
+     * @return The best move found, or NO_MOVE when the game is already over
+     */
+    public int search(TicTacToeQubicBoard board, int maxDepth, long moveTimeMs, Listener listener) {
+        this.board = board;
+        startTime = System.currentTimeMillis();
+        deadline = moveTimeMs > 0 ? startTime + moveTimeMs : Long.MAX_VALUE;
+        aborted = false;
+        nodes = 0;
+        bestScore = 0;
+        completedDepth = 0;
+        previousPvLength = 0;
+        ordering.newSearch();
+        hashTable.newSearch();
+        if(board.lastMoveWon() || board.isFull()) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+
+        int[] rootMoves = new int[TicTacToeQubicBoard.NUM_SQUARES];
+        board.generateMoves(rootMoves);
+        int bestMove = rootMoves[0];
+        int depthLimit = Math.min(maxDepth, TicTacToeQubicBoard.NUM_SQUARES - board.getMoveCount());
+
+        // Deepen one ply at a time until out of time or the result is proven
+        for(int depth = 1; depth <= depthLimit; depth++) {
+            followingPv = true;
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            if(aborted) {
+                break;
+            }
+            completedDepth = depth;
+            bestScore = score;
+            bestMove = pvTable[0][0];
+            previousPvLength = pvLength[0];
+            System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+            if(listener != null) {
+                listener.onIteration(this);
+            }
+            if(TicTacToeSearch.isProvenScore(score)) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+
+    /**
+     * Recursive function that scores a position for the side to move
+     * @param depth How many more plies to search, not counting forced moves
+     * @param ply How far from the root this node is
+     * @param alpha The score the side to move is already guaranteed
+     * @param beta The score the opponent is already guaranteed
+     * @return The score of the position from the side to move's point of view
+     */
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        nodes++;
+        pvLength[ply] = 0;
+        if((nodes & TIME_CHECK_INTERVAL) == 0 && (stopRequested || System.currentTimeMillis() > deadline)) {
+            aborted = true;
+        }
+        if(aborted) {
+            return 0;
+        }
+
+        // The previous move won, so the side to move has lost
+        if(board.lastMoveWon()) {
+            return -(WIN_SCORE - ply);
+        }
+        // When nobody wins and it is a draw
+        if(board.isFull()) {
+            return 0;
+        }
+
+        // An open three of our own wins with the next move
+        int side = board.getSideToMove();
+        long wins = board.getWinningSquares(side);
+        if(wins != 0) {
+            setPv(ply, Long.numberOfTrailingZeros(wins));
+            return WIN_SCORE - ply - 1;
+        }
+        // Two of the opponent's can not both be blocked, and one leaves a single move to try
+        long threats = board.getWinningSquares(3 - side);
+        if(Long.bitCount(threats) > 1) {
+            setPv(ply, Long.numberOfTrailingZeros(threats));
+            return -(WIN_SCORE - ply - 2);
+        }
+        // Out of depth and nothing forced, so guess from the shape of the position
+        if(depth <= 0 && threats == 0) {
+            return board.evaluate();
+        }
+
+        // Mate distance pruning, as in TicTacToeSearch
+        alpha = Math.max(alpha, -(WIN_SCORE - ply));
+        beta = Math.min(beta, WIN_SCORE - ply - 1);
+        if(alpha >= beta) {
+            followingPv = false;
+            return alpha;
+        }
+
+        long key = board.getHash();
+        long entry = hashTable.probe(key);
+        int hashMove = TicTacToeBoard.NO_MOVE;
+        if(entry != 0) {
+            hashMove = TicTacToeHashTable.getMove(entry);
+            boolean isPvNode = beta - alpha > 1;
+            if(!isPvNode && TicTacToeHashTable.getDepth(entry) >= depth) {
+                int score = scoreFromHash(TicTacToeHashTable.getScore(entry), ply);
+                int bound = TicTacToeHashTable.getBound(entry);
+                if(bound == TicTacToeHashTable.BOUND_EXACT
+                    || (bound == TicTacToeHashTable.BOUND_LOWER && score >= beta)
+                    || (bound == TicTacToeHashTable.BOUND_UPPER && score <= alpha)) {
+                    followingPv = false;
+                    return score;
+                }
+            }
+        }
+        int originalAlpha = alpha;
+
+        int pvMove = hashMove;
+        if(followingPv && ply < previousPvLength) {
+            pvMove = previousPv[ply];
+        }
+        followingPv = false;
+
+        int[] nodeMoves = moves[ply];
+        int[] nodeScores = moveScores[ply];
+        int count;
+        int childDepth;
+        if(threats != 0) {
+            nodeMoves[0] = Long.numberOfTrailingZeros(threats);
+            count = 1;
+            childDepth = depth;
+        } else {
+            count = board.generateMoves(nodeMoves);
+            ordering.scoreMoves(nodeMoves, nodeScores, count, ply, side, pvMove);
+            childDepth = depth - 1;
+        }
+
+        int best = -INFINITY;
+        int bestMove = TicTacToeBoard.NO_MOVE;
+        for(int i = 0; i < count; i++) {
+            int square = count == 1 ? nodeMoves[0] : TicTacToeMoveOrdering.pickMove(nodeMoves, nodeScores, i, count);
+            followingPv = square == pvMove;
+            board.makeMove(square);
+            int score;
+            if(i == 0) {
+                score = -negamax(childDepth, ply + 1, -beta, -alpha);
+            } else {
+                // Only prove that this move is no better than the first one
+                score = -negamax(childDepth, ply + 1, -alpha - 1, -alpha);
+                if(score > alpha && score < beta) {
+                    score = -negamax(childDepth, ply + 1, -beta, -alpha);
+                }
+            }
+            board.unmakeMove();
+            if(aborted) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                bestMove = square;
+                if(score > alpha) {
+                    alpha = score;
+                    updatePv(ply, square);
+                }
+                if(alpha >= beta) {
+                    if(count > 1) {
+                        ordering.onCutoff(ply, side, square, Math.max(depth, 1), i);
+                    }
+                    break;
+                }
+            }
+        }
+
+        int bound;
+        if(best >= beta) {
+            bound = TicTacToeHashTable.BOUND_LOWER;
+        } else if(best > originalAlpha) {
+            bound = TicTacToeHashTable.BOUND_EXACT;
+        } else {
+            bound = TicTacToeHashTable.BOUND_UPPER;
+        }
+        hashTable.store(key, scoreToHash(best, ply), Math.max(depth, 0), bound, bestMove);
+        return best;
+    }
+
+
+    /**
+     * Win and loss scores count plies from the root, but a cached position can be reached at
+     * any ply, so they are stored counting from the position itself
+     * @param score The score counted from the root
+     * @param ply The ply of the position
+     * @return The score counted from the position
+     */
+    private static int scoreToHash(int score, int ply) {
+        if(score >= WIN_SCORE - TicTacToeSearch.MAX_PLY) {
+            return score + ply;
+        } else if(score <= -(WIN_SCORE - TicTacToeSearch.MAX_PLY)) {
+            return score - ply;
+        }
+        return score;
+    }
+
+
+    /**
+     * Undoes scoreToHash
+     * @param score The score counted from the position
+     * @param ply The ply the position was reached at
+     * @return The score counted from the root
+     */
+    private static int scoreFromHash(int score, int ply) {
+        if(score >= WIN_SCORE - TicTacToeSearch.MAX_PLY) {
+            return score - ply;
+        } else if(score <= -(WIN_SCORE - TicTacToeSearch.MAX_PLY)) {
+            return score + ply;
+        }
+        return score;
+    }
+
+
+    /**
+     * Puts a move in front of the principal variation found below it
+     * @param ply The ply of the move
+     * @param square The move
+     */
+    private void updatePv(int ply, int square) {
+        pvTable[ply][0] = square;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+
+    /**
+     * Ends the principal variation with a single move, for nodes decided without searching
+     * @param ply The ply of the move
+     * @param square The move
+     */
+    private void setPv(int ply, int square) {
+        pvTable[ply][0] = square;
+        pvLength[ply] = 1;
+    }
+
+
+    /**
+     * Uses a different hash table
+     * @param hashTable The table
+     */
+    public void setHashTable(TicTacToeHashTable hashTable) {
+        this.hashTable = hashTable;
+    }
+
+
+    public TicTacToeHashTable getHashTable() {
+        return hashTable;
+    }
+
+
+    public long getNodes() {
+        return nodes;
+    }
+
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+
+    public int getPvLength() {
+        return pvLength[0];
+    }
+
+
+    public int getPvMove(int index) {
+        return pvTable[0][index];
+    }
+
+
+    public int getBestScore() {
+        return bestScore;
+    }
+}
@@ -0,0 +1,927 @@
+import java.util.Arrays;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Iterative deepening principal variation search over a TicTacToeBoard.
+ * Every iteration starts with an aspiration window around the previous iteration's score,
+ * and every move after the first at a node is tried with a null window first.
+ * A search object keeps its state between games so that anything it has learned carries over.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeSearch {
+
+    //Constants
+    public final static int WIN_SCORE = 1000000;
+    public final static int MAX_PLY = 256;
+    public final static int INFINITY = WIN_SCORE + 1;
+    private final static int TIME_CHECK_INTERVAL = 1023;
+    private final static int ASPIRATION_WINDOW = 50;
+
+    /**
+     * Receives the search after each finished iteration, to read its progress from
+     */
+    public interface Listener {
+        void onIteration(TicTacToeSearch search);
+    }
+
+    //Search state
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[] previousPv = new int[MAX_PLY];
+    private int previousPvLength;
+    private boolean followingPv;
+    private final int[][] moves = new int[MAX_PLY][MAX_PLY];
+    private final int[][] moveScores = new int[MAX_PLY][MAX_PLY];
+    private final TicTacToeMoveOrdering ordering = new TicTacToeMoveOrdering();
+    private volatile boolean stopRequested;
+    private boolean aborted;
+    private long nodes;
+    private long depthNodes;
+    private int researches;
+    private int completedDepth;
+    private long startTime;
+    private long deadline;
+    private long nodeLimit = Long.MAX_VALUE;
+    //The task the last step ran, whose move ordering is still in place
+    private TicTacToeSearchTask lastTask;
+    //Board the steps replay their tasks onto, kept so its threat search can be kept too
+    private TicTacToeBoard stepBoard;
+    private TicTacToeBoard board;
+    private int bestScore;
+    private boolean usePvs = true;
+    private boolean useThreatSearch = true;
+    private TicTacToeThreatSearch threatSearch;
+    private TicTacToeSolutionBook book;
+
+    //Cache shared with the helper threads, which search the same position on copies of the board
+    private TicTacToeHashTable hashTable = new TicTacToeHashTable(TicTacToeHashTable.DEFAULT_MEGABYTES);
+    private TicTacToeSearch[] helpers = new TicTacToeSearch[0];
+    private long hashProbes;
+    private long hashHits;
+    private boolean isHelper;
+    private TicTacToeMoveAnalysis[] analysis = new TicTacToeMoveAnalysis[0];
+
+
+    /**
+     * Asks a running search to stop as soon as possible. Safe to call from another thread.
+     * The request stays in place until clearStop is called, even if no search is running yet.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+
+    //Takes back an earlier stop request, must be called before starting a new search
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+
+    /**
+     * Finds the best move for the side to move
+     * @param board The position to search, left unchanged when the search returns
+     * @param maxDepth The deepest iteration to run
+     * @param moveTimeMs How long to search for, or 0 for no time limit
+     * @param listener Told about every finished iteration, may be null
+     * @return The best move found, or NO_MOVE when the game is already over
+     * @throws IllegalArgumentException If the board has more than MAX_PLY squares
+     */
+    public int search(TicTacToeBoard board, int maxDepth, long moveTimeMs, Listener listener) {
+        prepare(board, moveTimeMs);
+
+        int bestMove = firstEmptySquare(board);
+        if(board.lastMoveWon() || bestMove == TicTacToeBoard.NO_MOVE) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        int emptySquares = board.getNumSquares() - board.getMoveCount();
+        int depthLimit = Math.min(Math.min(maxDepth, emptySquares), MAX_PLY - 1);
+
+        // Solved positions need no search at all
+        if(book != null && book.matches(board) && findBookMove(listener)) {
+            return pvTable[0][0];
+        }
+
+        // A quick look for a forced win made of threats, which is deeper than search can see
+        boolean threatWin = useThreatSearch && findThreatWin(TicTacToeThreatSearch.DEFAULT_NODE_LIMIT);
+
+        if(!isHelper) {
+            hashTable.newSearch();
+        }
+        if(threatWin) {
+            findShorterWin(depthLimit);
+            if(listener != null) {
+                listener.onIteration(this);
+            }
+            return pvTable[0][0];
+        }
+        Thread[] helperThreads = startHelpers(maxDepth, moveTimeMs);
+
+        // Deepen one ply at a time until out of time or the result is proven
+        for(int depth = 1; depth <= depthLimit; depth++) {
+            long nodesBefore = nodes;
+            researches = 0;
+            int score = searchRoot(depth);
+            if(aborted) {
+                break;
+            }
+            depthNodes = nodes - nodesBefore;
+            completedDepth = depth;
+            bestScore = score;
+            bestMove = pvTable[0][0];
+            previousPvLength = pvLength[0];
+            System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+            if(listener != null) {
+                listener.onIteration(this);
+            }
+            if(isProvenScore(score)) {
+                break;
+            }
+        }
+        stopHelpers(helperThreads);
+        return bestMove;
+    }
+
+
+    /**
+     * Starts every helper searching a copy of the board. They share the hash table, so what
+     * one finds the others, and the main search, get for free.
+     * @param maxDepth The deepest iteration to run
+     * @param moveTimeMs How long to search for, or 0 for no time limit
+     * @return The helper threads
+     */
+    private Thread[] startHelpers(int maxDepth, long moveTimeMs) {
+        Thread[] threads = new Thread[helpers.length];
+        for(int i = 0; i < helpers.length; i++) {
+            final TicTacToeSearch helper = helpers[i];
+            final TicTacToeBoard helperBoard = board.copy();
+            helper.clearStop();
+            threads[i] = new Thread(() -> helper.search(helperBoard, maxDepth, moveTimeMs, null), "helper-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        return threads;
+    }
+
+
+    /**
+     * Stops the helpers and waits for them, adding their nodes to this search's
+     * @param threads The helper threads
+     */
+    private void stopHelpers(Thread[] threads) {
+        for(int i = 0; i < threads.length; i++) {
+            helpers[i].stop();
+        }
+        for(int i = 0; i < threads.length; i++) {
+            try {
+                threads[i].join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            nodes += helpers[i].getNodes();
+        }
+    }
+
+
+    /**
+     * Turns down boards too big for the search. The move lists and the history table have
+     * room for MAX_PLY squares.
+     * @param board The position about to be searched
+     */
+    public static void checkBoardSize(TicTacToeBoard board) {
+        if(board.getNumSquares() > MAX_PLY) {
+            throw new IllegalArgumentException("Boards over " + MAX_PLY + " squares can not be searched, this one has "
+                + board.getNumSquares());
+        }
+    }
+
+
+    /**
+     * Resets the counters and the clock before a search or an analysis
+     * @param board The position to search
+     * @param moveTimeMs How long to search for, or 0 for no time limit
+     */
+    private void prepare(TicTacToeBoard board, long moveTimeMs) {
+        checkBoardSize(board);
+        this.board = board;
+        startTime = System.currentTimeMillis();
+        deadline = moveTimeMs > 0 ? startTime + moveTimeMs : Long.MAX_VALUE;
+        aborted = false;
+        nodes = 0;
+        nodeLimit = Long.MAX_VALUE;
+        lastTask = null;
+        bestScore = 0;
+        completedDepth = 0;
+        previousPvLength = 0;
+        hashProbes = 0;
+        hashHits = 0;
+        analysis = new TicTacToeMoveAnalysis[0];
+        ordering.newSearch();
+    }
+
+
+    /**
+     * Scores every empty square instead of only finding the best move. All moves share the hash table,
+     * and once multiPv moves have exact scores the rest are only searched far enough to show
+     * they are worse, so analysing costs little more than a normal search.
+     * @param board The position to analyse, left unchanged when the analysis returns
+     * @param maxDepth The deepest iteration to run
+     * @param moveTimeMs How long to search for, or 0 for no time limit
+     * @param multiPv How many of the best moves need exact scores
+     * @param listener Told about every finished iteration, may be null
+     * @return The moves, best first. Only the first multiPv are exact, the rest are upper bounds.
+     * @throws IllegalArgumentException If the board has more than MAX_PLY squares
+     */
+    public TicTacToeMoveAnalysis[] analyze(TicTacToeBoard board, int maxDepth, long moveTimeMs,
+        int multiPv, Listener listener) {
+        prepare(board, moveTimeMs);
+        if(board.lastMoveWon() || board.isFull()) {
+            return analysis;
+        }
+        hashTable.newSearch();
+        int emptySquares = board.getNumSquares() - board.getMoveCount();
+        int depthLimit = Math.min(Math.min(maxDepth, emptySquares), MAX_PLY - 1);
+        //Every empty square, not only the candidates near pieces that generateMoves gives on big boards
+        int[] rootMoves = new int[board.getNumSquares()];
+        int count = 0;
+        for(int square = 0; square < board.getNumSquares(); square++) {
+            if(board.isEmpty(square)) {
+                rootMoves[count++] = square;
+            }
+        }
+        int[] scores = new int[count];
+        multiPv = Math.max(1, Math.min(multiPv, count));
+
+        for(int depth = 1; depth <= depthLimit; depth++) {
+            long nodesBefore = nodes;
+            //Best scores from the last iteration are searched first
+            sortByScore(rootMoves, scores, count);
+            TicTacToeMoveAnalysis[] results = new TicTacToeMoveAnalysis[count];
+            int[] exactScores = new int[count];
+            int exactCount = 0;
+            boolean allProven = true;
+            for(int i = 0; i < count && !aborted; i++) {
+                int square = rootMoves[i];
+                //The score a move must beat to make it into the best multiPv
+                int threshold = exactCount >= multiPv ? nthBest(exactScores, exactCount, multiPv) : -INFINITY;
+                board.makeMove(square);
+                followingPv = false;
+                int score;
+                boolean isExact = true;
+                if(threshold == -INFINITY) {
+                    score = -negamax(depth - 1, 1, -INFINITY, INFINITY);
+                } else {
+                    score = -negamax(depth - 1, 1, -threshold - 1, -threshold);
+                    if(score > threshold) {
+                        score = -negamax(depth - 1, 1, -INFINITY, INFINITY);
+                    } else {
+                        isExact = false;
+                    }
+                }
+                board.unmakeMove();
+                if(aborted) {
+                    break;
+                }
+                int[] line = new int[pvLength[1] + 1];
+                line[0] = square;
+                System.arraycopy(pvTable[1], 0, line, 1, pvLength[1]);
+                results[i] = new TicTacToeMoveAnalysis(square, score, isExact, line);
+                scores[i] = score;
+                if(isExact) {
+                    exactScores[exactCount++] = score;
+                }
+                //Moves only shown to be worse than the best multiPv can not change the result
+                if(isExact && !isProvenScore(score)) {
+                    allProven = false;
+                }
+            }
+            if(aborted) {
+                break;
+            }
+            analysis = sortAnalysis(results);
+            depthNodes = nodes - nodesBefore;
+            completedDepth = depth;
+            bestScore = analysis[0].getScore();
+            pvLength[0] = analysis[0].getPv().length;
+            System.arraycopy(analysis[0].getPv(), 0, pvTable[0], 0, pvLength[0]);
+            if(listener != null) {
+                listener.onIteration(this);
+            }
+            if(allProven) {
+                break;
+            }
+        }
+        return analysis;
+    }
+
+
+    /**
+     * Sorts moves by score, best first, keeping equal scores in their old order
+     * @param moves The moves
+     * @param scores Their scores
+     * @param count How many moves there are
+     */
+    private static void sortByScore(int[] moves, int[] scores, int count) {
+        for(int i = 1; i < count; i++) {
+            int move = moves[i];
+            int score = scores[i];
+            int j = i - 1;
+            while(j >= 0 && scores[j] < score) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+
+
+    /**
+     * @param scores Some scores
+     * @param count How many there are
+     * @param n Which one to find, 1 being the best
+     * @return The nth best score
+     */
+    private static int nthBest(int[] scores, int count, int n) {
+        int[] sorted = Arrays.copyOf(scores, count);
+        Arrays.sort(sorted);
+        return sorted[count - n];
+    }
+
+
+    /**
+     * Sorts analysed moves, exact scores before bounds and then best first
+     * @param results The analysed moves
+     * @return The same moves, sorted
+     */
+    private static TicTacToeMoveAnalysis[] sortAnalysis(TicTacToeMoveAnalysis[] results) {
+        TicTacToeMoveAnalysis[] sorted = results.clone();
+        Arrays.sort(sorted, (a, b) -> {
+            if(a.isExact() != b.isExact()) {
+                return a.isExact() ? -1 : 1;
+            }
+            return Integer.compare(b.getScore(), a.getScore());
+        });
+        return sorted;
+    }
+
+
+    /**
+     * Writes a score as "win N" or "loss N" when the result is proven, N counting plies to it,
+     * otherwise as "cp S"
+     * @param score A score from the side to move's point of view
+     * @return The score as text
+     */
+    public static String scoreToString(int score) {
+        if(score >= WIN_SCORE - MAX_PLY) {
+            return "win " + (WIN_SCORE - score);
+        } else if(score <= -(WIN_SCORE - MAX_PLY)) {
+            return "loss " + (WIN_SCORE + score);
+        }
+        return "cp " + score;
+    }
+
+
+    /**
+     * Picks the best move from the solution book, when every move is in it or one of them wins
+     * @param listener Told about the move, may be null
+     * @return Whether the book decided the move
+     */
+    private boolean findBookMove(Listener listener) {
+        int bestMove = TicTacToeBoard.NO_MOVE;
+        int bestValue = TicTacToeSolutionBook.LOSS - 1;
+        for(int square = 0; square < board.getNumSquares(); square++) {
+            if(!board.isEmpty(square)) {
+                continue;
+            }
+            int value;
+            if(board.isWinningMove(square)) {
+                value = TicTacToeSolutionBook.WIN;
+            } else {
+                int childValue = book.get(board.hashAfter(square));
+                if(childValue == TicTacToeSolutionBook.UNKNOWN) {
+                    continue;
+                }
+                value = -childValue;
+            }
+            if(value > bestValue) {
+                bestValue = value;
+                bestMove = square;
+            }
+        }
+        //An unknown move might be better than anything short of a win
+        boolean allKnown = true;
+        for(int square = 0; square < board.getNumSquares() && bestValue != TicTacToeSolutionBook.WIN; square++) {
+            if(board.isEmpty(square) && !board.isWinningMove(square)
+                && book.get(board.hashAfter(square)) == TicTacToeSolutionBook.UNKNOWN) {
+                allKnown = false;
+            }
+        }
+        if(bestMove == TicTacToeBoard.NO_MOVE || !allKnown) {
+            return false;
+        }
+        pvTable[0][0] = bestMove;
+        pvLength[0] = 1;
+        if(bestValue == TicTacToeSolutionBook.WIN) {
+            bestScore = WIN_SCORE - MAX_PLY;
+        } else if(bestValue == TicTacToeSolutionBook.LOSS) {
+            bestScore = -(WIN_SCORE - MAX_PLY);
+        } else {
+            bestScore = 0;
+        }
+        completedDepth = 1;
+        if(listener != null) {
+            listener.onIteration(this);
+        }
+        return true;
+    }
+
+
+    /**
+     * Runs the threat-space search, and on a win reports its line as the result
+     * @param nodeLimit How many positions the threat search may look at
+     * @return Whether a forced win was found
+     */
+    private boolean findThreatWin(long nodeLimit) {
+        if(threatSearch == null || threatSearch.getBoard() != board) {
+            threatSearch = new TicTacToeThreatSearch(board);
+        }
+        int[] line = threatSearch.findWin(TicTacToeThreatSearch.DEFAULT_MAX_THREATS, nodeLimit);
+        nodes += threatSearch.getNodes();
+        if(line == null || line.length > MAX_PLY) {
+            return false;
+        }
+        System.arraycopy(line, 0, pvTable[0], 0, line.length);
+        pvLength[0] = line.length;
+        bestScore = WIN_SCORE - line.length;
+        completedDepth = line.length;
+        depthNodes = nodes;
+        return true;
+    }
+
+
+    /**
+     * The threat search stops at the first win it finds, which need not be the quickest one, so
+     * this deepens with a window that only lets through shorter wins until one is proven or the
+     * threat line is known to be the shortest. Out of time, the threat line stays the result.
+     * @param depthLimit The deepest iteration to run
+     */
+    private void findShorterWin(int depthLimit) {
+        int threatScore = bestScore;
+        int threatDepth = completedDepth;
+        //The threat line is searched first, so that its moves seed the ordering
+        previousPvLength = pvLength[0];
+        System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+        int lastDepth = Math.min(depthLimit, previousPvLength - 1);
+        for(int depth = 1; depth <= lastDepth; depth++) {
+            followingPv = true;
+            int score = negamax(depth, 0, threatScore, INFINITY);
+            if(aborted) {
+                break;
+            }
+            if(score > threatScore) {
+                bestScore = score;
+                completedDepth = depth;
+                depthNodes = nodes;
+                return;
+            }
+        }
+        System.arraycopy(previousPv, 0, pvTable[0], 0, previousPvLength);
+        pvLength[0] = previousPvLength;
+        bestScore = threatScore;
+        completedDepth = threatDepth;
+        depthNodes = nodes;
+    }
+
+
+    /**
+     * Runs the next iteration of a search done a step at a time, so that a scheduler can
+     * interleave many searches on a few threads. Everything the next step needs is kept in the
+     * task, and what an unfinished iteration found is kept in the hash table, so a step stopped
+     * by its node budget costs little when it is run again. The task's moves are replayed onto a
+     * board this search keeps, so steps make no new boards or threat searches.
+     * @param task The search to go on with
+     * @param nodeBudget How many nodes the step may visit, ignored until the task has a move
+     * @param deadline When to stop in System.currentTimeMillis terms, ignored until the task has a move
+     * @return Whether the task is finished: proven, or searched as deep as it may go
+     * @throws IllegalArgumentException If the board has more than MAX_PLY squares
+     */
+    public boolean step(TicTacToeSearchTask task, long nodeBudget, long deadline) {
+        stepBoard = task.setUpBoard(stepBoard);
+        checkBoardSize(stepBoard);
+        if(task != lastTask) {
+            ordering.newSearch();
+            lastTask = task;
+        }
+        board = stepBoard;
+        startTime = System.currentTimeMillis();
+        boolean hasMove = task.completedDepth > 0;
+        this.deadline = hasMove ? deadline : Long.MAX_VALUE;
+        nodeLimit = hasMove ? nodeBudget : Long.MAX_VALUE;
+        aborted = false;
+        nodes = 0;
+        hashProbes = 0;
+        hashHits = 0;
+        bestScore = task.bestScore;
+        completedDepth = task.completedDepth;
+        previousPvLength = task.pvLength;
+        System.arraycopy(task.pv, 0, previousPv, 0, previousPvLength);
+
+        // The same quick checks a whole search starts with. The threat search can not be stopped
+        // partway, so it gets a step of its own once there is a move, held to the node budget.
+        int quantum = task.quanta++;
+        task.cutShort = false;
+        if(quantum == 0 && book != null && book.matches(board) && findBookMove(null)) {
+            task.finishStep(pvTable[0], pvLength[0], bestScore, completedDepth, nodes);
+            return true;
+        }
+        if(quantum == 1 && useThreatSearch) {
+            if(findThreatWin(Math.min(nodeBudget, TicTacToeThreatSearch.DEFAULT_NODE_LIMIT))) {
+                findShorterWin(task.depthLimit);
+                task.finishStep(pvTable[0], pvLength[0], bestScore, completedDepth, nodes);
+                return true;
+            }
+            task.finishStep(previousPv, previousPvLength, task.bestScore, task.completedDepth, nodes);
+            return false;
+        }
+        int depth = completedDepth + 1;
+        int score = searchRoot(depth);
+        if(aborted) {
+            task.cutShort = true;
+            task.finishStep(previousPv, previousPvLength, task.bestScore, task.completedDepth, nodes);
+            return false;
+        }
+        task.finishStep(pvTable[0], pvLength[0], score, depth, nodes);
+        return isProvenScore(score) || depth >= task.depthLimit;
+    }
+
+
+    /**
+     * Searches the root in a narrow window around the last score, widening it each time
+     * the real score falls outside of it
+     * @param depth How many plies to search
+     * @return The score of the root position
+     */
+    private int searchRoot(int depth) {
+        if(!usePvs || depth == 1 || isProvenScore(bestScore)) {
+            followingPv = true;
+            return negamax(depth, 0, -INFINITY, INFINITY);
+        }
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(bestScore - delta, -INFINITY);
+        int beta = Math.min(bestScore + delta, INFINITY);
+        while(true) {
+            followingPv = true;
+            int score = negamax(depth, 0, alpha, beta);
+            if(aborted) {
+                return 0;
+            }
+            if(score <= alpha) {
+                // Failed low, so the real score is somewhere below the window
+                alpha = Math.max(score - delta, -INFINITY);
+            } else if(score >= beta) {
+                // Failed high, so the real score is somewhere above the window
+                beta = Math.min(score + delta, INFINITY);
+            } else {
+                return score;
+            }
+            researches++;
+            delta *= 4;
+            if(delta > WIN_SCORE / 4) {
+                alpha = -INFINITY;
+                beta = INFINITY;
+            }
+        }
+    }
+
+
+    /**
+     * Recursive function that scores a position for the side to move
+     * @param depth How many more plies to search
+     * @param ply How far from the root this node is
+     * @param alpha The score the side to move is already guaranteed
+     * @param beta The score the opponent is already guaranteed
+     * @return The score of the position from the side to move's point of view
+     */
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        nodes++;
+        pvLength[ply] = 0;
+        if((nodes & TIME_CHECK_INTERVAL) == 0
+            && (stopRequested || nodes > nodeLimit || System.currentTimeMillis() > deadline)) {
+            aborted = true;
+        }
+        if(aborted) {
+            return 0;
+        }
+
+        // The previous move won, so the side to move has lost
+        if(board.lastMoveWon()) {
+            return -(WIN_SCORE - ply);
+        }
+        // When nobody wins and it is a draw
+        if(board.isFull()) {
+            return 0;
+        }
+        // Out of depth, so guess from the shape of the position
+        if(depth == 0) {
+            return board.evaluate();
+        }
+
+        // Mate distance pruning: nothing here can be worse than losing right now or better than
+        // winning with the next move, and once a shorter result is known elsewhere this can prune
+        alpha = Math.max(alpha, -(WIN_SCORE - ply));
+        beta = Math.min(beta, WIN_SCORE - ply - 1);
+        if(alpha >= beta) {
+            followingPv = false;
+            return alpha;
+        }
+
+        // A result for this position may already be cached, by this search or another thread
+        long key = board.getHash();
+        long entry = hashTable.probe(key);
+        int hashMove = TicTacToeBoard.NO_MOVE;
+        hashProbes++;
+        if(entry != 0) {
+            hashHits++;
+            hashMove = TicTacToeHashTable.getMove(entry);
+            boolean isPvNode = beta - alpha > 1;
+            if(!isPvNode && TicTacToeHashTable.getDepth(entry) >= depth) {
+                int score = scoreFromHash(TicTacToeHashTable.getScore(entry), ply);
+                int bound = TicTacToeHashTable.getBound(entry);
+                if(bound == TicTacToeHashTable.BOUND_EXACT
+                    || (bound == TicTacToeHashTable.BOUND_LOWER && score >= beta)
+                    || (bound == TicTacToeHashTable.BOUND_UPPER && score <= alpha)) {
+                    followingPv = false;
+                    return score;
+                }
+            }
+        }
+        int originalAlpha = alpha;
+
+        // Try the last iteration's best line first, while still on it, then the cached best move
+        int pvMove = hashMove;
+        boolean onPv = followingPv && ply < previousPvLength;
+        if(onPv) {
+            pvMove = previousPv[ply];
+        }
+        followingPv = false;
+
+        int side = board.getSideToMove();
+        int[] nodeMoves = moves[ply];
+        int[] nodeScores = moveScores[ply];
+        int count = board.generateMoves(nodeMoves);
+        ordering.scoreMoves(nodeMoves, nodeScores, count, ply, side, pvMove);
+
+        int best = -INFINITY;
+        int bestMove = TicTacToeBoard.NO_MOVE;
+        for(int i = 0; i < count; i++) {
+            int square = TicTacToeMoveOrdering.pickMove(nodeMoves, nodeScores, i, count);
+            //Only the previous iteration's move keeps the child on that line, not the cached move
+            followingPv = onPv && square == pvMove;
+            board.makeMove(square);
+            int score;
+            if(i == 0 || !usePvs) {
+                score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                // Only prove that this move is no better than the first one
+                score = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if(score > alpha && score < beta) {
+                    score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            board.unmakeMove();
+            if(aborted) {
+                return 0;
+            }
+            if(score > best) {
+                best = score;
+                bestMove = square;
+                if(score > alpha) {
+                    alpha = score;
+                    updatePv(ply, square);
+                }
+                if(alpha >= beta) {
+                    ordering.onCutoff(ply, side, square, depth, i);
+                    break;
+                }
+            }
+        }
+
+        int bound;
+        if(best >= beta) {
+            bound = TicTacToeHashTable.BOUND_LOWER;
+        } else if(best > originalAlpha) {
+            bound = TicTacToeHashTable.BOUND_EXACT;
+        } else {
+            bound = TicTacToeHashTable.BOUND_UPPER;
+        }
+        hashTable.store(key, scoreToHash(best, ply), depth, bound, bestMove);
+        return best;
+    }
+
+
+    /**
+     * Win and loss scores count plies from the root, but a cached position can be reached at
+     * any ply, so they are stored counting from the position itself
+     * @param score The score counted from the root
+     * @param ply The ply of the position
+     * @return The score counted from the position
+     */
+    private static int scoreToHash(int score, int ply) {
+        if(score >= WIN_SCORE - MAX_PLY) {
+            return score + ply;
+        } else if(score <= -(WIN_SCORE - MAX_PLY)) {
+            return score - ply;
+        }
+        return score;
+    }
+
+
+    /**
+     * Undoes scoreToHash
+     * @param score The score counted from the position
+     * @param ply The ply the position was reached at
+     * @return The score counted from the root
+     */
+    private static int scoreFromHash(int score, int ply) {
+        if(score >= WIN_SCORE - MAX_PLY) {
+            return score - ply;
+        } else if(score <= -(WIN_SCORE - MAX_PLY)) {
+            return score + ply;
+        }
+        return score;
+    }
+
+
+    /**
+     * Puts a move in front of the principal variation found below it
+     * @param ply The ply of the move
+     * @param square The move
+     */
+    private void updatePv(int ply, int square) {
+        pvTable[ply][0] = square;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+
+    /**
+     * Finds the first empty square so there is always a legal move to fall back on
+     * @param board The board to look through
+     * @return The first empty square, or NO_MOVE when the board is full
+     */
+    private static int firstEmptySquare(TicTacToeBoard board) {
+        for(int square = 0; square < board.getNumSquares(); square++) {
+            if(board.isEmpty(square)) {
+                return square;
+            }
+        }
+        return TicTacToeBoard.NO_MOVE;
+    }
+
+
+    /**
+     * Checks if a score is a forced win or loss rather than an estimate
+     * @param score The score to check
+     * @return Whether the score is a proven result
+     */
+    public static boolean isProvenScore(int score) {
+        return Math.abs(score) >= WIN_SCORE - MAX_PLY;
+    }
+
+
+    /**
+     * Turns the null window and aspiration window searches on or off, to compare against
+     * plain alpha-beta
+     * @param usePvs Whether to use principal variation search
+     */
+    public void setUsePvs(boolean usePvs) {
+        this.usePvs = usePvs;
+        for(int i = 0; i < helpers.length; i++) {
+            helpers[i].setUsePvs(usePvs);
+        }
+    }
+
+
+    /**
+     * Turns the threat-space pre-search on or off
+     * @param useThreatSearch Whether to look for forced threat wins before searching
+     */
+    public void setUseThreatSearch(boolean useThreatSearch) {
+        this.useThreatSearch = useThreatSearch;
+    }
+
+
+    /**
+     * Plays solved positions straight from a book instead of searching them
+     * @param book The book, or null to always search
+     */
+    public void setBook(TicTacToeSolutionBook book) {
+        this.book = book;
+    }
+
+
+    /**
+     * Uses a different hash table, which the helper threads then share
+     * @param hashTable The table
+     */
+    public void setHashTable(TicTacToeHashTable hashTable) {
+        this.hashTable = hashTable;
+        for(int i = 0; i < helpers.length; i++) {
+            helpers[i].setHashTable(hashTable);
+        }
+    }
+
+
+    /**
+     * Sets how many threads search, counting this one
+     * @param threads The number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        helpers = new TicTacToeSearch[Math.max(0, threads - 1)];
+        for(int i = 0; i < helpers.length; i++) {
+            helpers[i] = new TicTacToeSearch();
+            helpers[i].isHelper = true;
+            helpers[i].setHashTable(hashTable);
+            helpers[i].setUsePvs(usePvs);
+            //Helpers go straight to searching, the main thread already did the quick checks
+            helpers[i].setUseThreatSearch(false);
+        }
+    }
+
+
+    public TicTacToeHashTable getHashTable() {
+        return hashTable;
+    }
+
+
+    /**
+     * @return The share of hash table probes by this thread that found an entry, from 0 to 1
+     */
+    public double getHashHitRate() {
+        if(hashProbes == 0) {
+            return 0;
+        }
+        return (double) hashHits / hashProbes;
+    }
+
+
+    /**
+     * @return The moves from the last finished iteration of analyze, best first
+     */
+    public TicTacToeMoveAnalysis[] getAnalysis() {
+        return analysis;
+    }
+
+
+    public long getNodes() {
+        return nodes;
+    }
+
+
+    public long getDepthNodes() {
+        return depthNodes;
+    }
+
+
+    public int getResearches() {
+        return researches;
+    }
+
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+
+    public TicTacToeMoveOrdering getOrdering() {
+        return ordering;
+    }
+
+
+    public int getPvLength() {
+        return pvLength[0];
+    }
+
+
+    public int getPvMove(int index) {
+        return pvTable[0][index];
+    }
+
+
+    public int getBestScore() {
+        return bestScore;
+    }
+}
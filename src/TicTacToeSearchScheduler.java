@@ -0,0 +1,441 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Runs move searches for many games at once on a fixed set of threads, so that one deep search
+ * can not hold every other game up.
+ *
+ * A search is run in quanta: each quantum is one iteration of its iterative deepening, stopped
+ * after a node budget, and after every quantum the search goes back in the queue. The queue
+ * takes the nearest deadline first, then whichever has had fewer quanta, so a search that is
+ * overdue is handed back at once rather than waiting behind new ones. A search is done when it is
+ * proven, reaches its depth, or passes its deadline with a move in hand. A quantum cut short by
+ * its budget is run again with twice the budget, mostly from the shared hash table.
+ *
+ * Admission control: a game may only have one request in at a time, and no more than maxTasks
+ * requests may be waiting or running. submit turns down anything over that instead of letting
+ * the queue, and every game's wait, grow without end.
+ *
+ * Benchmark: java TicTacToeSearchScheduler [--games n] [--threads n] [--size m n k]
+ *                [--movetime ms] [--depth d] [--quantum nodes] [--max-tasks n] [--seconds s] [--fifo]
+ *
+ * Plays that many games against themselves, each asking for its next move as soon as the last
+ * one is ready, and prints the move latency and queue depth. --fifo runs every search to the
+ * end in the order asked instead, for comparison.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeSearchScheduler {
+
+    //Constants
+    public final static long DEFAULT_QUANTUM_NODES = 5000;
+    public final static int DEFAULT_MAX_TASKS = 10000;
+    //How many of the latest move latencies the percentiles are taken over
+    private final static int LATENCY_WINDOW = 1 << 16;
+    //A move this much past its deadline is late; steps only look at the clock every thousand or so nodes
+    private final static long LATE_MS = 10;
+    private final static int DEFAULT_GAMES = 1000;
+    private final static long DEFAULT_MOVE_TIME_MS = 200;
+    private final static int DEFAULT_DEPTH = 8;
+    private final static int DEFAULT_SECONDS = 10;
+    private final static int DEFAULT_HASH_MB = 64;
+    private final static long RETRY_MS = 10;
+    private final static String USAGE = "Usage: java TicTacToeSearchScheduler [--games n] [--threads n]"
+        + " [--size m n k] [--movetime ms] [--depth d] [--quantum nodes] [--max-tasks n] [--seconds s] [--fifo]";
+
+    /**
+     * Told when a move is ready, on the thread that finished it
+     */
+    public interface Listener {
+        void onMove(TicTacToeSearchTask task);
+    }
+
+    //Most urgent first, see the class comment
+    private final static Comparator<TicTacToeSearchTask> URGENCY = (a, b) -> {
+        if(a.getDeadline() != b.getDeadline()) {
+            return Long.compare(a.getDeadline(), b.getDeadline());
+        }
+        if(a.quanta != b.quanta) {
+            return Integer.compare(a.quanta, b.quanta);
+        }
+        return Long.compare(a.sequence, b.sequence);
+    };
+    private final static Comparator<TicTacToeSearchTask> ARRIVAL = (a, b) -> Long.compare(a.sequence, b.sequence);
+
+    //Settings
+    private final int maxTasks;
+    private final long quantumNodes;
+    private final boolean runToCompletion;
+
+    //Work, guarded by this
+    private final PriorityQueue<TicTacToeSearchTask> queue;
+    private final HashSet<Integer> activeGames = new HashSet<Integer>();
+    private int running;
+    private long nextSequence;
+    private boolean shuttingDown;
+
+    //Metrics, guarded by this
+    private int maxQueueDepth;
+    private long completed;
+    private long rejected;
+    private long deadlineMisses;
+    private long failed;
+    private long listenerErrors;
+    private long totalQuanta;
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long latencyCount;
+
+    private final Thread[] workers;
+
+
+    /**
+     * Starts the worker threads
+     * @param threads How many searches run at once
+     * @param maxTasks How many requests may be waiting or running before submit turns more down
+     * @param quantumNodes The node budget of a quantum
+     * @param hashMegabytes The size of the hash table every worker shares
+     * @param runToCompletion Whether to run each search to the end in the order asked instead
+     */
+    public TicTacToeSearchScheduler(int threads, int maxTasks, long quantumNodes, int hashMegabytes,
+                                    boolean runToCompletion) {
+        this.maxTasks = maxTasks;
+        this.quantumNodes = quantumNodes;
+        this.runToCompletion = runToCompletion;
+        queue = new PriorityQueue<TicTacToeSearchTask>(runToCompletion ? ARRIVAL : URGENCY);
+        TicTacToeHashTable hashTable = new TicTacToeHashTable(hashMegabytes);
+        workers = new Thread[Math.max(1, threads)];
+        for(int i = 0; i < workers.length; i++) {
+            final TicTacToeSearch search = new TicTacToeSearch();
+            search.setHashTable(hashTable);
+            workers[i] = new Thread(() -> work(search), "scheduler-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+
+    /**
+     * Worker thread: takes the most urgent search, runs one quantum of it, and puts it back
+     * unless it is finished
+     * @param search The worker's own search, sharing the hash table with the others
+     */
+    private void work(TicTacToeSearch search) {
+        while(true) {
+            TicTacToeSearchTask task;
+            synchronized(this) {
+                while(queue.isEmpty() && !shuttingDown) {
+                    try {
+                        wait();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                if(shuttingDown) {
+                    return;
+                }
+                task = queue.poll();
+                running++;
+            }
+
+            boolean finished;
+            try {
+                if(task.completedDepth > 0 && System.currentTimeMillis() > task.getDeadline()) {
+                    //Overdue while it waited: the move it has is the move it gets
+                    finished = true;
+                } else if(runToCompletion) {
+                    //One step after another with no budget, as a plain search with a move time would
+                    do {
+                        finished = search.step(task, Long.MAX_VALUE, task.getDeadline());
+                    } while(!finished && System.currentTimeMillis() <= task.getDeadline());
+                    finished = true;
+                } else {
+                    finished = search.step(task, task.nodeBudget, task.getDeadline());
+                    if(task.cutShort) {
+                        //Cut short: run it again with more room, mostly from the hash table
+                        task.nodeBudget *= 2;
+                    }
+                    finished |= System.currentTimeMillis() > task.getDeadline();
+                }
+            } catch(RuntimeException e) {
+                //The task ends with the error, and the thread and the game go on to other work
+                task.error = e;
+                finished = true;
+            }
+
+            synchronized(this) {
+                running--;
+                if(!finished) {
+                    queue.add(task);
+                    continue;
+                }
+                finish(task);
+            }
+            if(task.listener != null) {
+                try {
+                    task.listener.onMove(task);
+                } catch(RuntimeException e) {
+                    synchronized(this) {
+                        listenerErrors++;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Records a finished search in the metrics and frees its game for the next request.
+     * Called holding the lock.
+     * @param task The search
+     */
+    private void finish(TicTacToeSearchTask task) {
+        activeGames.remove(task.getGameId());
+        if(task.error != null) {
+            failed++;
+        }
+        if(System.currentTimeMillis() > task.getDeadline() + LATE_MS) {
+            deadlineMisses++;
+        }
+        totalQuanta += task.quanta;
+        task.complete();
+        latencies[(int) (latencyCount++ % LATENCY_WINDOW)] = task.getLatencyMicros();
+        completed++;
+    }
+
+
+    /**
+     * Asks for a move
+     * @param gameId Which game is asking, which must not have a request in already
+     * @param board The position, copied so the game can go on
+     * @param maxDepth The deepest iteration to run
+     * @param moveTimeMs How long until the move is wanted
+     * @param listener Told when the move is ready, or null to use waitForMove on the task
+     * @return The request, or null when it was turned down: the game already has one in, too many
+     *         are waiting, the game is over, or the board has more than MAX_PLY squares
+     */
+    public synchronized TicTacToeSearchTask submit(int gameId, TicTacToeBoard board, int maxDepth, long moveTimeMs,
+                                                   Listener listener) {
+        if(shuttingDown || board.lastMoveWon() || board.isFull() || board.getNumSquares() > TicTacToeSearch.MAX_PLY
+                || activeGames.contains(gameId) || queue.size() + running >= maxTasks) {
+            rejected++;
+            return null;
+        }
+        TicTacToeSearchTask task = new TicTacToeSearchTask(gameId, board, maxDepth,
+            System.currentTimeMillis() + moveTimeMs, nextSequence++);
+        task.nodeBudget = quantumNodes;
+        task.listener = listener;
+        activeGames.add(gameId);
+        queue.add(task);
+        maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        notify();
+        return task;
+    }
+
+
+    /**
+     * Stops the workers once their current quanta are done. Searches still waiting are dropped.
+     */
+    public synchronized void shutdown() {
+        shuttingDown = true;
+        notifyAll();
+    }
+
+
+    /**
+     * @return How many searches are waiting for a thread
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+
+    /**
+     * @return The most searches that were ever waiting for a thread at once
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+
+    /**
+     * @return How many moves were ready more than LATE_MS after their deadline
+     */
+    public synchronized long getDeadlineMisses() {
+        return deadlineMisses;
+    }
+
+
+    /**
+     * @return How many searches ended with an error instead of a move
+     */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+
+    /**
+     * @return How many times a listener threw
+     */
+    public synchronized long getListenerErrors() {
+        return listenerErrors;
+    }
+
+
+    /**
+     * @return How many quanta a move took on average
+     */
+    public synchronized double getAverageQuanta() {
+        return completed == 0 ? 0 : (double) totalQuanta / completed;
+    }
+
+
+    /**
+     * Move latency, from the request to the move being ready, over the latest moves
+     * @param percentile From 0 to 100, such as 99 for the p99
+     * @return The latency in microseconds, or 0 before any move is ready
+     */
+    public long getLatencyPercentile(double percentile) {
+        long[] window;
+        synchronized(this) {
+            window = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_WINDOW));
+        }
+        if(window.length == 0) {
+            return 0;
+        }
+        Arrays.sort(window);
+        int index = (int) Math.ceil(percentile / 100 * window.length) - 1;
+        return window[Math.max(0, Math.min(window.length - 1, index))];
+    }
+
+
+    /**
+     * Benchmark: many games playing themselves at once, see the class comment
+     * @param args The options
+     * @throws InterruptedException If interrupted while the games run
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int games = DEFAULT_GAMES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int width = 9;
+        int height = 9;
+        int piecesForWin = 5;
+        long moveTimeMs = DEFAULT_MOVE_TIME_MS;
+        int depth = DEFAULT_DEPTH;
+        long quantumNodes = DEFAULT_QUANTUM_NODES;
+        int maxTasks = DEFAULT_MAX_TASKS;
+        int seconds = DEFAULT_SECONDS;
+        boolean fifo = false;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--games")) {
+                    games = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--size")) {
+                    width = Integer.parseInt(args[++i]);
+                    height = Integer.parseInt(args[++i]);
+                    piecesForWin = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--movetime")) {
+                    moveTimeMs = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--depth")) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--quantum")) {
+                    quantumNodes = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--max-tasks")) {
+                    maxTasks = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--seconds")) {
+                    seconds = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--fifo")) {
+                    fifo = true;
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        if(width * height > TicTacToeSearch.MAX_PLY) {
+            System.out.println("Boards over " + TicTacToeSearch.MAX_PLY + " squares can not be searched");
+            return;
+        }
+
+        final TicTacToeSearchScheduler scheduler =
+            new TicTacToeSearchScheduler(threads, maxTasks, quantumNodes, DEFAULT_HASH_MB, fifo);
+        final TicTacToeBoard[] boards = new TicTacToeBoard[games];
+        final Random random = new Random();
+        //Games whose request was turned down, for the main thread to ask again
+        final ConcurrentLinkedQueue<Integer> retries = new ConcurrentLinkedQueue<Integer>();
+        final int maxDepth = depth;
+        final long moveTime = moveTimeMs;
+        Listener[] listener = new Listener[1];
+        listener[0] = task -> {
+            //Only this game's own request touches its board, one at a time
+            TicTacToeBoard board = boards[task.getGameId()];
+            if(task.getError() != null) {
+                //The game stops; the failure shows in the totals
+                return;
+            }
+            board.makeMove(task.getBestMove());
+            if(board.lastMoveWon() || board.isFull()) {
+                board.clear();
+                board.makeMove(board.randomEmptySquare(random));
+            }
+            if(scheduler.submit(task.getGameId(), board, maxDepth, moveTime, listener[0]) == null) {
+                retries.add(task.getGameId());
+            }
+        };
+
+        System.out.println("Playing " + games + " games of " + width + "x" + height + " k=" + piecesForWin
+            + " on " + threads + " threads, " + (fifo ? "each search run to the end in order"
+            : "searches run in quanta of " + quantumNodes + " nodes"));
+        for(int game = 0; game < games; game++) {
+            boards[game] = new TicTacToeBoard(width, height, piecesForWin);
+            boards[game].makeMove(boards[game].randomEmptySquare(random));
+            if(scheduler.submit(game, boards[game], maxDepth, moveTime, listener[0]) == null) {
+                retries.add(game);
+            }
+        }
+        long end = System.currentTimeMillis() + seconds * 1000L;
+        while(System.currentTimeMillis() < end) {
+            Thread.sleep(RETRY_MS);
+            for(int i = retries.size(); i > 0; i--) {
+                int game = retries.poll();
+                if(scheduler.submit(game, boards[game], maxDepth, moveTime, listener[0]) == null) {
+                    retries.add(game);
+                }
+            }
+        }
+        scheduler.shutdown();
+
+        System.out.printf("Moves: %d (%.0f/s), %.1f quanta per move%n", scheduler.getCompleted(),
+            scheduler.getCompleted() / (double) seconds, scheduler.getAverageQuanta());
+        System.out.printf("Latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+            scheduler.getLatencyPercentile(50) / 1000.0, scheduler.getLatencyPercentile(99) / 1000.0,
+            scheduler.getLatencyPercentile(100) / 1000.0);
+        System.out.println("Deadline misses: " + scheduler.getDeadlineMisses() + ", most waiting: "
+            + scheduler.getMaxQueueDepth() + ", turned down: " + scheduler.getRejected()
+            + ", failed: " + scheduler.getFailed());
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * One move request in a TicTacToeSearchScheduler: the position, how deep and how long it may
+ * be searched, and what the steps run on it so far have found. TicTacToeSearch.step reads the
+ * search state from here and writes it back after every step, which is what lets any thread
+ * pick the search up where the last one left it.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeSearchTask {
+
+    //The request
+    private final int gameId;
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final int candidateDistance;
+    private final TicTacToeWeights weights;
+    private final int[] moves;
+    final int depthLimit;
+    private final long deadline;
+    private final long submitNanos;
+    final long sequence;
+
+    //Search state carried from step to step, written by TicTacToeSearch.step
+    int completedDepth;
+    int bestScore;
+    final int[] pv = new int[TicTacToeSearch.MAX_PLY];
+    int pvLength;
+    int quanta;
+    //Whether the last step ran out of budget or time before its iteration was done
+    boolean cutShort;
+    private long nodes;
+
+    //Set by the scheduler
+    long nodeBudget;
+    TicTacToeSearchScheduler.Listener listener;
+    volatile RuntimeException error;
+    private volatile long latencyNanos = -1;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+
+    /**
+     * @param gameId Which game is asking
+     * @param board The position, whose moves are copied so the game can go on
+     * @param maxDepth The deepest iteration to run
+     * @param deadline When the move is wanted, in System.currentTimeMillis terms
+     * @param sequence The order the request came in
+     */
+    TicTacToeSearchTask(int gameId, TicTacToeBoard board, int maxDepth, long deadline, long sequence) {
+        this.gameId = gameId;
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+        this.piecesForWin = board.getPiecesForWin();
+        this.candidateDistance = board.getCandidateDistance();
+        this.weights = board.getEvaluator().getWeights();
+        this.moves = new int[board.getMoveCount()];
+        for(int i = 0; i < moves.length; i++) {
+            moves[i] = board.getMove(i);
+        }
+        int emptySquares = board.getNumSquares() - board.getMoveCount();
+        this.depthLimit = Math.min(Math.min(maxDepth, emptySquares), TicTacToeSearch.MAX_PLY - 1);
+        this.deadline = deadline;
+        this.submitNanos = System.nanoTime();
+        this.sequence = sequence;
+    }
+
+
+    /**
+     * Keeps what a step leaves for the next one
+     * @param line The best line so far
+     * @param length How long the line is
+     * @param score The score of the deepest finished iteration
+     * @param depth How deep that iteration went
+     * @param stepNodes How many nodes the step visited
+     */
+    void finishStep(int[] line, int length, int score, int depth, long stepNodes) {
+        if(line != pv) {
+            System.arraycopy(line, 0, pv, 0, length);
+        }
+        pvLength = length;
+        bestScore = score;
+        completedDepth = depth;
+        nodes += stepNodes;
+    }
+
+
+    //Marks the move as ready and wakes anyone waiting for it
+    void complete() {
+        latencyNanos = System.nanoTime() - submitNanos;
+        done.countDown();
+    }
+
+
+    /**
+     * Waits for the move
+     * @param timeoutMs The longest to wait
+     * @return Whether the move is ready
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean waitForMove(long timeoutMs) throws InterruptedException {
+        return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+
+    /**
+     * @return What stopped the search, or null when it ended normally
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+
+    /**
+     * @return The best move found, or NO_MOVE before the first step
+     */
+    public int getBestMove() {
+        return pvLength > 0 ? pv[0] : TicTacToeBoard.NO_MOVE;
+    }
+
+
+    public int getBestScore() {
+        return bestScore;
+    }
+
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+
+    public int getQuanta() {
+        return quanta;
+    }
+
+
+    public long getNodes() {
+        return nodes;
+    }
+
+
+    public int getGameId() {
+        return gameId;
+    }
+
+
+    /**
+     * Puts the position on a board, reusing the board when it is the right size
+     * @param board A board to reuse, or null
+     * @return The board at the position, the one given or a new one
+     */
+    TicTacToeBoard setUpBoard(TicTacToeBoard board) {
+        if(board == null || board.getWidth() != width || board.getHeight() != height
+                || board.getPiecesForWin() != piecesForWin) {
+            board = new TicTacToeBoard(width, height, piecesForWin);
+        }
+        board.clear();
+        if(board.getCandidateDistance() != candidateDistance) {
+            board.setCandidateDistance(candidateDistance);
+        }
+        if(board.getEvaluator().getWeights() != weights) {
+            board.getEvaluator().setWeights(weights);
+        }
+        for(int i = 0; i < moves.length; i++) {
+            board.makeMove(moves[i]);
+        }
+        return board;
+    }
+
+
+    /**
+     * @return A new board at the position
+     */
+    public TicTacToeBoard getBoard() {
+        return setUpBoard(null);
+    }
+
+
+    public int getNumSquares() {
+        return width * height;
+    }
+
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+
+    /**
+     * @return How long the move took from the request to being ready, in microseconds, or -1 if not ready
+     */
+    public long getLatencyMicros() {
+        long latency = latencyNanos;
+        return latency < 0 ? -1 : latency / 1000;
+    }
+}
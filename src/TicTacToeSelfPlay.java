@@ -0,0 +1,249 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Plays the engine against itself and writes every searched position to a TicTacToeTrainingData
+ * file, for TicTacToeTrainer to learn evaluation weights from.
+ *
+ * Usage: java TicTacToeSelfPlay file [--size m n k] [--games n] [--depth d] [--movetime ms]
+ *                               [--random-plies p] [--threads n] [--hash MB] [--weights file]
+ *                               [--seed s]
+ *
+ * Each game opens with a few random moves so that games differ, then both sides search every
+ * move. A position's record is its counts before the search, the score the search gave it and,
+ * once the game is over, who won. Each thread plays whole games on its own board, search and
+ * hash table, and hands a finished game's records to the file in one call, so the threads only
+ * meet once per game. Records are appended to the file if it already exists.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeSelfPlay {
+
+    //Constants
+    private final static int DEFAULT_GAMES = 1000;
+    private final static int DEFAULT_DEPTH = 4;
+    private final static int DEFAULT_RANDOM_PLIES = 2;
+    private final static int DEFAULT_HASH_MB = 4;
+    private final static long PROGRESS_INTERVAL_MS = 5000;
+    private final static String USAGE = "Usage: java TicTacToeSelfPlay file [--size m n k] [--games n] [--depth d]"
+        + " [--movetime ms] [--random-plies p] [--threads n] [--hash MB] [--weights file] [--seed s]";
+
+    //Settings
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final int maxDepth;
+    private final long moveTimeMs;
+    private final int randomPlies;
+    private final int hashMegabytes;
+    private final TicTacToeWeights weights;
+
+    //Shared between the threads
+    private final TicTacToeTrainingData data;
+    private final AtomicInteger gamesLeft = new AtomicInteger();
+    private final AtomicInteger gamesPlayed = new AtomicInteger();
+    private volatile IOException writeError;
+    private volatile RuntimeException playError;
+
+
+    /**
+     * Sets up self play
+     * @param data Where the records go
+     * @param maxDepth How deep to search each move
+     * @param moveTimeMs How long to search each move, or 0 for no time limit
+     * @param randomPlies How many random moves each game opens with
+     * @param hashMegabytes How big each thread's hash table is
+     * @param weights The weights both sides evaluate with, or null for the hand tuned ones
+     */
+    public TicTacToeSelfPlay(TicTacToeTrainingData data, int maxDepth, long moveTimeMs, int randomPlies,
+                             int hashMegabytes, TicTacToeWeights weights) {
+        this.data = data;
+        this.width = data.getWidth();
+        this.height = data.getHeight();
+        this.piecesForWin = data.getPiecesForWin();
+        this.maxDepth = maxDepth;
+        this.moveTimeMs = moveTimeMs;
+        this.randomPlies = randomPlies;
+        this.hashMegabytes = hashMegabytes;
+        this.weights = weights;
+    }
+
+
+    //Plays games from the command line
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File file;
+        int width = 3;
+        int height = 3;
+        int piecesForWin = 3;
+        int games = DEFAULT_GAMES;
+        int maxDepth = DEFAULT_DEPTH;
+        long moveTimeMs = 0;
+        int randomPlies = DEFAULT_RANDOM_PLIES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hashMegabytes = DEFAULT_HASH_MB;
+        File weightsFile = null;
+        long seed = System.nanoTime();
+        try {
+            file = new File(args[0]);
+            for(int i = 1; i < args.length; i++) {
+                if(args[i].equals("--size")) {
+                    width = Integer.parseInt(args[++i]);
+                    height = Integer.parseInt(args[++i]);
+                    piecesForWin = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--games")) {
+                    games = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--depth")) {
+                    maxDepth = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--movetime")) {
+                    moveTimeMs = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--random-plies")) {
+                    randomPlies = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--hash")) {
+                    hashMegabytes = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--weights")) {
+                    weightsFile = new File(args[++i]);
+                } else if(args[i].equals("--seed")) {
+                    seed = Long.parseLong(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        if(width * height > TicTacToeSearch.MAX_PLY) {
+            System.out.println("Boards over " + TicTacToeSearch.MAX_PLY + " squares can not be searched");
+            return;
+        }
+        TicTacToeWeights weights = null;
+        if(weightsFile != null) {
+            weights = TicTacToeWeights.load(weightsFile);
+            if(!weights.matches(new TicTacToeBoard(width, height, piecesForWin))) {
+                System.out.println(weightsFile + " is for another board size");
+                return;
+            }
+        }
+        try(TicTacToeTrainingData data = TicTacToeTrainingData.openForWriting(file, width, height, piecesForWin)) {
+            long recordsBefore = data.getRecordCount();
+            long start = System.currentTimeMillis();
+            TicTacToeSelfPlay selfPlay = new TicTacToeSelfPlay(data, maxDepth, moveTimeMs, randomPlies,
+                hashMegabytes, weights);
+            selfPlay.run(games, threads, seed);
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            long records = data.getRecordCount() - recordsBefore;
+            System.out.println(selfPlay.gamesPlayed.get() + " games, " + records + " records in " + elapsed + " ms ("
+                + records * 1000 / elapsed + " records/s), " + data.getRecordCount() + " in " + file);
+        }
+    }
+
+
+    /**
+     * Plays games on several threads until enough have been played
+     * @param games How many games to play
+     * @param threads How many threads play at once
+     * @param seed Where the random openings come from
+     * @throws IOException If the records can not be written
+     * @throws InterruptedException If interrupted while waiting for the threads
+     * @throws RuntimeException What a player thread threw, after the other threads have stopped
+     */
+    public void run(int games, int threads, long seed) throws IOException, InterruptedException {
+        gamesLeft.set(games);
+        Thread[] players = new Thread[Math.max(1, threads)];
+        for(int i = 0; i < players.length; i++) {
+            final Random random = new Random(seed + i);
+            players[i] = new Thread(() -> playGames(random), "selfplay-" + i);
+            players[i].start();
+        }
+        long lastProgress = System.currentTimeMillis();
+        for(int i = 0; i < players.length; i++) {
+            while(players[i].isAlive()) {
+                players[i].join(PROGRESS_INTERVAL_MS);
+                if(System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL_MS) {
+                    lastProgress = System.currentTimeMillis();
+                    System.out.println("info games " + gamesPlayed.get() + " records " + data.getRecordCount());
+                }
+            }
+        }
+        if(writeError != null) {
+            throw writeError;
+        }
+        if(playError != null) {
+            throw playError;
+        }
+    }
+
+
+    /**
+     * Plays games on this thread until none are left to play
+     * @param random Where the random openings come from
+     */
+    private void playGames(Random random) {
+        TicTacToeBoard board = new TicTacToeBoard(width, height, piecesForWin);
+        if(weights != null) {
+            board.getEvaluator().setWeights(weights);
+        }
+        TicTacToeSearch search = new TicTacToeSearch();
+        search.setHashTable(new TicTacToeHashTable(hashMegabytes));
+        int numSquares = board.getNumSquares();
+        int featureCount = data.getFeatureCount();
+        int[] features = new int[numSquares * featureCount];
+        int[] scores = new int[numSquares];
+        int[] plies = new int[numSquares];
+        int[] sides = new int[numSquares];
+        int[] outcomes = new int[numSquares];
+        int[] buffer = new int[featureCount];
+
+        try {
+            while(writeError == null && playError == null && gamesLeft.getAndDecrement() > 0) {
+                board.clear();
+                while(board.getMoveCount() < randomPlies && !board.lastMoveWon() && !board.isFull()) {
+                    board.makeMove(board.randomEmptySquare(random));
+                }
+                int count = 0;
+                while(!board.lastMoveWon() && !board.isFull()) {
+                    TicTacToeTrainingData.readFeatures(board, buffer);
+                    System.arraycopy(buffer, 0, features, count * featureCount, featureCount);
+                    search.clearStop();
+                    int move = search.search(board, maxDepth, moveTimeMs, null);
+                    scores[count] = search.getBestScore();
+                    plies[count] = board.getMoveCount();
+                    sides[count] = board.getSideToMove();
+                    count++;
+                    board.makeMove(move);
+                }
+
+                //The side that moved last won, unless the board filled up first
+                int winner = board.lastMoveWon() ? 3 - board.getSideToMove() : TicTacToeBoard.EMPTY;
+                for(int i = 0; i < count; i++) {
+                    outcomes[i] = winner == TicTacToeBoard.EMPTY ? 0 : (sides[i] == winner ? 1 : -1);
+                }
+                try {
+                    data.append(features, scores, plies, outcomes, count);
+                } catch(IOException e) {
+                    writeError = e;
+                }
+                gamesPlayed.incrementAndGet();
+            }
+        } catch(RuntimeException e) {
+            //Kept for run to throw, and the other threads stop before their next game
+            synchronized(this) {
+                if(playError == null) {
+                    playError = e;
+                }
+            }
+        }
+    }
+}
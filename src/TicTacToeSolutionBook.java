@@ -0,0 +1,165 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Solved positions for one board size, saved to a file, so that the engine can play them
+ * perfectly without searching. Each position is stored by its hash with its value for
+ * the side to move.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeSolutionBook {
+
+    //Constants
+    public final static int LOSS = -1;
+    public final static int DRAW = 0;
+    public final static int WIN = 1;
+    public final static int UNKNOWN = 2;
+    private final static int FILE_MAGIC = 0x54545342;
+
+    //Book state
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final HashMap<Long, Byte> values = new HashMap<Long, Byte>();
+
+
+    /**
+     * Creates an empty book
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeSolutionBook(int width, int height, int piecesForWin) {
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+    }
+
+
+    /**
+     * Reads a book back from a file
+     * @param file The file written by save
+     * @return The book
+     * @throws IOException If the file can not be read or is not a book
+     */
+    public static TicTacToeSolutionBook load(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != FILE_MAGIC) {
+                throw new IOException(file + " is not a solution book");
+            }
+            TicTacToeSolutionBook book = new TicTacToeSolutionBook(in.readInt(), in.readInt(), in.readInt());
+            int count = in.readInt();
+            for(int i = 0; i < count; i++) {
+                long hash = in.readLong();
+                book.values.put(hash, in.readByte());
+            }
+            return book;
+        }
+    }
+
+
+    /**
+     * Writes the book to a file, first to a temporary file so a crash never leaves half a book
+     * @param file Where to write
+     * @throws IOException If the file can not be written
+     */
+    public synchronized void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(piecesForWin);
+            out.writeInt(values.size());
+            for(Long hash : values.keySet()) {
+                out.writeLong(hash);
+                out.writeByte(values.get(hash));
+            }
+        }
+        if(!temp.renameTo(file)) {
+            file.delete();
+            if(!temp.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+
+    /**
+     * @param board A board
+     * @return Whether the book was solved for boards of that size
+     */
+    public boolean matches(TicTacToeBoard board) {
+        return matches(board.getWidth(), board.getHeight(), board.getPiecesForWin());
+    }
+
+
+    /**
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @return Whether the book was solved for boards of that size
+     */
+    public boolean matches(int width, int height, int piecesForWin) {
+        return width == this.width && height == this.height && piecesForWin == this.piecesForWin;
+    }
+
+
+    /**
+     * @param board A gravity board
+     * @return Whether the book was solved for gravity boards of that size
+     */
+    public boolean matches(TicTacToeGravityBoard board) {
+        return matches(board.getWidth(), board.getHeight(), board.getPiecesForWin());
+    }
+
+
+    /**
+     * @param hash The hash of a position
+     * @return WIN, DRAW or LOSS for the side to move, or UNKNOWN if it is not in the book
+     */
+    public synchronized int get(long hash) {
+        Byte value = values.get(hash);
+        if(value == null) {
+            return UNKNOWN;
+        }
+        return value;
+    }
+
+
+    /**
+     * @param hash The hash of a position
+     * @param value WIN, DRAW or LOSS for the side to move
+     */
+    public synchronized void put(long hash, int value) {
+        values.put(hash, (byte) value);
+    }
+
+
+    /**
+     * @return The board size the book was solved for, as "m x n k=k"
+     */
+    public String getSizeName() {
+        return width + "x" + height + " k=" + piecesForWin;
+    }
+
+
+    public synchronized int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,461 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Solves a board with several TicTacToeSolverWorker processes, so that a solve can use more
+ * memory and cores than one JVM has.
+ *
+ * Usage: java TicTacToeSolverCoordinator m n k [--split d] [--workers n] [--port p] [--memory MB]
+ *                                        [--book file] [--lease seconds]
+ *
+ * Every position d moves into the game is a work unit. Workers connect over a local socket and
+ * pull units one at a time, solve them with df-pn and send back the value. The values go into
+ * the solution book as they arrive, and once every unit is in, the positions above the split
+ * are filled in by minimax and the book is saved. A book from an earlier run is read first,
+ * so units it already has are not handed out again.
+ *
+ * A worker that disconnects gives its units back right away, and a unit held longer than the
+ * lease is handed to the next worker that asks while the first one keeps going. Whichever
+ * result comes in first is kept. With --workers the coordinator starts that many worker
+ * processes on this machine itself, otherwise start them with the port it prints.
+ *
+ * Worker protocol, one line each way: the coordinator starts with "size m n k", then the worker
+ * sends "next" and gets "unit id moves..", "wait ms" or "done", and reports "result id value",
+ * with the value 1, 0 or -1 for the side to move in the unit.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeSolverCoordinator {
+
+    //Constants
+    private final static int DEFAULT_SPLIT_DEPTH = 2;
+    private final static int DEFAULT_WORKER_MEMORY_MB = 256;
+    private final static long DEFAULT_LEASE_MS = 10 * 60 * 1000;
+    public final static long WAIT_MS = 500;
+    private final static long CHECKPOINT_INTERVAL_MS = 60000;
+    private final static long WORKER_EXIT_MS = 5000;
+    private final static String USAGE = "Usage: java TicTacToeSolverCoordinator m n k [--split d] [--workers n]"
+        + " [--port p] [--memory MB] [--book file] [--lease seconds]";
+
+    /**
+     * One position at the split depth, and who is solving it
+     */
+    private static class Unit {
+        final int id;
+        final int[] moves;
+        final long hash;
+        int value = TicTacToeSolutionBook.UNKNOWN;
+        int worker = -1;
+        long leaseStart;
+        int attempts;
+
+        Unit(int id, int[] moves, long hash) {
+            this.id = id;
+            this.moves = moves;
+            this.hash = hash;
+        }
+    }
+
+    //Settings
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final int splitDepth;
+    private final long leaseMs;
+    private final TicTacToeSolutionBook book;
+    private final File bookFile;
+
+    //Work, guarded by this
+    private final ArrayList<Unit> units = new ArrayList<Unit>();
+    private final ArrayDeque<Unit> pending = new ArrayDeque<Unit>();
+    private int remaining;
+    private int nextWorkerId;
+
+
+    /**
+     * Creates a coordinator
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @param splitDepth How many moves into the game the work units are
+     * @param leaseMs How long a worker may hold a unit before it is handed out again
+     * @param book Where results go, may already hold some
+     * @param bookFile Where the book is saved
+     */
+    public TicTacToeSolverCoordinator(int width, int height, int piecesForWin, int splitDepth, long leaseMs,
+                                      TicTacToeSolutionBook book, File bookFile) {
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+        this.splitDepth = splitDepth;
+        this.leaseMs = leaseMs;
+        this.book = book;
+        this.bookFile = bookFile;
+    }
+
+
+    //Solves a board size from the command line
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int width;
+        int height;
+        int piecesForWin;
+        int splitDepth = DEFAULT_SPLIT_DEPTH;
+        int workers = 0;
+        int port = 0;
+        int memory = DEFAULT_WORKER_MEMORY_MB;
+        long leaseMs = DEFAULT_LEASE_MS;
+        File bookFile;
+        try {
+            width = Integer.parseInt(args[0]);
+            height = Integer.parseInt(args[1]);
+            piecesForWin = Integer.parseInt(args[2]);
+            bookFile = new File("solve-" + width + "x" + height + "-" + piecesForWin + ".book");
+            for(int i = 3; i < args.length; i++) {
+                if(args[i].equals("--split")) {
+                    splitDepth = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--workers")) {
+                    workers = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--port")) {
+                    port = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--memory")) {
+                    memory = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--book")) {
+                    bookFile = new File(args[++i]);
+                } else if(args[i].equals("--lease")) {
+                    leaseMs = Long.parseLong(args[++i]) * 1000;
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        TicTacToeSolutionBook book = new TicTacToeSolutionBook(width, height, piecesForWin);
+        if(bookFile.exists()) {
+            book = TicTacToeSolutionBook.load(bookFile);
+            if(!book.matches(width, height, piecesForWin)) {
+                System.out.println(bookFile + " holds a " + book.getSizeName() + " book, not " + width + "x" + height
+                    + " k=" + piecesForWin);
+                return;
+            }
+            System.out.println("Resuming with " + book.size() + " solved positions from " + bookFile);
+        }
+        TicTacToeSolverCoordinator coordinator =
+            new TicTacToeSolverCoordinator(width, height, piecesForWin, splitDepth, leaseMs, book, bookFile);
+        int value = coordinator.run(port, workers, memory);
+        System.out.println("Empty " + width + "x" + height + " k=" + piecesForWin + ": "
+            + TicTacToeProofSolver.valueToString(value) + " for the first player");
+    }
+
+
+    /**
+     * Hands out every unit, waits for all of them, and fills in the book
+     * @param port The port to listen on, or 0 for any free one
+     * @param workers How many worker processes to start on this machine
+     * @param workerMemory How much memory each started worker gives its proof table, in MB
+     * @return WIN, DRAW or LOSS for the first player
+     * @throws IOException If the socket can not be opened or the book can not be saved
+     * @throws InterruptedException If interrupted while waiting for the workers
+     */
+    public int run(int port, int workers, int workerMemory) throws IOException, InterruptedException {
+        TicTacToeBoard board = newBoard();
+        HashMap<Long, Unit> seen = new HashMap<Long, Unit>();
+        split(board, new int[splitDepth], 0, seen);
+        System.out.println(units.size() + " work units at depth " + splitDepth + ", " + remaining + " left to solve");
+
+        if(remaining > 0) {
+            try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+                System.out.println("Listening for workers on port " + server.getLocalPort());
+                Thread acceptor = new Thread(() -> acceptWorkers(server), "accept");
+                acceptor.setDaemon(true);
+                acceptor.start();
+                Process[] processes = startWorkers(workers, server.getLocalPort(), workerMemory);
+                waitForUnits();
+                for(int i = 0; i < processes.length; i++) {
+                    //Each worker is told "done" on its next request, so give them a moment to leave
+                    if(!processes[i].waitFor(WORKER_EXIT_MS, java.util.concurrent.TimeUnit.MILLISECONDS)) {
+                        processes[i].destroy();
+                    }
+                }
+            }
+        }
+
+        board.clear();
+        int value = merge(board, 0);
+        book.save(bookFile);
+        System.out.println("Saved " + book.size() + " solved positions to " + bookFile);
+        return value;
+    }
+
+
+    /**
+     * Walks every move sequence down to the split depth and makes a unit for each new position
+     * there. Positions that are over before it need no unit.
+     * @param board The board, at the current position
+     * @param moves The moves played so far
+     * @param ply How many moves have been played
+     * @param seen The units made so far by hash, so transpositions share one
+     */
+    private void split(TicTacToeBoard board, int[] moves, int ply, HashMap<Long, Unit> seen) {
+        if(board.lastMoveWon() || board.isFull()) {
+            return;
+        }
+        if(ply == splitDepth) {
+            long hash = board.getHash();
+            if(seen.containsKey(hash)) {
+                return;
+            }
+            Unit unit = new Unit(units.size(), moves.clone(), hash);
+            unit.value = book.get(hash);
+            seen.put(hash, unit);
+            units.add(unit);
+            if(unit.value == TicTacToeSolutionBook.UNKNOWN) {
+                pending.add(unit);
+                remaining++;
+            }
+            return;
+        }
+        for(int square = 0; square < board.getNumSquares(); square++) {
+            if(board.isEmpty(square)) {
+                moves[ply] = square;
+                board.makeMove(square);
+                split(board, moves, ply + 1, seen);
+                board.unmakeMove();
+            }
+        }
+    }
+
+
+    /**
+     * Fills in the positions above the split from their children, by minimax, and adds them
+     * to the book
+     * @param board The board, at the current position
+     * @param ply How many moves have been played
+     * @return WIN, DRAW or LOSS for the side to move
+     */
+    private int merge(TicTacToeBoard board, int ply) {
+        if(board.lastMoveWon()) {
+            return TicTacToeSolutionBook.LOSS;
+        }
+        if(board.isFull()) {
+            return TicTacToeSolutionBook.DRAW;
+        }
+        int known = book.get(board.getHash());
+        if(known != TicTacToeSolutionBook.UNKNOWN) {
+            return known;
+        }
+        if(ply >= splitDepth) {
+            throw new IllegalStateException("Unit " + board.getHash() + " was never solved");
+        }
+        int best = TicTacToeSolutionBook.LOSS;
+        for(int square = 0; square < board.getNumSquares() && best != TicTacToeSolutionBook.WIN; square++) {
+            if(board.isEmpty(square)) {
+                board.makeMove(square);
+                best = Math.max(best, -merge(board, ply + 1));
+                board.unmakeMove();
+            }
+        }
+        book.put(board.getHash(), best);
+        return best;
+    }
+
+
+    /**
+     * Starts worker processes on this machine, with the same java and class path as this one
+     * @param count How many to start
+     * @param port The port to connect to
+     * @param memory How much memory each gives its proof table, in MB
+     * @return The processes
+     * @throws IOException If a process can not be started
+     */
+    private static Process[] startWorkers(int count, int port, int memory) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process[] processes = new Process[count];
+        for(int i = 0; i < count; i++) {
+            processes[i] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "TicTacToeSolverWorker", "127.0.0.1", String.valueOf(port), "--memory", String.valueOf(memory))
+                .inheritIO()
+                .start();
+        }
+        return processes;
+    }
+
+
+    /**
+     * Waits until every unit has a value, saving the book every so often
+     * @throws IOException If the book can not be saved
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private void waitForUnits() throws IOException, InterruptedException {
+        long lastSave = System.currentTimeMillis();
+        while(true) {
+            synchronized(this) {
+                if(remaining == 0) {
+                    return;
+                }
+                wait(WAIT_MS);
+            }
+            if(System.currentTimeMillis() - lastSave >= CHECKPOINT_INTERVAL_MS) {
+                lastSave = System.currentTimeMillis();
+                book.save(bookFile);
+            }
+        }
+    }
+
+
+    /**
+     * Accepts workers until the socket closes, each on its own thread
+     * @param server The listening socket
+     */
+    private void acceptWorkers(ServerSocket server) {
+        while(true) {
+            try {
+                final Socket socket = server.accept();
+                final int workerId;
+                synchronized(this) {
+                    workerId = nextWorkerId++;
+                }
+                Thread thread = new Thread(() -> serveWorker(socket, workerId), "worker-" + workerId);
+                thread.setDaemon(true);
+                thread.start();
+            } catch(IOException e) {
+                //The socket was closed because the solve is finished
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Answers one worker's requests until it leaves, then gives back whatever it still held
+     * @param socket The worker's connection
+     * @param workerId A number for the worker
+     */
+    private void serveWorker(Socket socket, int workerId) {
+        System.out.println("Worker " + workerId + " connected");
+        try(Socket s = socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            PrintWriter out = new PrintWriter(s.getOutputStream(), true)) {
+            out.println("size " + width + " " + height + " " + piecesForWin);
+            String line;
+            while((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                if(words[0].equals("next")) {
+                    out.println(nextCommand(workerId));
+                } else if(words[0].equals("result") && words.length == 3) {
+                    finish(workerId, Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+                }
+            }
+        } catch(IOException | RuntimeException e) {
+            System.out.println("Worker " + workerId + " failed: " + e.getMessage());
+        } finally {
+            release(workerId);
+        }
+    }
+
+
+    /**
+     * Picks the next unit for a worker: a pending one, or else one whose lease ran out
+     * @param workerId The worker asking
+     * @return The line to send back
+     */
+    private synchronized String nextCommand(int workerId) {
+        if(remaining == 0) {
+            return "done";
+        }
+        Unit unit = pending.poll();
+        long now = System.currentTimeMillis();
+        if(unit == null) {
+            for(int i = 0; i < units.size() && unit == null; i++) {
+                Unit held = units.get(i);
+                if(held.value == TicTacToeSolutionBook.UNKNOWN && held.worker != workerId
+                        && now - held.leaseStart >= leaseMs) {
+                    System.out.println("Unit " + held.id + " held by worker " + held.worker
+                        + " too long, handing it to worker " + workerId);
+                    unit = held;
+                }
+            }
+        }
+        if(unit == null) {
+            return "wait " + WAIT_MS;
+        }
+        unit.worker = workerId;
+        unit.leaseStart = now;
+        unit.attempts++;
+        StringBuilder command = new StringBuilder("unit ").append(unit.id);
+        TicTacToeBoard board = newBoard();
+        for(int i = 0; i < unit.moves.length; i++) {
+            command.append(' ').append(board.moveToString(unit.moves[i]));
+        }
+        return command.toString();
+    }
+
+
+    /**
+     * Records a unit's value, unless another worker already sent it
+     * @param workerId The worker that solved it
+     * @param unitId The unit
+     * @param value WIN, DRAW or LOSS for the side to move in the unit
+     */
+    private synchronized void finish(int workerId, int unitId, int value) {
+        Unit unit = units.get(unitId);
+        if(unit.value != TicTacToeSolutionBook.UNKNOWN) {
+            return;
+        }
+        if(value < TicTacToeSolutionBook.LOSS || value > TicTacToeSolutionBook.WIN) {
+            throw new IllegalArgumentException("Bad value " + value + " for unit " + unitId);
+        }
+        unit.value = value;
+        book.put(unit.hash, value);
+        remaining--;
+        System.out.println("Unit " + unitId + ": " + TicTacToeProofSolver.valueToString(value) + " from worker "
+            + workerId + ", " + remaining + " left");
+        if(remaining == 0) {
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Puts the units a worker still held back at the front of the queue
+     * @param workerId The worker that left
+     */
+    private synchronized void release(int workerId) {
+        for(int i = 0; i < units.size(); i++) {
+            Unit unit = units.get(i);
+            if(unit.worker == workerId && unit.value == TicTacToeSolutionBook.UNKNOWN) {
+                unit.worker = -1;
+                if(!pending.contains(unit)) {
+                    pending.addFirst(unit);
+                }
+                System.out.println("Worker " + workerId + " left, unit " + unit.id + " goes back in the queue");
+            }
+        }
+    }
+
+
+    //Makes a board for this size that lists every empty square as a move
+    private TicTacToeBoard newBoard() {
+        TicTacToeBoard board = new TicTacToeBoard(width, height, piecesForWin);
+        board.setCandidateDistance(0);
+        return board;
+    }
+}
@@ -0,0 +1,91 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * One worker for TicTacToeSolverCoordinator: connects to it, pulls work units until it is told
+ * there are none left, solves each with TicTacToeProofSolver and sends back the value.
+ *
+ * Usage: java TicTacToeSolverWorker host port [--memory MB]
+ *
+ * The proof table is kept from one unit to the next, since units share much of their subtrees.
+ * Killing a worker loses nothing but its current unit, which the coordinator hands to another.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeSolverWorker {
+
+    //Constants
+    private final static int DEFAULT_MEMORY_MB = 256;
+    private final static String USAGE = "Usage: java TicTacToeSolverWorker host port [--memory MB]";
+
+
+    //Works for a coordinator from the command line
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host;
+        int port;
+        int memory = DEFAULT_MEMORY_MB;
+        try {
+            host = args[0];
+            port = Integer.parseInt(args[1]);
+            for(int i = 2; i < args.length; i++) {
+                if(args[i].equals("--memory")) {
+                    memory = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        run(host, port, memory);
+    }
+
+
+    /**
+     * Solves units for a coordinator until it has no more
+     * @param host Where the coordinator is
+     * @param port The port it listens on
+     * @param memory How much memory the proof table gets, in MB
+     * @throws IOException If the connection fails
+     * @throws InterruptedException If interrupted while waiting for work
+     */
+    public static void run(String host, int port, int memory) throws IOException, InterruptedException {
+        try(Socket socket = new Socket(host, port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+            String[] size = in.readLine().split(" ");
+            TicTacToeBoard board = new TicTacToeBoard(Integer.parseInt(size[1]), Integer.parseInt(size[2]),
+                Integer.parseInt(size[3]));
+            board.setCandidateDistance(0);
+            TicTacToeProofSolver solver = new TicTacToeProofSolver(board, new TicTacToeProofTable(memory));
+            while(true) {
+                out.println("next");
+                String line = in.readLine();
+                if(line == null || line.equals("done")) {
+                    return;
+                }
+                String[] words = line.split(" ");
+                if(words[0].equals("wait")) {
+                    Thread.sleep(Long.parseLong(words[1]));
+                } else if(words[0].equals("unit")) {
+                    board.clear();
+                    for(int i = 2; i < words.length; i++) {
+                        board.makeMove(board.parseMove(words[i]));
+                    }
+                    out.println("result " + words[1] + " " + solver.solve());
+                }
+            }
+        }
+    }
+}
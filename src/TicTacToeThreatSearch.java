@@ -0,0 +1,328 @@
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Threat-space search: looks for a forced win made only of threats, which regular search
+ * misses when the win is deeper than its horizon.
+ *
+ * The attacker only plays moves that make a four (k - 1 in a window the defender is not in)
+ * or an open three (k - 2 in the middle of a frame with empty ends). The defender only answers
+ * on the squares that stop those threats, or with a four of its own. Because both sides have so
+ * few moves to try, wins dozens of plies deep are found in milliseconds.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeThreatSearch {
+
+    //Constants
+    public final static int DEFAULT_MAX_THREATS = 12;
+    public final static long DEFAULT_NODE_LIMIT = 20000;
+    private final static int MAX_DEPTH = 2 * TicTacToeSearch.MAX_PLY;
+    //Returned by findDefenses when the attacker already has two different winning squares
+    private final static int UNSTOPPABLE = -1;
+
+    //Search state
+    private final TicTacToeBoard board;
+    private final TicTacToeEvaluator evaluator;
+    private final int piecesForWin;
+    private final int[][] candidates;
+    private final int[][] defenses;
+    private final int[][] pv;
+    private final int[] pvLength;
+    private final int[] marks;
+    private int markStamp;
+    private long nodes;
+    private long nodeLimit;
+
+
+    /**
+     * Creates a threat-space search over a board
+     * @param board The board to search, changed during a search but left as it was after
+     */
+    public TicTacToeThreatSearch(TicTacToeBoard board) {
+        this.board = board;
+        this.evaluator = board.getEvaluator();
+        this.piecesForWin = board.getPiecesForWin();
+        int numSquares = board.getNumSquares();
+        int maxLine = 2 * (numSquares + 1);
+        candidates = new int[MAX_DEPTH][numSquares];
+        defenses = new int[MAX_DEPTH][numSquares];
+        pv = new int[MAX_DEPTH][maxLine];
+        pvLength = new int[MAX_DEPTH];
+        marks = new int[numSquares];
+    }
+
+
+    /**
+     * Looks for a forced win for the side to move. The first win found is returned, which is not
+     * always the shortest, so TicTacToeSearch goes on to look for a quicker one.
+     * @param maxThreats The most attacking moves in a row to try
+     * @param nodeLimit How many positions to look at before giving up
+     * @return The winning line, attacker and defender moves in turn, or null if none was found
+     */
+    public int[] findWin(int maxThreats, long nodeLimit) {
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        if(board.lastMoveWon() || piecesForWin < 2) {
+            return null;
+        }
+        int attacker = board.getSideToMove();
+        if(!attack(attacker, Math.min(maxThreats, MAX_DEPTH / 2 - 1), 0)) {
+            return null;
+        }
+        int[] line = new int[pvLength[0]];
+        System.arraycopy(pv[0], 0, line, 0, line.length);
+        return line;
+    }
+
+
+    /**
+     * Tries every threat for the attacker
+     * @param attacker The side looking for a win, always the side to move here
+     * @param threatsLeft How many more attacking moves may be played
+     * @param ply How deep into the threat sequence this is
+     * @return Whether a forced win was found, with its line in pv[ply]
+     */
+    private boolean attack(int attacker, int threatsLeft, int ply) {
+        nodes++;
+        pvLength[ply] = 0;
+        int defender = 3 - attacker;
+
+        //A win on the spot beats any threat
+        int winningSquare = findFourSquare(attacker, TicTacToeBoard.NO_MOVE);
+        if(winningSquare != TicTacToeBoard.NO_MOVE) {
+            pv[ply][0] = winningSquare;
+            pvLength[ply] = 1;
+            return true;
+        }
+        if(threatsLeft == 0 || nodes > nodeLimit) {
+            return false;
+        }
+
+        //If the defender has a four, blocking it is the only move, and it must also be a threat
+        int[] moves = candidates[ply];
+        int count;
+        int defenderWin = findFourSquare(defender, TicTacToeBoard.NO_MOVE);
+        if(defenderWin != TicTacToeBoard.NO_MOVE) {
+            if(findFourSquare(defender, defenderWin) != TicTacToeBoard.NO_MOVE) {
+                return false;
+            }
+            moves[0] = defenderWin;
+            count = 1;
+        } else {
+            count = findThreatMoves(attacker, moves);
+        }
+
+        for(int i = 0; i < count; i++) {
+            int move = moves[i];
+            board.makeMove(move);
+            boolean won = defend(attacker, threatsLeft - 1, ply + 1);
+            board.unmakeMove();
+            if(won) {
+                pv[ply][0] = move;
+                System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                pvLength[ply] = pvLength[ply + 1] + 1;
+                return true;
+            }
+            if(nodes > nodeLimit) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Tries every defense against the attacker's threats
+     * @param attacker The side looking for a win, the defender is to move here
+     * @param threatsLeft How many more attacking moves may be played
+     * @param ply How deep into the threat sequence this is
+     * @return Whether every defense still loses, with the line of the first one in pv[ply]
+     */
+    private boolean defend(int attacker, int threatsLeft, int ply) {
+        nodes++;
+        pvLength[ply] = 0;
+        int defender = 3 - attacker;
+        //The defender wins first
+        if(findFourSquare(defender, TicTacToeBoard.NO_MOVE) != TicTacToeBoard.NO_MOVE) {
+            return false;
+        }
+
+        int[] moves = defenses[ply];
+        int count = findDefenses(attacker, moves);
+        if(count == UNSTOPPABLE) {
+            //Any block leaves the other winning square open
+            int block = findFourSquare(attacker, TicTacToeBoard.NO_MOVE);
+            int win = findFourSquare(attacker, block);
+            pv[ply][0] = block;
+            pv[ply][1] = win;
+            pvLength[ply] = 2;
+            return true;
+        }
+        if(count == 0) {
+            //The last attacking move did not threaten anything
+            return false;
+        }
+        for(int i = 0; i < count; i++) {
+            int move = moves[i];
+            board.makeMove(move);
+            boolean won = !board.lastMoveWon() && attack(attacker, threatsLeft, ply + 1);
+            board.unmakeMove();
+            if(!won) {
+                return false;
+            }
+            if(i == 0) {
+                pv[ply][0] = move;
+                System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                pvLength[ply] = pvLength[ply + 1] + 1;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Finds a square that completes k in a row for a side
+     * @param side The side to look for
+     * @param skip A square to ignore, to look for a second, different one
+     * @return The square, or NO_MOVE if there is none
+     */
+    private int findFourSquare(int side, int skip) {
+        if(evaluator.getRunCount(side, piecesForWin - 1) == 0) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        int other = 3 - side;
+        for(int window = 0; window < evaluator.getNumWindows(); window++) {
+            if(evaluator.getWindowPieces(side, window) == piecesForWin - 1
+                && evaluator.getWindowPieces(other, window) == 0) {
+                int square = emptySquareOf(evaluator.getWindowSquares(window));
+                if(square != skip) {
+                    return square;
+                }
+            }
+        }
+        return TicTacToeBoard.NO_MOVE;
+    }
+
+
+    /**
+     * Lists the moves that would make a four or an open three for the attacker
+     * @param attacker The side to move
+     * @param list Where the moves are written
+     * @return How many moves were written
+     */
+    private int findThreatMoves(int attacker, int[] list) {
+        int defender = 3 - attacker;
+        int count = 0;
+        markStamp++;
+        //Fours, listed first since they leave the defender a single answer
+        for(int window = 0; window < evaluator.getNumWindows(); window++) {
+            if(evaluator.getWindowPieces(defender, window) == 0
+                && evaluator.getWindowPieces(attacker, window) == piecesForWin - 2) {
+                count = addEmptySquares(evaluator.getWindowSquares(window), 0, piecesForWin, list, count);
+            }
+        }
+        //Open threes
+        if(piecesForWin >= 3) {
+            for(int frame = 0; frame < evaluator.getNumFrames(); frame++) {
+                if(evaluator.getFrameEndPieces(frame) == 0
+                    && evaluator.getFrameMiddlePieces(defender, frame) == 0
+                    && evaluator.getFrameMiddlePieces(attacker, frame) == piecesForWin - 3) {
+                    count = addEmptySquares(evaluator.getFrameSquares(frame), 1, piecesForWin, list, count);
+                }
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Lists the squares the defender can stop the attacker's threats on
+     * @param attacker The side that just moved
+     * @param list Where the moves are written
+     * @return How many moves were written, 0 if there is no threat, or UNSTOPPABLE
+     */
+    private int findDefenses(int attacker, int[] list) {
+        int defender = 3 - attacker;
+        int count = 0;
+        markStamp++;
+
+        //A four leaves exactly one answer, two different fours leave none
+        int block = findFourSquare(attacker, TicTacToeBoard.NO_MOVE);
+        if(block != TicTacToeBoard.NO_MOVE) {
+            if(findFourSquare(attacker, block) != TicTacToeBoard.NO_MOVE) {
+                return UNSTOPPABLE;
+            }
+            list[0] = block;
+            return 1;
+        }
+
+        //Every open three must be broken up, unless the defender can make a four first
+        if(piecesForWin < 3 || evaluator.getOpenRunCount(attacker, piecesForWin - 2) == 0) {
+            return 0;
+        }
+        for(int frame = 0; frame < evaluator.getNumFrames(); frame++) {
+            if(evaluator.getFrameEndPieces(frame) == 0
+                && evaluator.getFrameMiddlePieces(defender, frame) == 0
+                && evaluator.getFrameMiddlePieces(attacker, frame) == piecesForWin - 2) {
+                count = addEmptySquares(evaluator.getFrameSquares(frame), 0, piecesForWin + 1, list, count);
+            }
+        }
+        for(int window = 0; window < evaluator.getNumWindows(); window++) {
+            if(evaluator.getWindowPieces(attacker, window) == 0
+                && evaluator.getWindowPieces(defender, window) == piecesForWin - 2) {
+                count = addEmptySquares(evaluator.getWindowSquares(window), 0, piecesForWin, list, count);
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Adds the empty squares of part of a line to a list, skipping ones already in it
+     * @param line The squares of the line
+     * @param from The first index to look at
+     * @param to One past the last index to look at
+     * @param list The list to add to
+     * @param count How many moves are in the list
+     * @return How many moves are in the list now
+     */
+    private int addEmptySquares(int[] line, int from, int to, int[] list, int count) {
+        for(int i = from; i < to; i++) {
+            int square = line[i];
+            if(board.isEmpty(square) && marks[square] != markStamp) {
+                marks[square] = markStamp;
+                list[count++] = square;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * @param line The squares of a line
+     * @return The first empty square in it, or NO_MOVE
+     */
+    private int emptySquareOf(int[] line) {
+        for(int i = 0; i < line.length; i++) {
+            if(board.isEmpty(line[i])) {
+                return line[i];
+            }
+        }
+        return TicTacToeBoard.NO_MOVE;
+    }
+
+
+    public TicTacToeBoard getBoard() {
+        return board;
+    }
+
+
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,369 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Learns evaluation weights from TicTacToeSelfPlay records.
+ *
+ * Usage: java TicTacToeTrainer output data [data ..] [--from weights] [--lambda l] [--epochs e]
+ *                              [--batch b] [--rate r] [--seed s]
+ *
+ * The evaluation is linear: what a run or open run of each length is worth, counted for the
+ * side to move minus the same for the other side, plus a tempo bonus. It is turned into a
+ * chance of winning by sigmoid(eval / scale), where scale is first fitted so that the search
+ * scores in the records best predict how the games ended. Each position's target then mixes
+ * how its game ended, weighted by lambda, with what its search score says.
+ *
+ * Training is minibatch gradient descent on the cross entropy with Adam steps, starting from
+ * the hand tuned weights or --from. Every tenth record is held out to report how well the
+ * weights do on positions they were not trained on. The records are read straight from the
+ * memory mapped files every epoch, so they never have to fit in the heap.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeTrainer {
+
+    //Constants
+    private final static double DEFAULT_LAMBDA = 0.5;
+    private final static int DEFAULT_EPOCHS = 20;
+    private final static int DEFAULT_BATCH = 1024;
+    private final static double DEFAULT_RATE = 0.5;
+    private final static int HOLD_OUT_EVERY = 10;
+    private final static double BETA1 = 0.9;
+    private final static double BETA2 = 0.999;
+    private final static double EPSILON = 1e-8;
+    //Scales tried when fitting, 2^(i / 4) for i up to this
+    private final static int SCALE_STEPS = 64;
+    private final static String USAGE = "Usage: java TicTacToeTrainer output data [data ..] [--from weights]"
+        + " [--lambda l] [--epochs e] [--batch b] [--rate r] [--seed s]";
+
+    //Records from every file, numbered one after the other
+    private final TicTacToeTrainingData[] files;
+    private final long[] firstRecords;
+    private final long recordCount;
+    private final int pieceCounts;
+    private final double lambda;
+
+    //Fitted eval to win chance scale
+    private double scale;
+    //Run weights for 1 to k - 1 pieces, then open run weights, then tempo
+    private final double[] weights;
+    private final int[] features;
+    private final double[] inputs;
+
+
+    /**
+     * Sets up training over some record files
+     * @param files The files, all for the same board size
+     * @param start The weights to start from
+     * @param lambda How much of each target comes from the game's outcome, from 0 to 1
+     */
+    public TicTacToeTrainer(TicTacToeTrainingData[] files, TicTacToeWeights start, double lambda) {
+        this.files = files;
+        this.lambda = lambda;
+        this.pieceCounts = files[0].getPiecesForWin() - 1;
+        firstRecords = new long[files.length];
+        long total = 0;
+        for(int i = 0; i < files.length; i++) {
+            firstRecords[i] = total;
+            total += files[i].getRecordCount();
+        }
+        recordCount = total;
+        weights = new double[2 * pieceCounts + 1];
+        for(int pieces = 1; pieces <= pieceCounts; pieces++) {
+            weights[pieces - 1] = start.getRunWeight(pieces);
+            weights[pieceCounts + pieces - 1] = start.getOpenRunWeight(pieces);
+        }
+        weights[2 * pieceCounts] = start.getTempo();
+        features = new int[files[0].getFeatureCount()];
+        inputs = new double[weights.length];
+    }
+
+
+    //Trains weights from the command line
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.out.println(USAGE);
+            return;
+        }
+        File output = new File(args[0]);
+        ArrayList<File> dataFiles = new ArrayList<File>();
+        File from = null;
+        double lambda = DEFAULT_LAMBDA;
+        int epochs = DEFAULT_EPOCHS;
+        int batch = DEFAULT_BATCH;
+        double rate = DEFAULT_RATE;
+        long seed = 1;
+        try {
+            for(int i = 1; i < args.length; i++) {
+                if(args[i].equals("--from")) {
+                    from = new File(args[++i]);
+                } else if(args[i].equals("--lambda")) {
+                    lambda = Double.parseDouble(args[++i]);
+                } else if(args[i].equals("--epochs")) {
+                    epochs = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--batch")) {
+                    batch = Integer.parseInt(args[++i]);
+                } else if(args[i].equals("--rate")) {
+                    rate = Double.parseDouble(args[++i]);
+                } else if(args[i].equals("--seed")) {
+                    seed = Long.parseLong(args[++i]);
+                } else if(args[i].startsWith("--")) {
+                    throw new IllegalArgumentException(args[i]);
+                } else {
+                    dataFiles.add(new File(args[i]));
+                }
+            }
+        } catch(RuntimeException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        if(dataFiles.isEmpty()) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        TicTacToeTrainingData[] files = new TicTacToeTrainingData[dataFiles.size()];
+        try {
+            for(int i = 0; i < files.length; i++) {
+                files[i] = TicTacToeTrainingData.openForReading(dataFiles.get(i));
+                if(files[i].getWidth() != files[0].getWidth() || files[i].getHeight() != files[0].getHeight()
+                        || files[i].getPiecesForWin() != files[0].getPiecesForWin()) {
+                    System.out.println(dataFiles.get(i) + " is for another board size than " + dataFiles.get(0));
+                    return;
+                }
+            }
+            int width = files[0].getWidth();
+            int height = files[0].getHeight();
+            int piecesForWin = files[0].getPiecesForWin();
+            TicTacToeWeights start = from == null ? new TicTacToeWeights(width, height, piecesForWin)
+                : TicTacToeWeights.load(from);
+            if(!start.matches(new TicTacToeBoard(width, height, piecesForWin))) {
+                System.out.println(from + " is for another board size");
+                return;
+            }
+
+            TicTacToeTrainer trainer = new TicTacToeTrainer(files, start, lambda);
+            if(trainer.recordCount < HOLD_OUT_EVERY) {
+                System.out.println("Not enough records to train on");
+                return;
+            }
+            trainer.fitScale();
+            System.out.printf("%d records, scale %.1f, held out loss %.5f%n", trainer.recordCount, trainer.scale,
+                trainer.heldOutLoss());
+            for(int epoch = 1; epoch <= epochs; epoch++) {
+                trainer.train(batch, rate, new Random(seed + epoch));
+                System.out.printf("epoch %d: held out loss %.5f%n", epoch, trainer.heldOutLoss());
+            }
+            TicTacToeWeights trained = trainer.getWeights(width, height, piecesForWin);
+            trained.save(output);
+            System.out.print(trained);
+            System.out.println("Saved to " + output);
+        } finally {
+            for(int i = 0; i < files.length; i++) {
+                if(files[i] != null) {
+                    files[i].close();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Picks the scale at which sigmoid(search score / scale) best predicts the outcomes, using
+     * only scores that are not proven
+     * @throws IOException If the records can not be read
+     */
+    public void fitScale() throws IOException {
+        double bestLoss = Double.MAX_VALUE;
+        for(int i = 0; i <= SCALE_STEPS; i++) {
+            double tried = Math.pow(2, i / 4.0);
+            double loss = 0;
+            long count = 0;
+            for(long record = 0; record < recordCount; record++) {
+                int score = getScore(record);
+                if(!TicTacToeSearch.isProvenScore(score)) {
+                    loss += crossEntropy(sigmoid(score / tried), (getOutcome(record) + 1) / 2.0);
+                    count++;
+                }
+            }
+            if(count > 0 && loss / count < bestLoss) {
+                bestLoss = loss / count;
+                scale = tried;
+            }
+        }
+        if(bestLoss == Double.MAX_VALUE) {
+            //Every score was proven, so there is nothing to fit and any scale will do
+            scale = 1;
+        }
+    }
+
+
+    /**
+     * Runs one pass over the training records in a random order
+     * @param batch How many records each step averages over
+     * @param rate How far each step goes
+     * @param random Where the order comes from
+     * @throws IOException If the records can not be read
+     */
+    public void train(int batch, double rate, Random random) throws IOException {
+        int trainCount = (int) Math.min(Integer.MAX_VALUE, recordCount - (recordCount + HOLD_OUT_EVERY - 1)
+            / HOLD_OUT_EVERY);
+        int[] order = new int[trainCount];
+        int next = 0;
+        for(long record = 0; record < recordCount && next < trainCount; record++) {
+            if(record % HOLD_OUT_EVERY != 0) {
+                order[next++] = (int) record;
+            }
+        }
+        for(int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        double[] gradient = new double[weights.length];
+        double[] moment = new double[weights.length];
+        double[] velocity = new double[weights.length];
+        int steps = 0;
+        for(int start = 0; start < order.length; start += batch) {
+            int end = Math.min(order.length, start + batch);
+            Arrays.fill(gradient, 0);
+            for(int i = start; i < end; i++) {
+                double error = predict(order[i]) - target(order[i]);
+                for(int w = 0; w < weights.length; w++) {
+                    gradient[w] += error * inputs[w] / scale;
+                }
+            }
+            steps++;
+            for(int w = 0; w < weights.length; w++) {
+                double g = gradient[w] / (end - start);
+                moment[w] = BETA1 * moment[w] + (1 - BETA1) * g;
+                velocity[w] = BETA2 * velocity[w] + (1 - BETA2) * g * g;
+                double correctedMoment = moment[w] / (1 - Math.pow(BETA1, steps));
+                double correctedVelocity = velocity[w] / (1 - Math.pow(BETA2, steps));
+                weights[w] -= rate * correctedMoment / (Math.sqrt(correctedVelocity) + EPSILON);
+            }
+        }
+    }
+
+
+    /**
+     * @return The average cross entropy over the held out records
+     * @throws IOException If the records can not be read
+     */
+    public double heldOutLoss() throws IOException {
+        double loss = 0;
+        long count = 0;
+        for(long record = 0; record < recordCount; record += HOLD_OUT_EVERY) {
+            loss += crossEntropy(predict(record), target(record));
+            count++;
+        }
+        return loss / count;
+    }
+
+
+    /**
+     * Reads a record's inputs and scores it with the current weights
+     * @param record The record
+     * @return The chance of winning the weights give the side to move
+     * @throws IOException If the record can not be read
+     */
+    private double predict(long record) throws IOException {
+        int file = findFile(record);
+        files[file].getFeatures(record - firstRecords[file], features);
+        double eval = 0;
+        for(int i = 0; i < 2 * pieceCounts; i++) {
+            //Features are the side to move's counts, then the other side's
+            inputs[i] = features[i] - features[2 * pieceCounts + i];
+            eval += weights[i] * inputs[i];
+        }
+        inputs[2 * pieceCounts] = 1;
+        eval += weights[2 * pieceCounts];
+        return sigmoid(eval / scale);
+    }
+
+
+    /**
+     * @param record The record
+     * @return The chance of winning the record should have, from its outcome and its search score
+     * @throws IOException If the record can not be read
+     */
+    private double target(long record) throws IOException {
+        int score = getScore(record);
+        double searched;
+        if(TicTacToeSearch.isProvenScore(score)) {
+            searched = score > 0 ? 1 : 0;
+        } else {
+            searched = sigmoid(score / scale);
+        }
+        return lambda * (getOutcome(record) + 1) / 2.0 + (1 - lambda) * searched;
+    }
+
+
+    private int getScore(long record) throws IOException {
+        int file = findFile(record);
+        return files[file].getScore(record - firstRecords[file]);
+    }
+
+
+    private int getOutcome(long record) throws IOException {
+        int file = findFile(record);
+        return files[file].getOutcome(record - firstRecords[file]);
+    }
+
+
+    //Finds which file a record number falls in
+    private int findFile(long record) {
+        int file = files.length - 1;
+        while(firstRecords[file] > record) {
+            file--;
+        }
+        return file;
+    }
+
+
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+
+    /**
+     * @param predicted The predicted chance, from 0 to 1
+     * @param target The target chance, from 0 to 1
+     * @return How far apart they are, 0 when equal and target is 0 or 1
+     */
+    private static double crossEntropy(double predicted, double target) {
+        double p = Math.min(1 - EPSILON, Math.max(EPSILON, predicted));
+        return -(target * Math.log(p) + (1 - target) * Math.log(1 - p));
+    }
+
+
+    /**
+     * Rounds the trained weights into weights the evaluator can use
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @return The weights
+     */
+    public TicTacToeWeights getWeights(int width, int height, int piecesForWin) {
+        int[] runWeights = new int[piecesForWin + 1];
+        int[] openRunWeights = new int[piecesForWin + 1];
+        for(int pieces = 1; pieces <= pieceCounts; pieces++) {
+            runWeights[pieces] = (int) Math.round(weights[pieces - 1]);
+            openRunWeights[pieces] = (int) Math.round(weights[pieceCounts + pieces - 1]);
+        }
+        return new TicTacToeWeights(width, height, piecesForWin, runWeights, openRunWeights,
+            (int) Math.round(weights[2 * pieceCounts]));
+    }
+}
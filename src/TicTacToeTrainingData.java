@@ -0,0 +1,319 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * A file of training records from self play, written and read through memory mapped chunks
+ * so that records go straight into the page cache with no stream or copy in between.
+ *
+ * Each record is one position: the evaluator's run and open run counts for the side to move
+ * and then for the other side, the search score for the side to move, how many moves were in,
+ * and how the game ended for the side to move. Records have a fixed size, so record i is at
+ * a known offset and chunks always hold whole records.
+ *
+ * Layout: a 32 byte header of magic, version, width, height, k, record size and record count,
+ * then the records. Each record is 4 * (k - 1) shorts of counts, an int score, a short ply
+ * and a byte outcome, padded to an even length. The count in the header is only written on
+ * close, so a file from a crashed run holds the records up to its last close.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeTrainingData implements AutoCloseable {
+
+    //Constants
+    private final static int FILE_MAGIC = 0x54545444;
+    private final static int VERSION = 1;
+    private final static int HEADER_BYTES = 32;
+    private final static int COUNT_OFFSET = 24;
+    //Bytes mapped at a time, rounded down to whole records
+    private final static int CHUNK_BYTES = 64 << 20;
+
+    //Board size of every record
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+    private final int featureCount;
+    private final int recordSize;
+    private final int recordsPerChunk;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final boolean writable;
+    private long recordCount;
+
+    //The chunk being written, or the one last read
+    private MappedByteBuffer chunk;
+    private long chunkIndex = -1;
+
+
+    /**
+     * Opens a file
+     * @param file The file
+     * @param writable Whether records will be added
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @throws IOException If the file can not be opened
+     */
+    private TicTacToeTrainingData(RandomAccessFile file, boolean writable, int width, int height, int piecesForWin)
+            throws IOException {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.writable = writable;
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+        this.featureCount = getFeatureCount(piecesForWin);
+        this.recordSize = (2 * featureCount + 7 + 1) & ~1;
+        this.recordsPerChunk = CHUNK_BYTES / recordSize;
+    }
+
+
+    /**
+     * Opens a file to add records to, making it if it does not exist
+     * @param path The file
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @return The open file, positioned after its last record
+     * @throws IOException If the file can not be opened or holds another board size
+     */
+    public static TicTacToeTrainingData openForWriting(File path, int width, int height, int piecesForWin)
+            throws IOException {
+        boolean exists = path.exists() && path.length() > 0;
+        TicTacToeTrainingData data = new TicTacToeTrainingData(new RandomAccessFile(path, "rw"), true,
+            width, height, piecesForWin);
+        if(exists) {
+            TicTacToeTrainingData old = readHeader(data.file, path);
+            if(old.width != width || old.height != height || old.piecesForWin != piecesForWin) {
+                data.file.close();
+                throw new IOException(path + " holds " + old.width + "x" + old.height + " k=" + old.piecesForWin
+                    + " records");
+            }
+            data.recordCount = old.recordCount;
+        } else {
+            data.file.writeInt(FILE_MAGIC);
+            data.file.writeInt(VERSION);
+            data.file.writeInt(width);
+            data.file.writeInt(height);
+            data.file.writeInt(piecesForWin);
+            data.file.writeInt(data.recordSize);
+            data.file.writeLong(0);
+        }
+        return data;
+    }
+
+
+    /**
+     * Opens a file to read its records
+     * @param path The file
+     * @return The open file
+     * @throws IOException If the file can not be opened or is not a training file
+     */
+    public static TicTacToeTrainingData openForReading(File path) throws IOException {
+        return readHeader(new RandomAccessFile(path, "r"), path);
+    }
+
+
+    /**
+     * Reads a file's header into a reader for it
+     * @param file The open file
+     * @param path The file's name, for messages
+     * @return A reader over the file
+     * @throws IOException If the file is not a training file
+     */
+    private static TicTacToeTrainingData readHeader(RandomAccessFile file, File path) throws IOException {
+        file.seek(0);
+        if(file.length() < HEADER_BYTES || file.readInt() != FILE_MAGIC || file.readInt() != VERSION) {
+            file.close();
+            throw new IOException(path + " is not a training data file");
+        }
+        int width = file.readInt();
+        int height = file.readInt();
+        int piecesForWin = file.readInt();
+        TicTacToeTrainingData data = new TicTacToeTrainingData(file, false, width, height, piecesForWin);
+        if(file.readInt() != data.recordSize) {
+            file.close();
+            throw new IOException(path + " has records of an unexpected size");
+        }
+        data.recordCount = Math.min(file.readLong(), (file.length() - HEADER_BYTES) / data.recordSize);
+        return data;
+    }
+
+
+    /**
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @return How many counts each record holds
+     */
+    public static int getFeatureCount(int piecesForWin) {
+        return 4 * (piecesForWin - 1);
+    }
+
+
+    /**
+     * Reads the counts a record is made of off a board
+     * @param board The board
+     * @param features Where the counts go: runs of the side to move for 1 to k - 1 pieces, then
+     *                 its open runs, then the same two for the other side
+     */
+    public static void readFeatures(TicTacToeBoard board, int[] features) {
+        TicTacToeEvaluator evaluator = board.getEvaluator();
+        int pieceCounts = board.getPiecesForWin() - 1;
+        int side = board.getSideToMove();
+        for(int pieces = 1; pieces <= pieceCounts; pieces++) {
+            features[pieces - 1] = evaluator.getRunCount(side, pieces);
+            features[pieceCounts + pieces - 1] = evaluator.getOpenRunCount(side, pieces);
+            features[2 * pieceCounts + pieces - 1] = evaluator.getRunCount(3 - side, pieces);
+            features[3 * pieceCounts + pieces - 1] = evaluator.getOpenRunCount(3 - side, pieces);
+        }
+    }
+
+
+    /**
+     * Adds records to the end of the file
+     * @param features The counts of each record, featureCount after featureCount
+     * @param scores The search score of each record, for the side to move
+     * @param plies How many moves had been played in each record
+     * @param outcomes 1, 0 or -1 for each record, how the game ended for the side to move
+     * @param count How many records to add
+     * @throws IOException If the file can not grow
+     */
+    public synchronized void append(int[] features, int[] scores, int[] plies, int[] outcomes, int count)
+            throws IOException {
+        if(!writable) {
+            throw new IOException("The training data was opened for reading");
+        }
+        for(int i = 0; i < count; i++) {
+            MappedByteBuffer buffer = mapChunk(recordCount);
+            buffer.position((int) (recordCount % recordsPerChunk) * recordSize);
+            for(int f = 0; f < featureCount; f++) {
+                buffer.putShort((short) Math.min(features[i * featureCount + f], Short.MAX_VALUE));
+            }
+            buffer.putInt(scores[i]);
+            buffer.putShort((short) plies[i]);
+            buffer.put((byte) outcomes[i]);
+            recordCount++;
+        }
+    }
+
+
+    /**
+     * Reads one record's counts
+     * @param index The record
+     * @param features Where the counts go, in the order readFeatures gives them
+     * @throws IOException If the file can not be mapped
+     */
+    public void getFeatures(long index, int[] features) throws IOException {
+        MappedByteBuffer buffer = mapChunk(index);
+        int offset = (int) (index % recordsPerChunk) * recordSize;
+        for(int f = 0; f < featureCount; f++) {
+            features[f] = buffer.getShort(offset + 2 * f);
+        }
+    }
+
+
+    /**
+     * @param index The record
+     * @return The search score for the side to move
+     * @throws IOException If the file can not be mapped
+     */
+    public int getScore(long index) throws IOException {
+        return mapChunk(index).getInt((int) (index % recordsPerChunk) * recordSize + 2 * featureCount);
+    }
+
+
+    /**
+     * @param index The record
+     * @return How many moves had been played
+     * @throws IOException If the file can not be mapped
+     */
+    public int getPly(long index) throws IOException {
+        return mapChunk(index).getShort((int) (index % recordsPerChunk) * recordSize + 2 * featureCount + 4);
+    }
+
+
+    /**
+     * @param index The record
+     * @return 1, 0 or -1, how the game ended for the side to move
+     * @throws IOException If the file can not be mapped
+     */
+    public int getOutcome(long index) throws IOException {
+        return mapChunk(index).get((int) (index % recordsPerChunk) * recordSize + 2 * featureCount + 6);
+    }
+
+
+    /**
+     * Maps the chunk a record is in, unless it already is
+     * @param index The record
+     * @return The chunk
+     * @throws IOException If the file can not be mapped
+     */
+    private MappedByteBuffer mapChunk(long index) throws IOException {
+        long wanted = index / recordsPerChunk;
+        if(wanted != chunkIndex) {
+            long start = HEADER_BYTES + wanted * recordsPerChunk * recordSize;
+            long size = (long) recordsPerChunk * recordSize;
+            if(writable) {
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+            } else {
+                chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, channel.size() - start));
+            }
+            chunkIndex = wanted;
+        }
+        return chunk;
+    }
+
+
+    /**
+     * Writes the record count and trims the file to the records written. The chunk stays mapped
+     * until it is collected, which is harmless since the file is no longer written through it.
+     * @throws IOException If the file can not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(writable) {
+            if(chunk != null) {
+                chunk.force();
+            }
+            file.seek(COUNT_OFFSET);
+            file.writeLong(recordCount);
+            channel.truncate(HEADER_BYTES + recordCount * recordSize);
+        }
+        chunk = null;
+        file.close();
+    }
+
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+
+    public int getWidth() {
+        return width;
+    }
+
+
+    public int getHeight() {
+        return height;
+    }
+
+
+    public int getPiecesForWin() {
+        return piecesForWin;
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Scanner;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * An app that plays Ultimate Tic Tac Toe between a human player and a Monte Carlo tree search AI.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeUltimate {
+
+    //Constants
+    private final static String AI_NAME = "Computer";
+    private final static long DEFAULT_MOVE_TIME_MS = 1000;
+    private final static String USAGE =
+        "Usage: java TicTacToeUltimate [--movetime ms] [--threads n] [--computer-first] [--bench seconds]";
+
+    //Plays a game of Ultimate TicTacToe
+    public static void main(String[] args) {
+        TicTacToeUltimateMcts mcts = new TicTacToeUltimateMcts();
+        long moveTimeMs = DEFAULT_MOVE_TIME_MS;
+        boolean computerFirst = false;
+        long benchSeconds = 0;
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--movetime")) {
+                    moveTimeMs = Long.parseLong(args[++i]);
+                } else if(args[i].equals("--threads")) {
+                    mcts.setThreads(Integer.parseInt(args[++i]));
+                } else if(args[i].equals("--computer-first")) {
+                    computerFirst = true;
+                } else if(args[i].equals("--bench")) {
+                    benchSeconds = Long.parseLong(args[++i]);
+                } else {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+        } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        if(benchSeconds > 0) {
+            benchmark(mcts, benchSeconds);
+            return;
+        }
+        Scanner keyboard = new Scanner(System.in);
+        intro();
+        runGame(new TicTacToeUltimateBoard(), keyboard, mcts, computerFirst, moveTimeMs);
+    }
+
+
+    /**
+     * Main method that runs the game, turn by turn
+     * @param board The board, empty at the start
+     * @param keyboard Scanner used to read user input
+     * @param mcts The search the computer plays with
+     * @param computerFirst Whether the computer plays X and moves first
+     * @param moveTimeMs How long the computer thinks about each move
+     */
+    private static void runGame(TicTacToeUltimateBoard board, Scanner keyboard, TicTacToeUltimateMcts mcts,
+                                boolean computerFirst, long moveTimeMs) {
+        int computerSide = computerFirst ? TicTacToeBoard.PLAYER_ONE : TicTacToeBoard.PLAYER_TWO;
+        while(!board.isOver()) {
+            printBoard(board);
+            if(board.getSideToMove() == computerSide) {
+                doComputerTurn(board, mcts, moveTimeMs);
+            } else if(!doPlayerTurn(board, keyboard)) {
+                return;
+            }
+        }
+        printBoard(board);
+        System.out.println("----------------");
+        if(board.getWinner() == TicTacToeUltimateBoard.DRAW) {
+            System.out.println("The game is a draw.");
+        } else if(board.getWinner() == computerSide) {
+            System.out.println(AI_NAME + " wins!");
+        } else {
+            System.out.println("You win!");
+        }
+        System.out.println("----------------");
+    }
+
+
+    /**
+     * Searches for the computer's move and plays it
+     * @param board The board, with the computer to move
+     * @param mcts The search
+     * @param moveTimeMs How long to think
+     */
+    private static void doComputerTurn(TicTacToeUltimateBoard board, TicTacToeUltimateMcts mcts, long moveTimeMs) {
+        mcts.clearStop();
+        int move = mcts.search(board, moveTimeMs, 0);
+        System.out.printf("%s plays %s (wins %.1f%%, %d playouts in %d ms)%n%n", AI_NAME,
+            TicTacToeUltimateBoard.moveToString(move), 100 * mcts.getWinRate(move), mcts.getPlayouts(),
+            mcts.getElapsedMs());
+        board.makeMove(move);
+    }
+
+
+    /**
+     * Asks the human for a move until they name a legal one
+     * @param board The board, with the human to move
+     * @param keyboard Scanner used to read user input
+     * @return False when the input ran out
+     */
+    private static boolean doPlayerTurn(TicTacToeUltimateBoard board, Scanner keyboard) {
+        while(true) {
+            System.out.print("Your move (column, row such as e5): ");
+            if(!keyboard.hasNextLine()) {
+                return false;
+            }
+            int move = board.parseMove(keyboard.nextLine().trim());
+            System.out.println();
+            if(move != TicTacToeBoard.NO_MOVE) {
+                board.makeMove(move);
+                return true;
+            }
+            System.out.println("That is not a legal move.\n");
+        }
+    }
+
+
+    /**
+     * Prints the grid, which small boards are claimed, and where the next move has to go
+     * @param board The board
+     */
+    private static void printBoard(TicTacToeUltimateBoard board) {
+        System.out.print(board);
+        StringBuilder claimed = new StringBuilder("Claimed boards:");
+        for(int i = 0; i < 9; i++) {
+            int result = board.getResult(i);
+            if(result == TicTacToeBoard.PLAYER_ONE || result == TicTacToeBoard.PLAYER_TWO) {
+                claimed.append(' ').append(TicTacToeUltimateBoard.moveToString(i * 9 + 4))
+                    .append('=').append(TicTacToeConsole.getPieceChar(result));
+            }
+        }
+        System.out.println(claimed);
+        if(!board.isOver()) {
+            int forced = board.getForcedBoard();
+            if(forced == TicTacToeUltimateBoard.ANY_BOARD) {
+                System.out.println("Next move: any open board");
+            } else {
+                System.out.println("Next move: the board around " + TicTacToeUltimateBoard.moveToString(forced * 9 + 4));
+            }
+        }
+        System.out.println();
+    }
+
+
+    /**
+     * Measures the playout kernel on its own, one board per thread playing games from the start
+     * @param mcts Used for its thread count
+     * @param seconds How long to run
+     */
+    private static void benchmark(TicTacToeUltimateMcts mcts, long seconds) {
+        int threads = mcts.getThreads();
+        long[] counts = new long[threads];
+        long deadline = System.currentTimeMillis() + seconds * 1000;
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            final int index = i;
+            workers[i] = new Thread(() -> {
+                TicTacToeUltimateBoard start = new TicTacToeUltimateBoard();
+                TicTacToeUltimateBoard scratch = new TicTacToeUltimateBoard();
+                scratch.setSeed(index + 1);
+                long count = 0;
+                while((count & 1023) != 0 || System.currentTimeMillis() < deadline) {
+                    scratch.copyFrom(start);
+                    scratch.playout();
+                    count++;
+                }
+                counts[index] = count;
+            });
+            workers[i].start();
+        }
+        long total = 0;
+        for(int i = 0; i < threads; i++) {
+            try {
+                workers[i].join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            total += counts[i];
+        }
+        System.out.println(threads + " threads: " + total + " playouts, " + total / seconds + " per second");
+
+        mcts.clearStop();
+        int move = mcts.search(new TicTacToeUltimateBoard(), seconds * 1000, 0);
+        System.out.println("MCTS from the start: " + TicTacToeUltimateBoard.moveToString(move) + " after "
+            + mcts.getPlayouts() + " playouts, " + mcts.getPlayouts() * 1000 / Math.max(1, mcts.getElapsedMs())
+            + " per second");
+    }
+
+
+    //Prints the introduction to the match
+    private static void intro() {
+        System.out.println("---------------------------------------------------");
+        System.out.println("Welcome to the game of Ultimate Tic Tac Toe");
+        System.out.println("Where you play sends your opponent to that board");
+        System.out.println("---------------------------------------------------");
+        System.out.println();
+    }
+}
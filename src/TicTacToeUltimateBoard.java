@@ -0,0 +1,383 @@
+/**
+ * -------------------------------------------------------------------------------------------------
+ * A board for Ultimate Tic Tac Toe: nine 3x3 boards in a 3x3 grid, where the square a piece
+ * goes on picks the small board the opponent has to play in next. Winning a small board claims
+ * it, and three claimed boards in a row win the game. When the board a player is sent to is
+ * already won or full, they may play on any board that is still open.
+ *
+ * Every small board is a 9-bit mask per side, and whether a mask holds three in a row is read
+ * from a 512-entry table instead of being scanned, both for the small boards and for the grid
+ * of claimed boards. Moves are numbered board * 9 + cell, boards and cells counted left to
+ * right and top to bottom.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeUltimateBoard {
+
+    //Constants
+    public final static int NUM_MOVES = 81;
+    public final static int DRAW = 3;
+    public final static int ANY_BOARD = -1;
+    private final static int FULL_MASK = 511;
+    private final static int[] LINES = {7, 56, 448, 73, 146, 292, 273, 84};
+
+    //Whether a 9-bit mask has three in a row, for every possible mask
+    private final static boolean[] HAS_LINE = new boolean[FULL_MASK + 1];
+
+    static {
+        for(int mask = 0; mask <= FULL_MASK; mask++) {
+            for(int i = 0; i < LINES.length; i++) {
+                if((mask & LINES[i]) == LINES[i]) {
+                    HAS_LINE[mask] = true;
+                }
+            }
+        }
+    }
+
+    //Pieces as 9-bit masks, indexed side * 9 + board
+    private final int[] cells = new int[27];
+    //Both sides' pieces together, so finding empty cells is one lookup
+    private final int[] occupied = new int[9];
+    //Which side has claimed each board, DRAW when it filled up first, EMPTY while open
+    private final int[] results = new int[9];
+    //Claimed boards as 9-bit masks per side, and boards that are closed for any reason
+    private final int[] claimed = new int[3];
+    private int closed;
+    private int forcedBoard = ANY_BOARD;
+    private int sideToMove = TicTacToeBoard.PLAYER_ONE;
+    private int winner = TicTacToeBoard.EMPTY;
+
+    //Undo information
+    private final int[] moveStack = new int[NUM_MOVES];
+    private final int[] forcedStack = new int[NUM_MOVES];
+    private int moveCount;
+
+    //State of the random number generator used by playouts
+    private long randomState = 0x9E3779B97F4A7C15L;
+
+
+    /**
+     * Makes this board a copy of another one, without allocating, so a playout can run on it
+     * @param other The board to copy
+     */
+    public void copyFrom(TicTacToeUltimateBoard other) {
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+        claimed[TicTacToeBoard.PLAYER_ONE] = other.claimed[TicTacToeBoard.PLAYER_ONE];
+        claimed[TicTacToeBoard.PLAYER_TWO] = other.claimed[TicTacToeBoard.PLAYER_TWO];
+        System.arraycopy(other.results, 0, results, 0, 9);
+        System.arraycopy(other.occupied, 0, occupied, 0, 9);
+        System.arraycopy(other.moveStack, 0, moveStack, 0, other.moveCount);
+        System.arraycopy(other.forcedStack, 0, forcedStack, 0, other.moveCount);
+        closed = other.closed;
+        forcedBoard = other.forcedBoard;
+        sideToMove = other.sideToMove;
+        winner = other.winner;
+        moveCount = other.moveCount;
+    }
+
+
+    /**
+     * Places a piece for the side to move and passes the turn
+     * @param move The move, board * 9 + cell
+     */
+    public void makeMove(int move) {
+        int board = move / 9;
+        int cell = move - board * 9;
+        int side = sideToMove;
+        forcedStack[moveCount] = forcedBoard;
+        moveStack[moveCount++] = move;
+        int mine = cells[side * 9 + board] | (1 << cell);
+        cells[side * 9 + board] = mine;
+        int all = occupied[board] | (1 << cell);
+        occupied[board] = all;
+        if(HAS_LINE[mine]) {
+            results[board] = side;
+            claimed[side] |= 1 << board;
+            closed |= 1 << board;
+            if(HAS_LINE[claimed[side]]) {
+                winner = side;
+            }
+        } else if(all == FULL_MASK) {
+            results[board] = DRAW;
+            closed |= 1 << board;
+        }
+        if(closed == FULL_MASK && winner == TicTacToeBoard.EMPTY) {
+            winner = DRAW;
+        }
+        //The cell played in names the next board, unless that board is closed
+        forcedBoard = (closed & (1 << cell)) == 0 ? cell : ANY_BOARD;
+        sideToMove = 3 - side;
+    }
+
+
+    /**
+     * Takes back the last move made
+     */
+    public void unmakeMove() {
+        int move = moveStack[--moveCount];
+        int board = move / 9;
+        int cell = move - board * 9;
+        int side = 3 - sideToMove;
+        cells[side * 9 + board] &= ~(1 << cell);
+        occupied[board] &= ~(1 << cell);
+        if(results[board] != TicTacToeBoard.EMPTY) {
+            claimed[side] &= ~(1 << board);
+            closed &= ~(1 << board);
+            results[board] = TicTacToeBoard.EMPTY;
+        }
+        forcedBoard = forcedStack[moveCount];
+        sideToMove = side;
+        winner = TicTacToeBoard.EMPTY;
+    }
+
+
+    /**
+     * @param board A small board
+     * @return A mask of its empty cells, 0 when it is closed
+     */
+    private int emptyCells(int board) {
+        if((closed & (1 << board)) != 0) {
+            return 0;
+        }
+        return ~occupied[board] & FULL_MASK;
+    }
+
+
+    /**
+     * Lists the legal moves, which are on the board the last move sent to when it is open
+     * @param list Where the moves are written, must have room for 81
+     * @return How many moves were written, 0 when the game is over
+     */
+    public int generateMoves(int[] list) {
+        if(winner != TicTacToeBoard.EMPTY) {
+            return 0;
+        }
+        int count = 0;
+        int first = forcedBoard == ANY_BOARD ? 0 : forcedBoard;
+        int last = forcedBoard == ANY_BOARD ? 8 : forcedBoard;
+        for(int board = first; board <= last; board++) {
+            for(int empty = emptyCells(board); empty != 0; empty &= empty - 1) {
+                list[count++] = board * 9 + Integer.numberOfTrailingZeros(empty);
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Plays uniformly random legal moves until the game ends. This is the inner loop of the
+     * Monte Carlo search, so it works straight on the masks and allocates nothing.
+     * The moves are kept, so play out on a copy made with copyFrom.
+     * @return The winner, or DRAW
+     */
+    public int playout() {
+        while(winner == TicTacToeBoard.EMPTY) {
+            int board = forcedBoard;
+            int empty;
+            int pick;
+            if(board != ANY_BOARD) {
+                empty = emptyCells(board);
+                pick = nextRandom(Integer.bitCount(empty));
+            } else {
+                //Count every open cell, then walk to a random one
+                int total = 0;
+                for(int b = 0; b < 9; b++) {
+                    total += Integer.bitCount(emptyCells(b));
+                }
+                pick = nextRandom(total);
+                board = 0;
+                empty = emptyCells(0);
+                while(pick >= Integer.bitCount(empty)) {
+                    pick -= Integer.bitCount(empty);
+                    empty = emptyCells(++board);
+                }
+            }
+            makeMove(board * 9 + nthBit(empty, pick));
+        }
+        return winner;
+    }
+
+
+    /**
+     * Steps the xorshift generator, which is much cheaper than java.util.Random
+     * @param bound One more than the largest number wanted
+     * @return A number from 0 to bound - 1
+     */
+    private int nextRandom(int bound) {
+        long random = randomState;
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        randomState = random;
+        //Scales the top 32 bits to the bound, which avoids a division
+        return (int) (((random >>> 32) * bound) >>> 32);
+    }
+
+
+    /**
+     * @param mask A mask with more than n bits set
+     * @param n Which set bit to find, counting from 0 at the lowest
+     * @return The position of the set bit
+     */
+    private static int nthBit(int mask, int n) {
+        for(int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        return Integer.numberOfTrailingZeros(mask);
+    }
+
+
+    /**
+     * Seeds the playout random numbers, so that threads playing out from the same position
+     * do not all play the same games
+     * @param seed Any number but 0
+     */
+    public void setSeed(long seed) {
+        randomState = seed == 0 ? 1 : seed;
+    }
+
+
+    /**
+     * Checks if a move is legal right now
+     * @param move The move, board * 9 + cell
+     * @return Whether it may be played
+     */
+    public boolean isLegal(int move) {
+        if(winner != TicTacToeBoard.EMPTY || move < 0 || move >= NUM_MOVES) {
+            return false;
+        }
+        int board = move / 9;
+        if(forcedBoard != ANY_BOARD && board != forcedBoard) {
+            return false;
+        }
+        return (emptyCells(board) & (1 << (move - board * 9))) != 0;
+    }
+
+
+    /**
+     * Reads a move on the full 9x9 grid written as a column letter and a row number, such as "e5"
+     * @param text The move text
+     * @return The move, or NO_MOVE when the text is not a legal move
+     */
+    public int parseMove(String text) {
+        if(text == null || text.length() != 2) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        int col = Character.toLowerCase(text.charAt(0)) - 'a';
+        int row = text.charAt(1) - '1';
+        if(col < 0 || col > 8 || row < 0 || row > 8) {
+            return TicTacToeBoard.NO_MOVE;
+        }
+        int move = ((row / 3) * 3 + col / 3) * 9 + (row % 3) * 3 + col % 3;
+        return isLegal(move) ? move : TicTacToeBoard.NO_MOVE;
+    }
+
+
+    /**
+     * Writes a move the way parseMove reads it
+     * @param move The move to write
+     * @return The move text
+     */
+    public static String moveToString(int move) {
+        if(move == TicTacToeBoard.NO_MOVE) {
+            return "none";
+        }
+        int board = move / 9;
+        int cell = move % 9;
+        int row = (board / 3) * 3 + cell / 3;
+        int col = (board % 3) * 3 + cell % 3;
+        return "" + (char) ('a' + col) + (row + 1);
+    }
+
+
+    /**
+     * Prints the 9x9 grid with the small boards set apart
+     * @return The grid, one row per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("  a b c   d e f   g h i\n");
+        for(int row = 0; row < 9; row++) {
+            if(row > 0 && row % 3 == 0) {
+                text.append("  ------+-------+------\n");
+            }
+            text.append(row + 1);
+            for(int col = 0; col < 9; col++) {
+                if(col > 0 && col % 3 == 0) {
+                    text.append(" |");
+                }
+                int move = ((row / 3) * 3 + col / 3) * 9 + (row % 3) * 3 + col % 3;
+                text.append(' ').append(TicTacToeConsole.getPieceChar(getPiece(move)));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+
+    /**
+     * @param move A square, board * 9 + cell
+     * @return EMPTY, PLAYER_ONE or PLAYER_TWO
+     */
+    public int getPiece(int move) {
+        int board = move / 9;
+        int bit = 1 << (move - board * 9);
+        if((cells[TicTacToeBoard.PLAYER_ONE * 9 + board] & bit) != 0) {
+            return TicTacToeBoard.PLAYER_ONE;
+        } else if((cells[TicTacToeBoard.PLAYER_TWO * 9 + board] & bit) != 0) {
+            return TicTacToeBoard.PLAYER_TWO;
+        }
+        return TicTacToeBoard.EMPTY;
+    }
+
+
+    /**
+     * @param board A small board
+     * @return Who claimed it, DRAW when it filled up first, or EMPTY while it is open
+     */
+    public int getResult(int board) {
+        return results[board];
+    }
+
+
+    /**
+     * @return The small board the side to move has to play in, or ANY_BOARD
+     */
+    public int getForcedBoard() {
+        return forcedBoard;
+    }
+
+
+    /**
+     * @return The winner, DRAW, or EMPTY while the game goes on
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+
+    public boolean isOver() {
+        return winner != TicTacToeBoard.EMPTY;
+    }
+
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+
+    public int getMove(int index) {
+        return moveStack[index];
+    }
+}
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Monte Carlo tree search for Ultimate Tic Tac Toe, whose positions are too hard to score
+ * by looking at them but cheap to play out to the end at random.
+ *
+ * Every thread grows its own tree from the same root on its own copy of the board, picking
+ * children by UCT and playing one random game from each new leaf. Nothing is shared while they
+ * run, so there are no locks in the loop, and at the end the visits of the root's children
+ * are added up over all trees and the most visited move is played.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeUltimateMcts {
+
+    //Constants
+    private final static double EXPLORATION = Math.sqrt(2);
+    public final static int DEFAULT_TREE_NODES = 1 << 20;
+    private final static int TIME_CHECK_INTERVAL = 255;
+
+    //Settings
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int treeNodes = DEFAULT_TREE_NODES;
+
+    //Results of the last search, added up over all trees
+    private final long[] rootVisits = new long[TicTacToeUltimateBoard.NUM_MOVES];
+    private final long[] rootScores = new long[TicTacToeUltimateBoard.NUM_MOVES];
+    private long playouts;
+    private long startTime;
+    private long elapsedMs;
+    private volatile boolean stopRequested;
+
+
+    /**
+     * Asks a running search to stop as soon as possible. Safe to call from another thread.
+     * The request stays in place until clearStop is called, even if no search is running yet.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+
+    //Takes back an earlier stop request, must be called before starting a new search
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+
+    /**
+     * Finds the best move for the side to move
+     * @param board The position to search, left unchanged
+     * @param moveTimeMs How long to search for
+     * @param maxPlayouts Stops once this many playouts are done over all threads, or 0 for no limit
+     * @return The most visited move, or NO_MOVE when the game is already over
+     */
+    public int search(TicTacToeUltimateBoard board, long moveTimeMs, long maxPlayouts) {
+        startTime = System.currentTimeMillis();
+        Arrays.fill(rootVisits, 0);
+        Arrays.fill(rootScores, 0);
+        playouts = 0;
+        int[] moves = new int[TicTacToeUltimateBoard.NUM_MOVES];
+        int count = board.generateMoves(moves);
+        if(count == 0) {
+            elapsedMs = 0;
+            return TicTacToeBoard.NO_MOVE;
+        } else if(count == 1) {
+            elapsedMs = 0;
+            return moves[0];
+        }
+
+        long deadline = startTime + moveTimeMs;
+        long playoutsPerTree = maxPlayouts > 0 ? Math.max(1, maxPlayouts / threads) : Long.MAX_VALUE;
+        Tree[] trees = new Tree[threads];
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            final Tree tree = new Tree(board, treeNodes, startTime * 31 + i * 0x9E3779B97F4A7C15L);
+            trees[i] = tree;
+            workers[i] = new Thread(() -> tree.run(deadline, playoutsPerTree), "mcts-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        for(int i = 0; i < threads; i++) {
+            try {
+                workers[i].join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            trees[i].addRootStatistics(rootVisits, rootScores);
+            playouts += trees[i].playouts;
+        }
+        elapsedMs = System.currentTimeMillis() - startTime;
+
+        int best = moves[0];
+        for(int i = 1; i < count; i++) {
+            if(rootVisits[moves[i]] > rootVisits[best]) {
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * One thread's search tree, kept in flat arrays with the children of a node next to each other
+     */
+    private class Tree {
+        private final TicTacToeUltimateBoard root = new TicTacToeUltimateBoard();
+        private final TicTacToeUltimateBoard scratch = new TicTacToeUltimateBoard();
+        private final int rootSide;
+        private final int[] firstChild;
+        private final byte[] childCount;
+        private final byte[] moves;
+        private final int[] visits;
+        //Half points for the side that made the move into the node: 2 per win and 1 per draw
+        private final int[] scores;
+        private final int[] path = new int[TicTacToeUltimateBoard.NUM_MOVES + 1];
+        private final int[] moveList = new int[TicTacToeUltimateBoard.NUM_MOVES];
+        private int size = 1;
+        private long playouts;
+
+
+        /**
+         * @param board The position to search from
+         * @param capacity The most nodes the tree may grow to
+         * @param seed Seed for this tree's playouts
+         */
+        Tree(TicTacToeUltimateBoard board, int capacity, long seed) {
+            root.copyFrom(board);
+            scratch.setSeed(seed);
+            rootSide = board.getSideToMove();
+            firstChild = new int[capacity];
+            childCount = new byte[capacity];
+            moves = new byte[capacity];
+            visits = new int[capacity];
+            scores = new int[capacity];
+            firstChild[0] = -1;
+        }
+
+
+        /**
+         * Runs selection, expansion, playout and backup until out of time or playouts
+         * @param deadline When to stop, in System.currentTimeMillis time
+         * @param maxPlayouts How many playouts this tree may do
+         */
+        void run(long deadline, long maxPlayouts) {
+            while(playouts < maxPlayouts) {
+                if((playouts & TIME_CHECK_INTERVAL) == 0 && (stopRequested || System.currentTimeMillis() >= deadline)) {
+                    break;
+                }
+                iterate();
+            }
+        }
+
+
+        //Walks down the tree, adds a leaf, plays a random game from it and backs up the result
+        private void iterate() {
+            scratch.copyFrom(root);
+            int node = 0;
+            int length = 0;
+            path[length++] = node;
+            while(firstChild[node] >= 0 && !scratch.isOver()) {
+                node = selectChild(node);
+                scratch.makeMove(moves[node]);
+                path[length++] = node;
+            }
+            //Grow the tree at a leaf that has been visited before, while there is room
+            if(!scratch.isOver() && (visits[node] > 0 || node == 0) && expand(node)) {
+                node = firstChild[node];
+                scratch.makeMove(moves[node]);
+                path[length++] = node;
+            }
+            int result = scratch.isOver() ? scratch.getWinner() : scratch.playout();
+            playouts++;
+            for(int i = 0; i < length; i++) {
+                int step = path[i];
+                visits[step]++;
+                //The node at depth i was reached by a move of the root side when i is odd
+                int mover = (i & 1) == 1 ? rootSide : 3 - rootSide;
+                if(result == mover) {
+                    scores[step] += 2;
+                } else if(result == TicTacToeUltimateBoard.DRAW) {
+                    scores[step] += 1;
+                }
+            }
+        }
+
+
+        /**
+         * Picks the child with the best UCT value, trying every child once first
+         * @param node A node that has children
+         * @return The child
+         */
+        private int selectChild(int node) {
+            int first = firstChild[node];
+            int last = first + childCount[node];
+            double logVisits = Math.log(visits[node]);
+            int best = first;
+            double bestValue = -1;
+            for(int child = first; child < last; child++) {
+                int n = visits[child];
+                if(n == 0) {
+                    return child;
+                }
+                double value = scores[child] / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+                if(value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+
+        /**
+         * Adds a child for every legal move of the position on the scratch board
+         * @param node The node the scratch board is at
+         * @return False when the tree is full
+         */
+        private boolean expand(int node) {
+            int count = scratch.generateMoves(moveList);
+            if(size + count > firstChild.length) {
+                return false;
+            }
+            firstChild[node] = size;
+            childCount[node] = (byte) count;
+            for(int i = 0; i < count; i++) {
+                firstChild[size + i] = -1;
+                moves[size + i] = (byte) moveList[i];
+            }
+            size += count;
+            return true;
+        }
+
+
+        /**
+         * Adds the visits and scores of the root's children to the totals over all trees
+         * @param totalVisits Visits by move
+         * @param totalScores Half points by move
+         */
+        void addRootStatistics(long[] totalVisits, long[] totalScores) {
+            if(firstChild[0] < 0) {
+                return;
+            }
+            for(int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++) {
+                totalVisits[moves[child]] += visits[child];
+                totalScores[moves[child]] += scores[child];
+            }
+        }
+    }
+
+
+    /**
+     * Sets how many threads search, each with its own tree
+     * @param threads The number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+
+    /**
+     * Sets how big each thread's tree may grow before it stops adding nodes
+     * @param treeNodes The most nodes per tree
+     */
+    public void setTreeNodes(int treeNodes) {
+        this.treeNodes = Math.max(TicTacToeUltimateBoard.NUM_MOVES + 1, treeNodes);
+    }
+
+
+    /**
+     * @param move A root move
+     * @return How many playouts went through it in the last search, over all trees
+     */
+    public long getVisits(int move) {
+        return rootVisits[move];
+    }
+
+
+    /**
+     * @param move A root move
+     * @return The share of points the side to move scored through it, draws counting half
+     */
+    public double getWinRate(int move) {
+        if(rootVisits[move] == 0) {
+            return 0;
+        }
+        return rootScores[move] / (2.0 * rootVisits[move]);
+    }
+
+
+    public long getPlayouts() {
+        return playouts;
+    }
+
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+
+    public int getThreads() {
+        return threads;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * -------------------------------------------------------------------------------------------------
+ * Runs a short synthetic search workload so that the JIT has compiled the search
+ * before the first real move is asked for.
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeWarmup {
+
+    //Constants
+    public final static long DEFAULT_BUDGET_MS = 300;
+    //Width, height and pieces for win of the boards that get searched
+    private final static int[][] WARMUP_BOARDS = {{3, 3, 3}, {4, 4, 4}, {5, 5, 4}, {7, 7, 5}};
+
+
+    /**
+     * Searches a handful of boards, round robin, until the time budget is used up
+     * @param budgetMs Roughly how long to spend
+     * @return How many nodes were searched in total
+     */
+    public static long run(long budgetMs) {
+        TicTacToeSearch search = new TicTacToeSearch();
+        long deadline = System.currentTimeMillis() + budgetMs;
+        long totalNodes = 0;
+        int round = 0;
+        while(System.currentTimeMillis() < deadline) {
+            int[] size = WARMUP_BOARDS[round % WARMUP_BOARDS.length];
+            TicTacToeBoard board = new TicTacToeBoard(size[0], size[1], size[2]);
+            //Start from a different opening square every round so more branches get exercised
+            board.makeMove((round * 7) % board.getNumSquares());
+            long sliceMs = Math.max(1, Math.min(deadline - System.currentTimeMillis(), budgetMs / 8));
+            search.search(board, TicTacToeSearch.MAX_PLY, sliceMs, null);
+            totalNodes += search.getNodes();
+            round++;
+        }
+        return totalNodes;
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * -------------------------------------------------------------------------------------------------
+ * The weights TicTacToeEvaluator scores a position with, for one board size: what a run of
+ * each length is worth, what an open run of each length is worth, and a bonus for being the
+ * side to move. New weights come from TicTacToeTrainer.
+ *
+ * The file is plain text, one line each:
+ *   weights m n k
+ *   run w1 .. w(k-1)
+ *   open w1 .. w(k-1)
+ *   tempo t
+ * -------------------------------------------------------------------------------------------------
+ * @author Francisco Reyna
+ * email: francis@cs.utexas.edu
+ * The University of Texas at Austin
+ * College of Natural Sciences - Computer Science
+ * -------------------------------------------------------------------------------------------------
+ */
+
+
+public class TicTacToeWeights {
+
+    //Board size the weights are for
+    private final int width;
+    private final int height;
+    private final int piecesForWin;
+
+    //Indexed by pieces, so entries 0 and piecesForWin are always 0
+    private final int[] runWeights;
+    private final int[] openRunWeights;
+    private final int tempo;
+
+
+    /**
+     * Makes the hand tuned weights: each extra piece in a run is worth four times as much,
+     * and being open doubles it
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     */
+    public TicTacToeWeights(int width, int height, int piecesForWin) {
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+        runWeights = new int[piecesForWin + 1];
+        openRunWeights = new int[piecesForWin + 1];
+        for(int pieces = 1; pieces < piecesForWin; pieces++) {
+            runWeights[pieces] = 1 << Math.min(2 * (pieces - 1), 20);
+            openRunWeights[pieces] = 2 * runWeights[pieces];
+        }
+        tempo = 0;
+    }
+
+
+    /**
+     * Makes weights from given values
+     * @param width The number of columns
+     * @param height The number of rows
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @param runWeights What a run of each length is worth, indexed by pieces
+     * @param openRunWeights What an open run of each length is worth, indexed by pieces
+     * @param tempo What being the side to move is worth
+     */
+    public TicTacToeWeights(int width, int height, int piecesForWin, int[] runWeights, int[] openRunWeights,
+                            int tempo) {
+        if(runWeights.length != piecesForWin + 1 || openRunWeights.length != piecesForWin + 1) {
+            throw new IllegalArgumentException("Weights need one entry for each run length from 0 to " + piecesForWin);
+        }
+        this.width = width;
+        this.height = height;
+        this.piecesForWin = piecesForWin;
+        this.runWeights = runWeights.clone();
+        this.openRunWeights = openRunWeights.clone();
+        //A run of k is a win and is never scored
+        this.runWeights[0] = 0;
+        this.runWeights[piecesForWin] = 0;
+        this.openRunWeights[0] = 0;
+        this.openRunWeights[piecesForWin] = 0;
+        this.tempo = tempo;
+    }
+
+
+    /**
+     * Reads weights back from a file
+     * @param file The file written by save
+     * @return The weights
+     * @throws IOException If the file can not be read or is not a weights file
+     */
+    public static TicTacToeWeights load(File file) throws IOException {
+        try(BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String[] header = readLine(in, "weights", file);
+            int piecesForWin = Integer.parseInt(header[3]);
+            int[] runWeights = readWeights(readLine(in, "run", file), piecesForWin, file);
+            int[] openRunWeights = readWeights(readLine(in, "open", file), piecesForWin, file);
+            int tempo = Integer.parseInt(readLine(in, "tempo", file)[1]);
+            return new TicTacToeWeights(Integer.parseInt(header[1]), Integer.parseInt(header[2]), piecesForWin,
+                runWeights, openRunWeights, tempo);
+        } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException(file + " is not a weights file: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Reads the next line and checks what it starts with
+     * @param in The file
+     * @param name The word the line should start with
+     * @param file The file, for the message
+     * @return The line split into words
+     * @throws IOException If the line is missing or starts with something else
+     */
+    private static String[] readLine(BufferedReader in, String name, File file) throws IOException {
+        String line = in.readLine();
+        String[] words = line == null ? new String[0] : line.trim().split("\\s+");
+        if(words.length == 0 || !words[0].equals(name)) {
+            throw new IOException(file + " is not a weights file: expected a " + name + " line");
+        }
+        return words;
+    }
+
+
+    /**
+     * Turns a line of k - 1 weights into an array indexed by pieces
+     * @param words The line split into words, the name first
+     * @param piecesForWin How many pieces in a row are needed to win
+     * @param file The file, for the message
+     * @return The weights
+     * @throws IOException If the line has the wrong number of weights
+     */
+    private static int[] readWeights(String[] words, int piecesForWin, File file) throws IOException {
+        if(words.length != piecesForWin) {
+            throw new IOException(file + " has " + (words.length - 1) + " " + words[0] + " weights, not "
+                + (piecesForWin - 1));
+        }
+        int[] weights = new int[piecesForWin + 1];
+        for(int pieces = 1; pieces < piecesForWin; pieces++) {
+            weights[pieces] = Integer.parseInt(words[pieces]);
+        }
+        return weights;
+    }
+
+
+    /**
+     * Writes the weights to a file
+     * @param file Where to write
+     * @throws IOException If the file can not be written
+     */
+    public void save(File file) throws IOException {
+        try(PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.print(toString());
+            //PrintWriter keeps its errors to itself until asked
+            if(out.checkError()) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+
+    /**
+     * @param board A board
+     * @return Whether the weights were made for boards of that size
+     */
+    public boolean matches(TicTacToeBoard board) {
+        return board.getWidth() == width && board.getHeight() == height
+            && board.getPiecesForWin() == piecesForWin;
+    }
+
+
+    /**
+     * Writes the weights the way save does
+     * @return The lines of the file
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("weights ").append(width).append(' ').append(height).append(' ').append(piecesForWin).append('\n');
+        text.append("run");
+        for(int pieces = 1; pieces < piecesForWin; pieces++) {
+            text.append(' ').append(runWeights[pieces]);
+        }
+        text.append("\nopen");
+        for(int pieces = 1; pieces < piecesForWin; pieces++) {
+            text.append(' ').append(openRunWeights[pieces]);
+        }
+        text.append("\ntempo ").append(tempo).append('\n');
+        return text.toString();
+    }
+
+
+    public int getPiecesForWin() {
+        return piecesForWin;
+    }
+
+
+    public int getRunWeight(int pieces) {
+        return runWeights[pieces];
+    }
+
+
+    public int getOpenRunWeight(int pieces) {
+        return openRunWeights[pieces];
+    }
+
+
+    public int getTempo() {
+        return tempo;
+    }
+}
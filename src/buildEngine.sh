@@ -0,0 +1,31 @@
+#!/bin/sh
+# Compiles the engine into out/engine.jar and dumps an AppCDS archive of every class that a
+# warmed up protocol session loads. Run from the repository root.
+set -e
+rm -rf out/classes
+mkdir -p out/classes
+javac -d out/classes src/*.java
+# TicTacToeVectorWins uses the incubating Vector API, which javac only sees with this flag, so
+# it has a source root of its own. Nothing the protocol loads needs it at run time.
+javac --add-modules jdk.incubator.vector -cp out/classes -d out/classes src-vector/*.java
+# CDS only archives classes loaded from jars, not from class directories
+jar cf out/engine.jar -C out/classes .
+# A short session that warms up, plays one search, then quits, so the archive
+# covers the search and protocol classes as well as the JDK ones they use. quit stops a
+# search in progress, so it is only sent once bestmove is out.
+dir=$(mktemp -d)
+mkfifo "$dir/in"
+java -XX:ArchiveClassesAtExit=out/engine.jsa -cp out/engine.jar TicTacToeProtocol --warmup 200 \
+    < "$dir/in" > "$dir/out" &
+pid=$!
+exec 3> "$dir/in"
+printf 'newgame 4 4 4\nposition b2\ngo movetime 50\n' >&3
+while ! grep -q '^bestmove' "$dir/out" && kill -0 $pid 2> /dev/null; do
+    sleep 0.01
+done
+echo quit >&3
+exec 3>&-
+wait $pid
+rm -rf "$dir"
+echo "Wrote out/engine.jar and out/engine.jsa"
+echo "Run with: java -XX:SharedArchiveFile=out/engine.jsa -cp out/engine.jar TicTacToeProtocol [--warmup]"
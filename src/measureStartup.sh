@@ -0,0 +1,50 @@
+#!/bin/sh
+# Measures first-move latency of a fresh engine process, with and without warm-up and
+# the AppCDS archive. Needs src/buildEngine.sh to have been run first.
+# "search" is how long the first go took once input was accepted, read from the last info
+# line, and "total" is the wall time from starting the JVM to reading bestmove.
+RUNS=${RUNS:-10}
+MOVE='newgame 5 5 4\nposition c3\ngo depth 7\n'
+
+# Runs one session: sends the commands, waits for bestmove, and only then sends quit, which
+# would otherwise stop the search. Prints the wall time to bestmove in ms, then the output.
+session() {
+    dir=$(mktemp -d)
+    mkfifo "$dir/in"
+    start=$(date +%s%N)
+    java "$@" < "$dir/in" > "$dir/out" &
+    pid=$!
+    exec 3> "$dir/in"
+    printf "$MOVE" >&3
+    while ! grep -q '^bestmove' "$dir/out" && kill -0 $pid 2> /dev/null; do
+        sleep 0.001
+    done
+    end=$(date +%s%N)
+    echo quit >&3
+    exec 3>&-
+    wait $pid
+    echo $(((end - start) / 1000000))
+    cat "$dir/out"
+    rm -rf "$dir"
+}
+
+measure() {
+    label=$1
+    shift
+    total=0
+    search=0
+    i=0
+    while [ $i -lt $RUNS ]; do
+        output=$(session "$@")
+        time=$(echo "$output" | grep '^info depth' | tail -1 | sed 's/.* time \([0-9]*\).*/\1/')
+        total=$((total + $(echo "$output" | head -1)))
+        search=$((search + time))
+        i=$((i + 1))
+    done
+    echo "$label search $((search / RUNS)) ms, total $((total / RUNS)) ms (average of $RUNS runs)"
+}
+
+measure "plain       " -cp out/engine.jar TicTacToeProtocol
+measure "warmup      " -cp out/engine.jar TicTacToeProtocol --warmup 200
+measure "cds         " -XX:SharedArchiveFile=out/engine.jsa -cp out/engine.jar TicTacToeProtocol
+measure "cds + warmup" -XX:SharedArchiveFile=out/engine.jsa -cp out/engine.jar TicTacToeProtocol --warmup 200